@@ -0,0 +1,273 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.util.Progress;
+import org.openjdk.jmh.infra.Blackhole;
+import wtf.jmh.HotPath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class holds the inner loops of the jobs which are measured by wtf.jmh.WtfMicroBenchmarks. Each hot path
+ * calls a mapper or reducer method with a stub context: the records written to the context go to a JMH blackhole
+ * instead of being serialized, so only the work and the allocations of the method itself are measured.
+ * The inputs are random with a fixed seed, user ids are numeric.
+ */
+public class WtfHotPaths {
+    private static final long SEED = 1;
+
+    /**
+     * A record writer which consumes the records with a blackhole.
+     */
+    static class BlackholeWriter<K, V> extends RecordWriter<K, V> {
+        Blackhole blackhole;
+
+        @Override
+        public void write(K key, V value) {
+            blackhole.consume(key);
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+        }
+    }
+
+    /**
+     * A status reporter with in-memory counters.
+     */
+    static class StubReporter extends StatusReporter {
+        private final Counters counters = new Counters();
+
+        @Override
+        public Counter getCounter(Enum<?> name) {
+            return counters.findCounter(name);
+        }
+
+        @Override
+        public Counter getCounter(String group, String name) {
+            return counters.findCounter(group, name);
+        }
+
+        @Override
+        public void progress() {
+        }
+
+        @Override
+        public float getProgress() {
+            return 0;
+        }
+
+        @Override
+        public void setStatus(String status) {
+        }
+    }
+
+    /**
+     * An empty reducer input, the values of the measured reduce calls are passed directly.
+     */
+    static class EmptyIterator implements RawKeyValueIterator {
+        @Override
+        public DataInputBuffer getKey() {
+            return null;
+        }
+
+        @Override
+        public DataInputBuffer getValue() {
+            return null;
+        }
+
+        @Override
+        public boolean next() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Progress getProgress() {
+            return new Progress();
+        }
+    }
+
+    static <KI, VI, KO, VO> Mapper<KI, VI, KO, VO>.Context mapContext(Configuration conf, RecordWriter<KO, VO> writer) {
+        return new WrappedMapper<KI, VI, KO, VO>().getMapContext(
+                new MapContextImpl<>(conf, new TaskAttemptID(), null, writer, null, new StubReporter(), null));
+    }
+
+    static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContext(Configuration conf, RecordWriter<KO, VO> writer,
+            Class<KI> keyClass, Class<VI> valueClass) throws Exception {
+        StubReporter reporter = new StubReporter();
+        return new WrappedReducer<KI, VI, KO, VO>().getReducerContext(
+                new ReduceContextImpl<>(conf, new TaskAttemptID(), new EmptyIterator(), reporter.getCounter("input", "keys"),
+                        reporter.getCounter("input", "values"), writer, null, reporter, null, keyClass, valueClass));
+    }
+
+    /**
+     * WtfIndexingMapper.map() of a line of a user who follows "size" users.
+     */
+    public static class IndexingMap implements HotPath {
+        private final WtfIndexing.WtfIndexingMapper mapper = new WtfIndexing.WtfIndexingMapper();
+        private final BlackholeWriter<UserWritable, EdgeWritable> writer = new BlackholeWriter<>();
+        private Mapper<Object, Text, UserWritable, EdgeWritable>.Context context;
+        private final Text line = new Text();
+
+        @Override
+        public void setUp(int size, double directRatio, int topK) throws Exception {
+            Random random = new Random(SEED);
+            StringBuilder builder = new StringBuilder("1\t");
+            for (int i = 0; i < size; i++) {
+                builder.append(' ').append(2 + random.nextInt(1000000));
+            }
+            line.set(builder.toString());
+            context = mapContext(new Configuration(), writer);
+            mapper.setup(context);
+        }
+
+        @Override
+        public void run(Blackhole blackhole) throws Exception {
+            writer.blackhole = blackhole;
+            mapper.map(null, line, context);
+        }
+    }
+
+    /**
+     * WtfSimilarityMapper.map() of an inverted list with "size" followers, it emits size * (size - 1) pairs.
+     */
+    public static class SimilarityMap implements HotPath {
+        private final WtfSimilarity.WtfSimilarityMapper mapper = new WtfSimilarity.WtfSimilarityMapper();
+        private final BlackholeWriter<UserWritable, EdgeWritable> writer = new BlackholeWriter<>();
+        private Mapper<UserWritable, InvertedListWritable, UserWritable, EdgeWritable>.Context context;
+        private final UserWritable user = new UserWritable(1);
+        private final InvertedListWritable list = new InvertedListWritable();
+
+        @Override
+        public void setUp(int size, double directRatio, int topK) throws Exception {
+            Random random = new Random(SEED);
+            for (int i = 0; i < size; i++) {
+                list.getFollowers().add(new UserWritable(2 + random.nextInt(1000000)));
+            }
+            for (int i = 0; i < 10; i++) {
+                list.getFollowed().add(new UserWritable(2 + random.nextInt(1000000)));
+            }
+            context = mapContext(new Configuration(), writer);
+            mapper.setup(context);
+        }
+
+        @Override
+        public void run(Blackhole blackhole) throws Exception {
+            writer.blackhole = blackhole;
+            mapper.map(user, list, context);
+        }
+    }
+
+    /**
+     * WtfSimilarityReducer.reduce() of "size" values, a directRatio fraction of them are direct edges.
+     * The candidates are drawn from size / 4 users, so a candidate has about four common users.
+     */
+    public static class SimilarityReduce implements HotPath {
+        private final WtfSimilarity.WtfSimilarityReducer reducer = new WtfSimilarity.WtfSimilarityReducer();
+        private final BlackholeWriter<UserWritable, Text> writer = new BlackholeWriter<>();
+        private Reducer<UserWritable, EdgeWritable, UserWritable, Text>.Context context;
+        private final UserWritable user = new UserWritable(1);
+        private final List<EdgeWritable> values = new ArrayList<>();
+
+        @Override
+        public void setUp(int size, double directRatio, int topK) throws Exception {
+            Random random = new Random(SEED);
+            int candidates = Math.max(1, size / 4);
+            for (int i = 0; i < size; i++) {
+                UserWritable candidate = new UserWritable(2 + random.nextInt(candidates));
+                values.add(new EdgeWritable(candidate, random.nextDouble() < directRatio, 1));
+            }
+            context = reduceContext(new Configuration(), writer, UserWritable.class, EdgeWritable.class);
+            reducer.setup(context);
+        }
+
+        @Override
+        public void run(Blackhole blackhole) throws Exception {
+            writer.blackhole = blackhole;
+            reducer.reduce(user, values, context);
+        }
+    }
+
+    /**
+     * TopRecommendations.offer() of "size" recommendations and sort(), like a row of WtfSimilarityReducer with
+     * wtf.topk = topK. The scores have few distinct counts, so most offers tie with the K-th recommendation and
+     * are decided by the user id.
+     */
+    public static class TopRecommendationsOffer implements HotPath {
+        private TopRecommendations recommendations;
+        private UserWritable[] users;
+        private double[] scores;
+
+        @Override
+        public void setUp(int size, double directRatio, int topK) {
+            Random random = new Random(SEED);
+            recommendations = new TopRecommendations(topK);
+            users = new UserWritable[size];
+            scores = new double[size];
+            for (int i = 0; i < size; i++) {
+                users[i] = new UserWritable(2 + random.nextInt(1000000));
+                scores[i] = 1 + random.nextInt(8);
+            }
+        }
+
+        @Override
+        public void run(Blackhole blackhole) {
+            recommendations.clear();
+            for (int i = 0; i < users.length; i++) {
+                recommendations.offer(users[i], scores[i]);
+            }
+            recommendations.sort();
+            blackhole.consume(recommendations.getScore(0));
+        }
+    }
+
+    /**
+     * formatting "size" recommendations with Recommendation.toStringBuffer().
+     */
+    public static class RecommendationFormat implements HotPath {
+        private List<Recommendation> recommendations;
+
+        @Override
+        public void setUp(int size, double directRatio, int topK) {
+            recommendations = recommendations(size);
+        }
+
+        @Override
+        public void run(Blackhole blackhole) {
+            blackhole.consume(Recommendation.toStringBuffer(recommendations));
+        }
+    }
+
+    /**
+     * @return "size" recommendations in random order, with few distinct counts like a real row.
+     */
+    private static List<Recommendation> recommendations(int size) {
+        Random random = new Random(SEED);
+        List<Recommendation> recommendations = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            recommendations.add(new Recommendation(Integer.toString(2 + random.nextInt(1000000)), 1 + random.nextInt(8)));
+        }
+        return recommendations;
+    }
+}
@@ -0,0 +1,32 @@
+package wtf.jmh;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * An inner loop of the pipeline with its input. The implementations are in WtfHotPaths in the default package
+ * next to the jobs, because JMH does not accept benchmark classes in the default package and classes of a named
+ * package can not refer to the default package, so they are created by name.
+ */
+public interface HotPath {
+    /**
+     * prepares the input.
+     * @param size number of tokens, followers, values or recommendations of one operation
+     * @param directRatio fraction of direct edges in the reducer values, the other hot paths ignore it
+     * @param topK wtf.topk of the hot paths which keep the best recommendations, the other hot paths ignore it
+     */
+    void setUp(int size, double directRatio, int topK) throws Exception;
+
+    /**
+     * runs one operation, the records written to the context are consumed by the blackhole.
+     */
+    void run(Blackhole blackhole) throws Exception;
+
+    /**
+     * @param name simple name of a nested class of WtfHotPaths
+     * @return a new instance of the hot path.
+     */
+    static HotPath create(String name) throws ReflectiveOperationException {
+        return Class.forName("WtfHotPaths$" + name).asSubclass(HotPath.class).getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,128 @@
+package wtf.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * JMH benchmarks of the inner loops of the jobs, see WtfHotPaths. Run them with the GC profiler to see the
+ * allocation rate per operation (gc.alloc.rate.norm) next to the time per operation:
+ * java -cp ... org.openjdk.jmh.Main -prof gc WtfMicroBenchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WtfMicroBenchmarks {
+
+    /**
+     * mapper hot paths, size is the number of followed users of a line or the number of followers of a list.
+     */
+    @State(Scope.Thread)
+    public static class MapperState {
+        @Param({"10", "100", "1000"})
+        int size;
+        HotPath indexingMap;
+        HotPath similarityMap;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            indexingMap = HotPath.create("IndexingMap");
+            indexingMap.setUp(size, 0, 0);
+            similarityMap = HotPath.create("SimilarityMap");
+            similarityMap.setUp(size, 0, 0);
+        }
+    }
+
+    /**
+     * reducer hot path, size is the number of values of a key.
+     */
+    @State(Scope.Thread)
+    public static class ReducerState {
+        @Param({"100", "10000", "1000000"})
+        int size;
+        @Param({"0.0", "0.1", "0.5"})
+        double directRatio;
+        HotPath similarityReduce;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            similarityReduce = HotPath.create("SimilarityReduce");
+            similarityReduce.setUp(size, directRatio, 0);
+        }
+    }
+
+    /**
+     * recommendation hot paths, size is the number of recommendations of a row.
+     */
+    @State(Scope.Thread)
+    public static class RecommendationState {
+        @Param({"10", "1000", "100000"})
+        int size;
+        HotPath format;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            format = HotPath.create("RecommendationFormat");
+            format.setUp(size, 0, 0);
+        }
+    }
+
+    /**
+     * top K hot path of the similarity reducer, size is the number of offered recommendations of a row and
+     * topK is wtf.topk, 0 keeps all of them.
+     */
+    @State(Scope.Thread)
+    public static class TopRecommendationsState {
+        @Param({"1000", "100000"})
+        int size;
+        @Param({"0", "10", "100"})
+        int topK;
+        HotPath offer;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            offer = HotPath.create("TopRecommendationsOffer");
+            offer.setUp(size, 0, topK);
+        }
+    }
+
+    @Benchmark
+    public void indexingMap(MapperState state, Blackhole blackhole) throws Exception {
+        state.indexingMap.run(blackhole);
+    }
+
+    @Benchmark
+    public void similarityMap(MapperState state, Blackhole blackhole) throws Exception {
+        state.similarityMap.run(blackhole);
+    }
+
+    @Benchmark
+    public void similarityReduce(ReducerState state, Blackhole blackhole) throws Exception {
+        state.similarityReduce.run(blackhole);
+    }
+
+    @Benchmark
+    public void topRecommendations(TopRecommendationsState state, Blackhole blackhole) throws Exception {
+        state.offer.run(blackhole);
+    }
+
+    @Benchmark
+    public void recommendationFormat(RecommendationState state, Blackhole blackhole) throws Exception {
+        state.format.run(blackhole);
+    }
+}
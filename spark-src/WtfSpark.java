@@ -0,0 +1,415 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.spark.HashPartitioner;
+import org.apache.spark.Partitioner;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.serializer.KryoSerializer;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class is a Spark version of the indexing and similarity jobs on the JVM, it replaces the
+ * groupByKey chain of wtf.py. It has the same semantics as WtfSimilarity: for every user Z, all ordered
+ * pairs (Yi, Yj) of followers of Z are counted, the users Yi already follows are removed, and the candidates
+ * are scored with wtf.similarity.scorer, sorted like Recommendation and cut to wtf.topk.
+ * The stages are:
+ * 1. the follow lists X -> F1 ... Fn, hash partitioned by X and cached.
+ * 2. the inverted lists Z -> (Y1, d(Y1)) ... (Yk, d(Yk)) with aggregateByKey.
+ * 3. the pairs ((Yi, Yj), score) with reduceByKey, which sums them before the shuffle like the
+ *    aggregating mode of WtfSimilarity. The pairs of a list are generated lazily.
+ * 4. the best recommendations of every user with aggregateByKey into a bounded list.
+ * 5. a join with the follow lists, which does not shuffle because both sides have the same partitioner,
+ *    so the users without recommendations get an empty line like in the Hadoop output.
+ * The "already follows" edges are shuffled with the pairs and mark them, like the "-" edges of the Hadoop jobs.
+ * If the graph has at most wtf.spark.broadcast.max.edges edges, stages 3 to 5 are replaced: the inverted lists
+ * are broadcast, and the candidates of every user X are counted in a hash map over the inverted lists of the
+ * users followed by X, so the pairs are not shuffled at all.
+ * Records are serialized with Kryo without reference tracking, because they do not share objects.
+ * The output has one part file per partition.
+ * NOTE: the hub policies and the dictionary stage of the Hadoop jobs are not supported.
+ */
+public class WtfSpark {
+    /**
+     * configuration key for the Spark master, e.g. local[*]. If it is not set, the master of spark-submit is used.
+     */
+    public static final String MASTER = "wtf.spark.master";
+    /**
+     * configuration key for the number of partitions, the default is the default parallelism of Spark.
+     */
+    public static final String PARTITIONS = "wtf.spark.partitions";
+    /**
+     * configuration key for the maximum number of edges of a graph whose inverted lists are broadcast.
+     */
+    public static final String BROADCAST_MAX_EDGES = "wtf.spark.broadcast.max.edges";
+    public static final long DEFAULT_BROADCAST_MAX_EDGES = 1000000;
+
+    /**
+     * The FollowerList class is an inverted list of the user Z: the followers Yi of Z and their degrees d(Yi).
+     */
+    static class FollowerList {
+        private String[] users = new String[4];
+        private int[] degrees = new int[4];
+        private int size;
+
+        FollowerList add(Tuple2<String, Integer> follower) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+                degrees = Arrays.copyOf(degrees, size * 2);
+            }
+            users[size] = follower._1();
+            degrees[size++] = follower._2();
+            return this;
+        }
+
+        FollowerList merge(FollowerList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(new Tuple2<>(other.users[i], other.degrees[i]));
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The UserPair class is the key of a pair (X, Fi). Its hash code and equality are cheaper than the
+     * generic ones of Tuple2 in the map-side aggregation.
+     */
+    static class UserPair {
+        private String user;
+        private String candidate;
+        /**
+         * the hash code, 0 until it is computed. It is not serialized.
+         */
+        private transient int hash;
+
+        UserPair() {
+        }
+
+        UserPair(String user, String candidate) {
+            this.user = user;
+            this.candidate = candidate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof UserPair)) {
+                return false;
+            }
+            UserPair other = (UserPair) o;
+            return user.equals(other.user) && candidate.equals(other.candidate);
+        }
+
+        /**
+         * @return a mixed hash code, 31 * h(X) + h(Fi) collides for most pairs of numeric user ids.
+         */
+        @Override
+        public int hashCode() {
+            if (hash == 0) {
+                int h = user.hashCode() * 0x9E3779B1 + candidate.hashCode();
+                h ^= h >>> 16;
+                h *= 0x85EBCA6B;
+                hash = h ^ (h >>> 13);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * The PairScore class is the value of a pair (X, Fi): the number of common followed users, the sum of
+     * their weights and the degrees d(X) and d(Fi). A direct PairScore marks that X already follows Fi.
+     */
+    static class PairScore {
+        private boolean direct;
+        private int count;
+        private double weight;
+        private int degree;
+        private int candidateDegree;
+
+        PairScore() {
+        }
+
+        PairScore(int count, double weight, int degree, int candidateDegree) {
+            this.count = count;
+            this.weight = weight;
+            this.degree = degree;
+            this.candidateDegree = candidateDegree;
+        }
+
+        static PairScore direct() {
+            PairScore score = new PairScore();
+            score.direct = true;
+            return score;
+        }
+
+        PairScore merge(PairScore other) {
+            direct |= other.direct;
+            count += other.count;
+            weight += other.weight;
+            degree = Math.max(degree, other.degree);
+            candidateDegree = Math.max(candidateDegree, other.candidateDegree);
+            return this;
+        }
+
+        /**
+         * adds one more common followed user.
+         */
+        void add(double weight) {
+            count++;
+            this.weight += weight;
+        }
+
+        boolean isDirect() {
+            return direct;
+        }
+
+        double score(WtfSimilarity.Scorer scorer) {
+            return scorer.score(count, weight, degree, candidateDegree);
+        }
+    }
+
+    /**
+     * The Top class keeps the best recommendations of a user. With a limit, the list is sorted and cut
+     * whenever it has twice as many recommendations, so its size stays bounded.
+     */
+    static class Top {
+        private final int limit;
+        private final ArrayList<Recommendation> recommendations = new ArrayList<>();
+
+        Top(int limit) {
+            this.limit = limit;
+        }
+
+        Top add(Recommendation recommendation) {
+            recommendations.add(recommendation);
+            if (limit > 0 && recommendations.size() >= 2 * limit) {
+                cut();
+            }
+            return this;
+        }
+
+        Top merge(Top other) {
+            for (Recommendation recommendation : other.recommendations) {
+                add(recommendation);
+            }
+            return this;
+        }
+
+        /**
+         * @return the sorted recommendations, at most limit of them.
+         */
+        List<Recommendation> cut() {
+            Collections.sort(recommendations);
+            if (limit > 0 && recommendations.size() > limit) {
+                recommendations.subList(limit, recommendations.size()).clear();
+            }
+            return recommendations;
+        }
+    }
+
+    /**
+     * The PairIterator class generates the ordered pairs ((Yi, Yj), score) of an inverted list without
+     * materializing them. A user is never paired with itself.
+     */
+    static class PairIterator implements Iterator<Tuple2<UserPair, PairScore>> {
+        private final FollowerList list;
+        private final double weight;
+        private int i;
+        private int j = -1;
+
+        PairIterator(FollowerList list, WtfSimilarity.Scorer scorer) {
+            this.list = list;
+            this.weight = scorer.needsWeights() ? WtfSimilarity.Scorer.weight(list.size) : 0;
+            advance();
+        }
+
+        private void advance() {
+            while (i < list.size) {
+                while (++j < list.size) {
+                    if (!list.users[i].equals(list.users[j])) {
+                        return;
+                    }
+                }
+                i++;
+                j = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < list.size;
+        }
+
+        @Override
+        public Tuple2<UserPair, PairScore> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tuple2<UserPair, PairScore> pair = new Tuple2<>(
+                    new UserPair(list.users[i], list.users[j]),
+                    new PairScore(1, weight, list.degrees[i], list.degrees[j]));
+            advance();
+            return pair;
+        }
+    }
+
+    /**
+     * counts the candidates of a user over the broadcast inverted lists.
+     * @param user user X
+     * @param followed users followed by X
+     * @param lists inverted lists of all users
+     * @return the recommendations of X.
+     */
+    static Top recommend(String user, String[] followed, Map<String, FollowerList> lists, int topK,
+                         WtfSimilarity.Scorer scorer) {
+        Map<String, PairScore> candidates = new HashMap<>();
+        for (String f : followed) {
+            FollowerList list = lists.get(f);
+            double weight = scorer.needsWeights() ? WtfSimilarity.Scorer.weight(list.size) : 0;
+            for (int j = 0; j < list.size; j++) {
+                PairScore score = candidates.get(list.users[j]);
+                if (score == null) {
+                    candidates.put(list.users[j], new PairScore(1, weight, followed.length, list.degrees[j]));
+                } else {
+                    score.add(weight);
+                }
+            }
+        }
+        // X is in all lists, and the users followed by X are not recommended.
+        candidates.remove(user);
+        for (String f : followed) {
+            candidates.remove(f);
+        }
+        Top top = new Top(topK);
+        for (Map.Entry<String, PairScore> candidate : candidates.entrySet()) {
+            top.add(new Recommendation(candidate.getKey(), candidate.getValue().score(scorer)));
+        }
+        return top;
+    }
+
+    /**
+     * @param line "X F1 F2 ... Fn" where X follows F1 to Fn.
+     * @return X and its followed users.
+     */
+    static Tuple2<String, String[]> parse(String line) {
+        StringTokenizer itr = new StringTokenizer(line);
+        String user = itr.hasMoreTokens() ? itr.nextToken() : "";
+        String[] followed = new String[itr.countTokens()];
+        for (int i = 0; i < followed.length; i++) {
+            followed[i] = itr.nextToken();
+        }
+        return new Tuple2<>(user, followed);
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+
+    /**
+     * @return a Spark configuration with the Kryo serializer and the classes of the records.
+     */
+    public static SparkConf sparkConf(String master) {
+        SparkConf conf = new SparkConf().setAppName("who to follow")
+                .set("spark.serializer", KryoSerializer.class.getName())
+                .set("spark.kryo.referenceTracking", "false")
+                .registerKryoClasses(new Class<?>[]{FollowerList.class, UserPair.class, PairScore.class, Top.class,
+                        Recommendation.class, String[].class, int[].class, WtfSimilarity.Scorer.class});
+        if (master != null) {
+            conf.setMaster(master);
+        }
+        return conf;
+    }
+
+    /**
+     * computes the recommendations of all users.
+     * @param sc spark context
+     * @param input lines of the input format "X F1 F2 ... Fn"
+     * @param topK maximum number of recommendations per user, 0 means all of them.
+     * @param scorer scorer of the recommendations
+     * @param partitions number of partitions of the shuffles
+     * @param broadcastMaxEdges maximum number of edges of a graph whose inverted lists are broadcast
+     * @return the output lines "X\t Y1(score1) Y2(score2) ..." of all users who follow someone.
+     */
+    public static JavaRDD<String> run(JavaSparkContext sc, JavaRDD<String> input, int topK,
+                                      WtfSimilarity.Scorer scorer, int partitions, long broadcastMaxEdges) {
+        Partitioner partitioner = new HashPartitioner(partitions);
+        JavaPairRDD<String, String[]> followed = input.mapToPair(WtfSpark::parse)
+                .filter(user -> user._2().length > 0)
+                .reduceByKey(partitioner, WtfSpark::concat)
+                .cache();
+        long edges = followed.mapToDouble(user -> user._2().length).sum().longValue();
+
+        JavaPairRDD<String, FollowerList> inverted = followed
+                .flatMapToPair(user -> {
+                    List<Tuple2<String, Tuple2<String, Integer>>> followers = new ArrayList<>(user._2().length);
+                    for (String f : user._2()) {
+                        followers.add(new Tuple2<>(f, new Tuple2<>(user._1(), user._2().length)));
+                    }
+                    return followers.iterator();
+                })
+                .aggregateByKey(new FollowerList(), partitions, FollowerList::add, FollowerList::merge);
+
+        if (edges <= broadcastMaxEdges) {
+            Broadcast<Map<String, FollowerList>> lists = sc.broadcast(new HashMap<>(inverted.collectAsMap()));
+            return followed.map(user -> line(user._1(), recommend(user._1(), user._2(), lists.value(), topK, scorer)));
+        }
+        JavaPairRDD<UserPair, PairScore> direct = followed.flatMapToPair(user -> {
+            List<Tuple2<UserPair, PairScore>> edgeList = new ArrayList<>(user._2().length);
+            for (String f : user._2()) {
+                edgeList.add(new Tuple2<>(new UserPair(user._1(), f), PairScore.direct()));
+            }
+            return edgeList.iterator();
+        });
+        JavaPairRDD<String, Top> recommendations = inverted.values()
+                .flatMapToPair(list -> new PairIterator(list, scorer))
+                .union(direct)
+                .reduceByKey(PairScore::merge, partitions)
+                .filter(pair -> !pair._2().isDirect())
+                .mapToPair(pair -> new Tuple2<>(pair._1().user,
+                        new Recommendation(pair._1().candidate, pair._2().score(scorer))))
+                .aggregateByKey(new Top(topK), partitioner, Top::add, Top::merge);
+        return followed.leftOuterJoin(recommendations)
+                .map(user -> line(user._1(), user._2()._2().orElse(null)));
+    }
+
+    /**
+     * @return the output line "X\t Y1(score1) Y2(score2) ..." of a user, top is null if X has no recommendations.
+     */
+    private static String line(String user, Top top) {
+        return user + "\t" + (top == null ? "" : Recommendation.toStringBuffer(top.cut()));
+    }
+
+    /**
+     * @param args [-D wtf.spark.master=local[*]] [-D wtf.topk=10] ... inputPath outputPath
+     */
+    public static void main(String[] args) throws Exception {
+        Configuration conf = new Configuration();
+        String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+        if (otherArgs.length != 2) {
+            System.err.println("Usage: WtfSpark [-D wtf.spark.master=local[*]] [-D wtf.topk=10] <in> <out>");
+            System.exit(2);
+        }
+        try (JavaSparkContext sc = new JavaSparkContext(sparkConf(conf.get(MASTER)))) {
+            run(sc, sc.textFile(otherArgs[0]),
+                    conf.getInt(WtfSimilarity.TOP_K, 0),
+                    conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT),
+                    conf.getInt(PARTITIONS, sc.defaultParallelism()),
+                    conf.getLong(BROADCAST_MAX_EDGES, DEFAULT_BROADCAST_MAX_EDGES))
+                    .saveAsTextFile(otherArgs[1]);
+        }
+    }
+}
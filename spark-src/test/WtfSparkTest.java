@@ -0,0 +1,59 @@
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfSparkTest {
+    static JavaSparkContext sc;
+    // same graph as wtf-input/small-data
+    static final List<String> INPUT = Arrays.asList("1\t 3 4 5", "2\t 1 3 5", "3\t 1 2 4 5", "4\t 1 2 3 5", "5\t 3");
+
+    @BeforeClass
+    public static void setUp() {
+        sc = new JavaSparkContext(WtfSpark.sparkConf("local[2]"));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        sc.stop();
+    }
+
+    private String run(int topK, WtfSimilarity.Scorer scorer, long broadcastMaxEdges) {
+        List<String> lines = new ArrayList<>(WtfSpark.run(sc, sc.parallelize(INPUT, 2), topK, scorer, 3,
+                broadcastMaxEdges).collect());
+        lines.sort(null);
+        StringBuilder str = new StringBuilder();
+        for (String line : lines) {
+            str.append(line).append('\n');
+        }
+        return str.toString();
+    }
+
+    @Test
+    public void testRun() {
+        // same as wtf-output/part-r-00000, with and without the broadcast follow sets
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1) 4(1)\n",
+                run(0, WtfSimilarity.Scorer.COUNT, WtfSpark.DEFAULT_BROADCAST_MAX_EDGES));
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1) 4(1)\n", run(0, WtfSimilarity.Scorer.COUNT, 0));
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1)\n", run(2, WtfSimilarity.Scorer.COUNT, 0));
+    }
+    @Test
+    public void testRunScorers() {
+        // same as WtfLocalTest.testRunScorers
+        assertEquals("1\t 2(0.5)\n2\t 4(0.75)\n3\t\n4\t\n5\t 1(0.333333) 2(0.333333) 4(0.25)\n",
+                run(0, WtfSimilarity.Scorer.JACCARD, 0));
+        assertEquals("1\t 2(0.666667)\n2\t 4(0.866025)\n3\t\n4\t\n5\t 1(0.57735) 2(0.57735) 4(0.5)\n",
+                run(0, WtfSimilarity.Scorer.COSINE, WtfSpark.DEFAULT_BROADCAST_MAX_EDGES));
+        assertEquals("1\t 2(1.442695)\n2\t 4(2.352934)\n3\t\n4\t\n5\t 1(0.721348) 2(0.721348) 4(0.721348)\n",
+                run(0, WtfSimilarity.Scorer.ADAMIC_ADAR, 0));
+    }
+}
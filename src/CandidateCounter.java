@@ -0,0 +1,491 @@
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class counts the recommendation candidates Fi of one user X in the similarity reducer.
+ * Numeric user ids are counted in an open addressing table of primitive longs and ints, so counting
+ * does not allocate an object per candidate. String user ids are counted in a HashMap.
+ * A candidate which is followed directly by X is excluded: its count is EXCLUDED and later
+ * occurrences of the candidate are ignored, so the values of the reducer are streamed only once.
+ * For the scorers of WtfSimilarity.Scorer a candidate also has its degree and a sum of weights.
+ * With a spill limit, the candidates are written to a local file as a run sorted by user id whenever
+ * there are more of them in memory than the limit. The runs are merged when the candidates are read, so the
+ * memory of a user with millions of candidates is bounded.
+ */
+public class CandidateCounter {
+    /**
+     * count of a candidate which is followed directly by user X.
+     */
+    public static final int EXCLUDED = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * the table is reallocated on clear() if it grew larger than this capacity, so one popular
+     * user does not keep a large table for the rest of the reduce task.
+     */
+    private static final int RETAINED_CAPACITY = 1 << 16;
+
+    private long[] keys;
+    private int[] counts;
+    private int[] degrees;
+    private double[] weights;
+    private boolean[] used;
+    /**
+     * the used slots in the order of insertion, only the first size entries are valid. Visiting and clearing
+     * the table only touches these slots, so a small user does not pay for the capacity of a large one.
+     */
+    private int[] occupied;
+    private int size;
+    private final Map<UserWritable, Candidate> strings = new HashMap<>();
+    private final UserWritable user = new UserWritable();
+    /**
+     * number of excluded candidates.
+     */
+    private int excluded;
+    /**
+     * number of candidates in memory above which they are spilled, 0 means no limit.
+     */
+    private int maxCandidates;
+    private File spillDirectory;
+    private final List<Run> runs = new ArrayList<>();
+    /**
+     * the merged run of all spilled runs of the current user, or null if no run was merged.
+     */
+    private Run merged;
+    /**
+     * number of runs spilled for the current user.
+     */
+    private int spills;
+
+    /**
+     * The counts of a string user id.
+     */
+    private static class Candidate {
+        int count;
+        int degree;
+        double weight;
+
+        Candidate(int count, int degree, double weight) {
+            this.count = count;
+            this.degree = degree;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * receives a candidate, its count, its degree and its weight. The count is EXCLUDED if X follows
+     * the candidate directly.
+     */
+    public interface Visitor {
+        void visit(UserWritable user, int count, int degree, double weight) throws IOException, InterruptedException;
+    }
+
+    /**
+     * A sorted run of candidates in a local file: the user id, count, degree and weight of each candidate.
+     */
+    private static class Run {
+        final File file;
+        int size;
+
+        Run(File file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Reads the candidates of a run in order, the fields hold the current candidate.
+     */
+    private static class RunReader implements Closeable, Comparable<RunReader> {
+        final UserWritable user = new UserWritable();
+        int count;
+        int degree;
+        double weight;
+        private final DataInputStream in;
+        private int remaining;
+
+        RunReader(Run run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+            remaining = run.size;
+        }
+
+        /**
+         * @return false if the run has no more candidates.
+         */
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            user.readFields(in);
+            count = WritableUtils.readVInt(in);
+            degree = WritableUtils.readVInt(in);
+            weight = in.readDouble();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            return user.compareTo(o.user);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public CandidateCounter() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * enables spilling of the candidates to sorted runs.
+     * @param maxCandidates number of candidates in memory above which they are spilled, 0 means no limit
+     * @param directory local directory of the runs
+     */
+    public void setSpill(int maxCandidates, File directory) {
+        this.maxCandidates = maxCandidates;
+        this.spillDirectory = directory;
+    }
+
+    /**
+     * adds count to the number of common followed users of a candidate, unless it is excluded.
+     * @param user candidate user id
+     * @param count number of common followed users
+     */
+    public void add(UserWritable user, int count) throws IOException {
+        add(user, count, 0, 0);
+    }
+
+    /**
+     * adds count and weight to a candidate, unless it is excluded.
+     * @param user candidate user id
+     * @param count number of common followed users
+     * @param degree number of users followed by the candidate, 0 if it is unknown
+     * @param weight sum of the weights of the common followed users
+     */
+    public void add(UserWritable user, int count, int degree, double weight) throws IOException {
+        if (!user.isNumeric()) {
+            Candidate current = strings.get(user);
+            if (current == null) {
+                strings.put(user.copy(), new Candidate(count, degree, weight));
+                checkSpill();
+            } else if (current.count != EXCLUDED) {
+                current.count += count;
+                current.degree = Math.max(current.degree, degree);
+                current.weight += weight;
+            }
+            return;
+        }
+        int slot = find(user.getId());
+        if (!used[slot]) {
+            insert(slot, user.getId(), count, degree, weight);
+            checkSpill();
+        } else if (counts[slot] != EXCLUDED) {
+            counts[slot] += count;
+            degrees[slot] = Math.max(degrees[slot], degree);
+            weights[slot] += weight;
+        }
+    }
+
+    /**
+     * excludes a candidate which is followed directly by user X.
+     * @param user candidate user id
+     */
+    public void exclude(UserWritable user) throws IOException {
+        if (!user.isNumeric()) {
+            Candidate current = strings.get(user);
+            if (current == null) {
+                strings.put(user.copy(), new Candidate(EXCLUDED, 0, 0));
+                excluded++;
+                checkSpill();
+            } else if (current.count != EXCLUDED) {
+                current.count = EXCLUDED;
+                excluded++;
+            }
+            return;
+        }
+        int slot = find(user.getId());
+        if (!used[slot]) {
+            insert(slot, user.getId(), EXCLUDED, 0, 0);
+            excluded++;
+            checkSpill();
+        } else if (counts[slot] != EXCLUDED) {
+            counts[slot] = EXCLUDED;
+            excluded++;
+        }
+    }
+
+    /**
+     * visits all candidates including the excluded ones. The user object is reused between calls
+     * for numeric ids, and for all ids if the candidates were spilled.
+     * @param visitor receives the candidates
+     */
+    public void forEach(Visitor visitor) throws IOException, InterruptedException {
+        if (!runs.isEmpty()) {
+            merge();
+        }
+        if (merged != null) {
+            try (RunReader reader = new RunReader(merged)) {
+                while (reader.next()) {
+                    visitor.visit(reader.user, reader.count, reader.degree, reader.weight);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = occupied[i];
+            user.set(keys[slot]);
+            visitor.visit(user, counts[slot], degrees[slot], weights[slot]);
+        }
+        for (Map.Entry<UserWritable, Candidate> entry : strings.entrySet()) {
+            Candidate candidate = entry.getValue();
+            visitor.visit(entry.getKey(), candidate.count, candidate.degree, candidate.weight);
+        }
+    }
+
+    /**
+     * @return number of excluded candidates, which is the number of users followed by X in the reducer.
+     * The spilled runs are merged first.
+     */
+    public int getExcluded() throws IOException {
+        if (!runs.isEmpty()) {
+            merge();
+        }
+        return excluded;
+    }
+
+    /**
+     * @return number of candidates including the excluded ones, after the runs are merged.
+     */
+    public int size() {
+        return merged != null ? merged.size : size + strings.size();
+    }
+
+    /**
+     * @return number of runs spilled for the current user.
+     */
+    public int getSpills() {
+        return spills;
+    }
+
+    /**
+     * removes all candidates and deletes the runs.
+     */
+    public void clear() {
+        if (used.length > RETAINED_CAPACITY) {
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        } else {
+            clearSlots();
+        }
+        excluded = 0;
+        strings.clear();
+        for (Run run : runs) {
+            run.file.delete();
+        }
+        runs.clear();
+        if (merged != null) {
+            merged.file.delete();
+            merged = null;
+        }
+        spills = 0;
+    }
+
+    private void checkSpill() throws IOException {
+        if (maxCandidates > 0 && size + strings.size() > maxCandidates) {
+            spill();
+        }
+    }
+
+    /**
+     * writes the candidates in memory to a new run in the order of UserWritable, numeric ids first,
+     * and empties the table. The table keeps its capacity because it fills up again.
+     */
+    private void spill() throws IOException {
+        Run run = new Run(File.createTempFile("wtf-candidates-", ".run", spillDirectory));
+        runs.add(run);
+        spills++;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file)))) {
+            long[] ids = new long[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = keys[occupied[i]];
+            }
+            Arrays.sort(ids);
+            for (long id : ids) {
+                int slot = find(id);
+                user.set(id);
+                write(out, user, counts[slot], degrees[slot], weights[slot]);
+            }
+            List<UserWritable> names = new ArrayList<>(strings.keySet());
+            Collections.sort(names);
+            for (UserWritable name : names) {
+                Candidate candidate = strings.get(name);
+                write(out, name, candidate.count, candidate.degree, candidate.weight);
+            }
+            run.size = ids.length + names.size();
+        }
+        clearSlots();
+        strings.clear();
+    }
+
+    /**
+     * empties the used slots and keeps the capacity.
+     */
+    private void clearSlots() {
+        for (int i = 0; i < size; i++) {
+            used[occupied[i]] = false;
+        }
+        size = 0;
+    }
+
+    private static void write(DataOutputStream out, UserWritable user, int count, int degree, double weight)
+            throws IOException {
+        user.write(out);
+        WritableUtils.writeVInt(out, count);
+        WritableUtils.writeVInt(out, degree);
+        out.writeDouble(weight);
+    }
+
+    /**
+     * spills the rest of the candidates and merges all runs into one run, where the counts and weights of a
+     * candidate are summed and its degree is the maximum like in add(). A candidate which is excluded in one
+     * run is excluded. The number of excluded candidates is counted again.
+     */
+    private void merge() throws IOException {
+        if (size + strings.size() > 0) {
+            spill();
+        }
+        Run output = new Run(File.createTempFile("wtf-candidates-", ".run", spillDirectory));
+        PriorityQueue<RunReader> readers = new PriorityQueue<>();
+        List<RunReader> opened = new ArrayList<>();
+        excluded = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output.file)))) {
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run);
+                opened.add(reader);
+                if (reader.next()) {
+                    readers.add(reader);
+                }
+            }
+            while (!readers.isEmpty()) {
+                RunReader reader = readers.poll();
+                user.set(reader.user);
+                int count = reader.count;
+                int degree = reader.degree;
+                double weight = reader.weight;
+                advance(reader, readers);
+                while (!readers.isEmpty() && readers.peek().user.equals(user)) {
+                    reader = readers.poll();
+                    if (count == EXCLUDED || reader.count == EXCLUDED) {
+                        count = EXCLUDED;
+                    } else {
+                        count += reader.count;
+                        degree = Math.max(degree, reader.degree);
+                        weight += reader.weight;
+                    }
+                    advance(reader, readers);
+                }
+                if (count == EXCLUDED) {
+                    excluded++;
+                }
+                write(out, user, count, degree, weight);
+                output.size++;
+            }
+        } finally {
+            for (RunReader reader : opened) {
+                reader.close();
+            }
+        }
+        for (Run run : runs) {
+            run.file.delete();
+        }
+        runs.clear();
+        merged = output;
+    }
+
+    private static void advance(RunReader reader, PriorityQueue<RunReader> readers) throws IOException {
+        if (reader.next()) {
+            readers.add(reader);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        degrees = new int[capacity];
+        weights = new double[capacity];
+        used = new boolean[capacity];
+        occupied = new int[capacity / 2 + 1];
+    }
+
+    /**
+     * @return the slot of id, or the empty slot where id should be inserted.
+     */
+    private int find(long id) {
+        int mask = used.length - 1;
+        int slot = hash(id) & mask;
+        while (used[slot] && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, long id, int count, int degree, double weight) {
+        used[slot] = true;
+        keys[slot] = id;
+        counts[slot] = count;
+        degrees[slot] = degree;
+        weights[slot] = weight;
+        occupied[size] = slot;
+        // the table is kept at most half full.
+        if (++size * 2 > used.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[] oldDegrees = degrees;
+        double[] oldWeights = weights;
+        int[] oldOccupied = occupied;
+        allocate(used.length * 2);
+        for (int i = 0; i < size; i++) {
+            int old = oldOccupied[i];
+            int slot = find(oldKeys[old]);
+            used[slot] = true;
+            keys[slot] = oldKeys[old];
+            counts[slot] = oldCounts[old];
+            degrees[slot] = oldDegrees[old];
+            weights[slot] = oldWeights[old];
+            occupied[i] = slot;
+        }
+    }
+
+    /**
+     * mixes the bits of an id, dictionary ids and sequential ids would otherwise fill neighbour slots.
+     */
+    private static int hash(long id) {
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        return (int) id;
+    }
+}
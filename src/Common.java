@@ -1,20 +1,95 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by TeamZero on 31/01/17.
  */
 public class Common {
+    /**
+     * configuration key of the codec class of the map output, for example
+     * org.apache.hadoop.io.compress.DefaultCodec. The map output is not compressed if it is not set.
+     */
+    public static final String COMPRESS_MAP_OUTPUT_CODEC = "wtf.compress.map.output.codec";
+    /**
+     * configuration key of the SequenceFile.CompressionType of the SequenceFile outputs like wtf-middle:
+     * NONE, RECORD or BLOCK. The default is NONE.
+     */
+    public static final String COMPRESS_MIDDLE_TYPE = "wtf.compress.middle.type";
+    /**
+     * configuration key of the codec class of the compressed SequenceFile outputs, the default is DefaultCodec.
+     */
+    public static final String COMPRESS_MIDDLE_CODEC = "wtf.compress.middle.codec";
+    /**
+     * configuration key of the codec class of the text outputs like wtf-output. The text output is not
+     * compressed if it is not set.
+     */
+    public static final String COMPRESS_OUTPUT_CODEC = "wtf.compress.output.codec";
+    /**
+     * configuration key of the local directory where the reducers spill the values of keys which do not fit
+     * in memory. The default is java.io.tmpdir, which is the working directory of the task in YARN.
+     */
+    public static final String SPILL_DIR = "wtf.spill.dir";
+
+    /**
+     * @return the local directory for the spill files of a task, see SPILL_DIR.
+     */
+    public static File spillDirectory(Configuration conf) {
+        return new File(conf.get(SPILL_DIR, System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * this class is responsible for creating and runing a hadoop MapReduce job
+     * @param conf job configuration
+     * @param job_name job name
+     * @param className define jar by class name
+     * @param mapper mapper class
+     * @param reducer reducer class
+     * @param combiner combiner class. null if you don't have any combiner.
+     * @param mapOutputKey mapper output key type
+     * @param mapOutputValue mapper output value type
+     * @param outputKey reducer output key type
+     * @param outputValue reducer output value type
+     * @param input job input
+     * @param output job output
+     * @return true if the job was successful.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     * @throws InterruptedException
+     */
+    public static boolean jobRunner(Configuration conf, String job_name, Class<?> className,
+                                    Class<? extends Mapper> mapper, Class<? extends Reducer> reducer,
+                                    Class<? extends Reducer> combiner, Class<?> mapOutputKey, Class<?> mapOutputValue,
+                                    Class<?> outputKey, Class<?> outputValue, Path input, Path output)
+            throws IOException, ClassNotFoundException, InterruptedException {
+        return jobRunner(conf, job_name, className, mapper, reducer, combiner, mapOutputKey, mapOutputValue,
+                outputKey, outputValue, TextInputFormat.class, TextOutputFormat.class, input, output);
+    }
+
     /**
      * this class is responsible for creating and runing a hadoop MapReduce job
+     * with the given input and output formats.
      * @param conf job configuration
      * @param job_name job name
      * @param className define jar by class name
@@ -25,38 +100,225 @@ public class Common {
      * @param mapOutputValue mapper output value type
      * @param outputKey reducer output key type
      * @param outputValue reducer output value type
+     * @param inputFormat job input format, e.g. TextInputFormat or SequenceFileInputFormat
+     * @param outputFormat job output format, e.g. TextOutputFormat or SequenceFileOutputFormat
      * @param input job input
      * @param output job output
+     * @return true if the job was successful.
      * @throws IOException
      * @throws ClassNotFoundException
      * @throws InterruptedException
      */
-    public static void jobRunner(Configuration conf, String job_name, Class<?> className,
-                                 Class<? extends Mapper> mapper, Class<? extends Reducer> reducer,
-                                 Class<? extends Reducer> combiner, Class<?> mapOutputKey, Class<?> mapOutputValue,
-                                 Class<?> outputKey, Class<?> outputValue, Path input, Path output)
+    public static boolean jobRunner(Configuration conf, String job_name, Class<?> className,
+                                    Class<? extends Mapper> mapper, Class<? extends Reducer> reducer,
+                                    Class<? extends Reducer> combiner, Class<?> mapOutputKey, Class<?> mapOutputValue,
+                                    Class<?> outputKey, Class<?> outputValue,
+                                    Class<? extends InputFormat> inputFormat, Class<? extends OutputFormat> outputFormat,
+                                    Path input, Path output)
             throws IOException, ClassNotFoundException, InterruptedException {
-        Job job = Job.getInstance(conf, job_name);
-        job.setJarByClass(className);
-        job.setMapperClass(mapper);
-        // in a case that we have a combiner
-        if(combiner != null){
-            job.setCombinerClass(combiner);
-        }
-        // in a case that we have a reducer
-        if(reducer != null){
-            job.setReducerClass(reducer);
-            //reducer output key type
-            job.setOutputKeyClass(outputKey);
-            //reducer output value type
-            job.setOutputValueClass(outputValue);
-        }
-        //mapper output key type
-        job.setMapOutputKeyClass(mapOutputKey);
-        //mapper output value type
-        job.setMapOutputValueClass(mapOutputValue);
-        FileInputFormat.addInputPath(job, input);
-        FileOutputFormat.setOutputPath(job, output);
-        job.waitForCompletion(true);
+        return new JobBuilder(conf, job_name, className).mapper(mapper).reducer(reducer).combiner(combiner)
+                .mapOutput(mapOutputKey, mapOutputValue).output(outputKey, outputValue)
+                .inputFormat(inputFormat).outputFormat(outputFormat).input(input).output(output)
+                .build().waitForCompletion(true);
+    }
+
+    /**
+     * This class builds a hadoop MapReduce job step by step, it is used by the jobs which need more than
+     * the arguments of jobRunner.
+     * A job can belong to a stage of the pipeline, then the generic options of the stage are applied:
+     * wtf.STAGE.reducers is the number of reducers and wtf.STAGE.partitioner is the partitioner class.
+     * If wtf.STAGE.map.threads is greater than 1, the mapper runs in that many threads of a MultithreadedMapper,
+     * every thread with its own mapper object, and the writes of the threads are synchronized. The similarity
+     * jobs read their input with WtfSimilarity.InvertedListInputFormat, which splits a long list over the threads.
+     * The compression options wtf.compress.* are applied to every job.
+     */
+    public static class JobBuilder {
+        private final Configuration conf;
+        private final String name;
+        private final Class<?> className;
+        private String stage;
+        private Class<? extends Mapper> mapper;
+        private Class<? extends Reducer> reducer;
+        private Class<? extends Reducer> combiner;
+        private Class<?> mapOutputKey;
+        private Class<?> mapOutputValue;
+        private Class<?> outputKey;
+        private Class<?> outputValue;
+        private Class<? extends InputFormat> inputFormat = TextInputFormat.class;
+        private Class<? extends OutputFormat> outputFormat = TextOutputFormat.class;
+        private final List<Path> inputs = new ArrayList<>();
+        private Path output;
+
+        /**
+         * @param conf job configuration
+         * @param job_name job name
+         * @param className define jar by class name
+         */
+        public JobBuilder(Configuration conf, String job_name, Class<?> className) {
+            this.conf = conf;
+            this.name = job_name;
+            this.className = className;
+        }
+
+        /**
+         * @param stage stage of the pipeline like "indexing" or "similarity", its options are applied to the job.
+         */
+        public JobBuilder stage(String stage) {
+            this.stage = stage;
+            return this;
+        }
+
+        public JobBuilder mapper(Class<? extends Mapper> mapper) {
+            this.mapper = mapper;
+            return this;
+        }
+
+        /**
+         * @param reducer reducer class. null if you don't have any reducer.
+         */
+        public JobBuilder reducer(Class<? extends Reducer> reducer) {
+            this.reducer = reducer;
+            return this;
+        }
+
+        /**
+         * @param combiner combiner class. null if you don't have any combiner.
+         */
+        public JobBuilder combiner(Class<? extends Reducer> combiner) {
+            this.combiner = combiner;
+            return this;
+        }
+
+        public JobBuilder mapOutput(Class<?> key, Class<?> value) {
+            this.mapOutputKey = key;
+            this.mapOutputValue = value;
+            return this;
+        }
+
+        public JobBuilder output(Class<?> key, Class<?> value) {
+            this.outputKey = key;
+            this.outputValue = value;
+            return this;
+        }
+
+        public JobBuilder inputFormat(Class<? extends InputFormat> inputFormat) {
+            this.inputFormat = inputFormat;
+            return this;
+        }
+
+        public JobBuilder outputFormat(Class<? extends OutputFormat> outputFormat) {
+            this.outputFormat = outputFormat;
+            return this;
+        }
+
+        /**
+         * adds an input path of the input format, it can be a directory or a glob like middle/part-*
+         */
+        public JobBuilder input(Path input) {
+            inputs.add(input);
+            return this;
+        }
+
+        public JobBuilder output(Path output) {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * @return the configured job, inputs with other input formats can still be added with MultipleInputs.
+         * @throws IOException
+         */
+        public Job build() throws IOException {
+            Job job = Job.getInstance(conf, name);
+            job.setJarByClass(className);
+            if(mapper != null){
+                job.setMapperClass(mapper);
+            }
+            // in a case that we have a combiner
+            if(combiner != null){
+                job.setCombinerClass(combiner);
+            }
+            // in a case that we have a reducer
+            if(reducer != null){
+                job.setReducerClass(reducer);
+            }
+            if(outputKey != null){
+                //reducer output key type
+                job.setOutputKeyClass(outputKey);
+                //reducer output value type
+                job.setOutputValueClass(outputValue);
+            }
+            //mapper output key type
+            job.setMapOutputKeyClass(mapOutputKey);
+            //mapper output value type
+            job.setMapOutputValueClass(mapOutputValue);
+            job.setInputFormatClass(inputFormat);
+            job.setOutputFormatClass(outputFormat);
+            if(stage != null){
+                int reducers = conf.getInt("wtf." + stage + ".reducers", -1);
+                if(reducers >= 0){
+                    job.setNumReduceTasks(reducers);
+                }
+                Class<? extends Partitioner> partitioner =
+                        conf.getClass("wtf." + stage + ".partitioner", null, Partitioner.class);
+                if(partitioner != null){
+                    job.setPartitionerClass(partitioner);
+                }
+                int threads = conf.getInt("wtf." + stage + ".map.threads", 1);
+                if(threads > 1 && mapper != null){
+                    job.setMapperClass(MultithreadedMapper.class);
+                    // the builder keeps the mapper as a raw class, the job checks its key and value types.
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Mapper<Object, Object, Object, Object>> threadMapper =
+                            (Class<? extends Mapper<Object, Object, Object, Object>>) mapper;
+                    MultithreadedMapper.setMapperClass(job, threadMapper);
+                    MultithreadedMapper.setNumberOfThreads(job, threads);
+                }
+            }
+            compress(job);
+            for(Path input: inputs){
+                FileInputFormat.addInputPath(job, input);
+            }
+            FileOutputFormat.setOutputPath(job, output);
+            return job;
+        }
+
+        /**
+         * applies the compression options: the map output codec, the compression of SequenceFile outputs,
+         * which stay splittable, and the codec of the other outputs.
+         */
+        private void compress(Job job) {
+            String mapOutputCodec = conf.get(COMPRESS_MAP_OUTPUT_CODEC);
+            if(mapOutputCodec != null){
+                job.getConfiguration().setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+                job.getConfiguration().set(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC, mapOutputCodec);
+            }
+            if(SequenceFileOutputFormat.class.isAssignableFrom(outputFormat)){
+                SequenceFile.CompressionType type =
+                        conf.getEnum(COMPRESS_MIDDLE_TYPE, SequenceFile.CompressionType.NONE);
+                if(type != SequenceFile.CompressionType.NONE){
+                    FileOutputFormat.setCompressOutput(job, true);
+                    FileOutputFormat.setOutputCompressorClass(job,
+                            conf.getClass(COMPRESS_MIDDLE_CODEC, DefaultCodec.class, CompressionCodec.class));
+                    SequenceFileOutputFormat.setOutputCompressionType(job, type);
+                }
+            }else if(conf.get(COMPRESS_OUTPUT_CODEC) != null){
+                FileOutputFormat.setCompressOutput(job, true);
+                FileOutputFormat.setOutputCompressorClass(job,
+                        conf.getClass(COMPRESS_OUTPUT_CODEC, null, CompressionCodec.class));
+            }
+        }
+
+        /**
+         * builds and runs the job as a stage of a pipeline, and waits for its completion.
+         * @param summary summary of the pipeline, the stage is its stage name or its job name.
+         * @return true if the job was successful.
+         * @throws IOException
+         * @throws ClassNotFoundException
+         * @throws InterruptedException
+         */
+        public boolean run(PipelineSummary summary) throws IOException, ClassNotFoundException, InterruptedException {
+            return summary.run(stage != null ? stage : name, build());
+        }
     }
 }
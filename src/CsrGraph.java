@@ -0,0 +1,251 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes a follower graph in compressed sparse row (CSR) format with primitive ints.
+ * Every user id is interned to a dense int id u in [0, n).
+ * The users followed by u are outTargets[outOffsets[u] .. outOffsets[u + 1]), and the followers of u
+ * are inSources[inOffsets[u] .. inOffsets[u + 1]), which is the inverted list of the indexing job.
+ * The user ids are kept in UTF-8 in a name table: names[nameOffsets[u] .. nameOffsets[u + 1]).
+ * The arrays are IntBuffers, so a graph is either built in the heap or memory-mapped from a
+ * CsrGraphFile without parsing.
+ * The input is the same as the input of the Hadoop pipeline: X  F1 F2 ...  Fn
+ */
+public class CsrGraph {
+    private final IntBuffer outOffsets;
+    private final IntBuffer outTargets;
+    private final IntBuffer inOffsets;
+    private final IntBuffer inSources;
+    /**
+     * dense ids in the order of UserWritable, which is the order of the keys in the Hadoop output.
+     */
+    private final IntBuffer order;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+
+    /**
+     * @param outOffsets offsets of the followed users of each user, the length is n + 1
+     * @param outTargets followed users
+     * @param inOffsets offsets of the followers of each user, the length is n + 1
+     * @param inSources followers
+     * @param order dense ids in the order of the user ids
+     * @param nameOffsets offsets of the user ids in the name table, the length is n + 1
+     * @param names user ids in UTF-8
+     */
+    public CsrGraph(IntBuffer outOffsets, IntBuffer outTargets, IntBuffer inOffsets, IntBuffer inSources,
+                    IntBuffer order, IntBuffer nameOffsets, ByteBuffer names) {
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.order = order;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+    }
+
+    /**
+     * @return number of users.
+     */
+    public int size() {
+        return order.capacity();
+    }
+
+    /**
+     * @return number of edges.
+     */
+    public int edges() {
+        return outTargets.capacity();
+    }
+
+    /**
+     * @param u dense id
+     * @return user id as it appears in the input file.
+     */
+    public String getName(int u) {
+        byte[] name = new byte[nameOffsets.get(u + 1) - nameOffsets.get(u)];
+        ByteBuffer buffer = names.duplicate();
+        buffer.position(nameOffsets.get(u));
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    public IntBuffer getOutOffsets() {
+        return outOffsets;
+    }
+
+    public IntBuffer getOutTargets() {
+        return outTargets;
+    }
+
+    public IntBuffer getInOffsets() {
+        return inOffsets;
+    }
+
+    public IntBuffer getInSources() {
+        return inSources;
+    }
+
+    public IntBuffer getOrder() {
+        return order;
+    }
+
+    public IntBuffer getNameOffsets() {
+        return nameOffsets;
+    }
+
+    public ByteBuffer getNames() {
+        return names;
+    }
+
+    /**
+     * reads a graph from a text file, or from all files of a directory except the hidden ones
+     * (names starting with "." or "_" like _SUCCESS).
+     * @param input input file or directory
+     * @return the graph
+     * @throws IOException
+     */
+    public static CsrGraph load(Path input) throws IOException {
+        Builder builder = new Builder();
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(input)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    if (!name.startsWith(".") && !name.startsWith("_") && Files.isRegularFile(file)) {
+                        files.add(file);
+                    }
+                }
+            }
+            Collections.sort(files);
+        } else {
+            files.add(input);
+        }
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    builder.addLine(line);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a CsrGraph from lines of the input format or from single edges.
+     */
+    public static class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> users = new ArrayList<>();
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private int edges;
+
+        /**
+         * @param user user id as it appears in the input file.
+         * @return dense id of the user, a new id is assigned for a new user.
+         */
+        public int intern(String user) {
+            Integer id = ids.get(user);
+            if (id == null) {
+                id = users.size();
+                ids.put(user, id);
+                users.add(user);
+            }
+            return id;
+        }
+
+        /**
+         * adds a line of the input format: X  F1 F2 ...  Fn
+         */
+        public void addLine(String line) {
+            StringTokenizer itr = new StringTokenizer(line);
+            if (!itr.hasMoreTokens()) {
+                return;
+            }
+            int user = intern(itr.nextToken());
+            while (itr.hasMoreTokens()) {
+                addEdge(user, intern(itr.nextToken()));
+            }
+        }
+
+        /**
+         * adds the edge: source follows target.
+         */
+        public void addEdge(int source, int target) {
+            if (edges == sources.length) {
+                sources = Arrays.copyOf(sources, edges * 2);
+                targets = Arrays.copyOf(targets, edges * 2);
+            }
+            sources[edges] = source;
+            targets[edges] = target;
+            edges++;
+        }
+
+        public CsrGraph build() {
+            int n = users.size();
+            int[] outOffsets = new int[n + 1];
+            int[] inOffsets = new int[n + 1];
+            int[] outTargets = new int[edges];
+            int[] inSources = new int[edges];
+            // counting sort of the edges by source and by target, the input order is kept.
+            for (int e = 0; e < edges; e++) {
+                outOffsets[sources[e] + 1]++;
+                inOffsets[targets[e] + 1]++;
+            }
+            for (int u = 0; u < n; u++) {
+                outOffsets[u + 1] += outOffsets[u];
+                inOffsets[u + 1] += inOffsets[u];
+            }
+            int[] outNext = Arrays.copyOf(outOffsets, n);
+            int[] inNext = Arrays.copyOf(inOffsets, n);
+            for (int e = 0; e < edges; e++) {
+                outTargets[outNext[sources[e]]++] = targets[e];
+                inSources[inNext[targets[e]]++] = sources[e];
+            }
+            int[] nameOffsets = new int[n + 1];
+            ByteArrayOutputStream names = new ByteArrayOutputStream();
+            for (int u = 0; u < n; u++) {
+                byte[] name = users.get(u).getBytes(StandardCharsets.UTF_8);
+                names.write(name, 0, name.length);
+                nameOffsets[u + 1] = names.size();
+            }
+            return new CsrGraph(IntBuffer.wrap(outOffsets), IntBuffer.wrap(outTargets), IntBuffer.wrap(inOffsets),
+                    IntBuffer.wrap(inSources), IntBuffer.wrap(order()), IntBuffer.wrap(nameOffsets),
+                    ByteBuffer.wrap(names.toByteArray()));
+        }
+
+        /**
+         * @return dense ids in the order of UserWritable.
+         */
+        private int[] order() {
+            UserWritable[] keys = new UserWritable[users.size()];
+            List<Integer> dense = new ArrayList<>(users.size());
+            for (int u = 0; u < keys.length; u++) {
+                keys[u] = new UserWritable(users.get(u));
+                dense.add(u);
+            }
+            Collections.sort(dense, (a, b) -> keys[a].compareTo(keys[b]));
+            int[] order = new int[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = dense.get(i);
+            }
+            return order;
+        }
+    }
+}
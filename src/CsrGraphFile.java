@@ -0,0 +1,201 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes the binary file format of a CsrGraph, so a graph snapshot is converted once
+ * and then memory-mapped by every run of WtfLocal without parsing the text input.
+ * The file is a header followed by the arrays of the graph, every array is little endian:
+ * magic, version, n, m, name bytes, 3 ints of padding
+ * outOffsets[n + 1], outTargets[m], inOffsets[n + 1], inSources[m], order[n], nameOffsets[n + 1], names
+ * NOTE: the arrays are not delta or varint encoded, so every array is read in place with random access.
+ * Each array is mapped on its own and a mapping is limited to 2GB, so a graph has less than 2^29 edges.
+ */
+public class CsrGraphFile {
+    /**
+     * "WTFG" in ASCII.
+     */
+    private static final int MAGIC = 0x57544647;
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * @param file a local file
+     * @return true if the file starts with the header of a graph file.
+     */
+    public static boolean isGraphFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * writes a graph to a file.
+     * @param graph the graph
+     * @param file output file
+     * @throws IOException
+     */
+    public static void write(CsrGraph graph, Path file) throws IOException {
+        ByteBuffer names = graph.getNames().duplicate();
+        names.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(graph.size()).putInt(graph.edges())
+                    .putInt(names.remaining()).putInt(0).putInt(0).putInt(0);
+            write(channel, buffer, graph.getOutOffsets());
+            write(channel, buffer, graph.getOutTargets());
+            write(channel, buffer, graph.getInOffsets());
+            write(channel, buffer, graph.getInSources());
+            write(channel, buffer, graph.getOrder());
+            write(channel, buffer, graph.getNameOffsets());
+            flush(channel, buffer);
+            while (names.hasRemaining()) {
+                channel.write(names);
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        for (int i = 0; i < values.capacity(); i++) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(values.get(i));
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * memory-maps a graph file, the arrays of the graph are read from the page cache on demand.
+     * @param file graph file
+     * @return the graph
+     * @throws IOException if the file is not a graph file
+     */
+    public static CsrGraph map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a graph file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException(file + " has the unsupported version " + header.getInt(4));
+            }
+            int n = header.getInt(8);
+            int m = header.getInt(12);
+            int nameBytes = header.getInt(16);
+            long position = HEADER;
+            IntBuffer outOffsets = map(channel, position, n + 1);
+            position += 4L * (n + 1);
+            IntBuffer outTargets = map(channel, position, m);
+            position += 4L * m;
+            IntBuffer inOffsets = map(channel, position, n + 1);
+            position += 4L * (n + 1);
+            IntBuffer inSources = map(channel, position, m);
+            position += 4L * m;
+            IntBuffer order = map(channel, position, n);
+            position += 4L * n;
+            IntBuffer nameOffsets = map(channel, position, n + 1);
+            position += 4L * (n + 1);
+            if (position + nameBytes != channel.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            ByteBuffer names = channel.map(FileChannel.MapMode.READ_ONLY, position, nameBytes);
+            return new CsrGraph(outOffsets, outTargets, inOffsets, inSources, order, nameOffsets, names);
+        }
+    }
+
+    private static IntBuffer map(FileChannel channel, long position, int length) throws IOException {
+        if (4L * length > Integer.MAX_VALUE) {
+            throw new IOException("an array of " + length + " ints is larger than a mapping");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * length)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * reads a graph from the output of the indexing job. Every edge X -> F is the directly followed
+     * user F in the inverted list of X, so the graph is built from the followed users and the block
+     * records of hub lists do not need to be merged. The followers are rebuilt from the edges.
+     * If the dictionary path is set, the int ids are decoded to the user ids of the input.
+     * @param conf configuration, see WtfDictionary.PATH
+     * @param input output directory of the indexing job
+     * @return the graph
+     * @throws IOException
+     */
+    public static CsrGraph loadInvertedLists(Configuration conf, org.apache.hadoop.fs.Path input)
+            throws IOException {
+        String dictionary = conf.get(WtfDictionary.PATH);
+        String[] decoder = dictionary == null ? null
+                : WtfDictionary.loadDecoder(conf, new org.apache.hadoop.fs.Path(dictionary));
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        FileSystem fs = input.getFileSystem(conf);
+        UserWritable user = new UserWritable();
+        InvertedListWritable list = new InvertedListWritable();
+        for (FileStatus status : fs.listStatus(input)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+            try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))) {
+                while (reader.next(user, list)) {
+                    int source = builder.intern(decode(decoder, user));
+                    for (UserWritable followed : list.getFollowed()) {
+                        builder.addEdge(source, builder.intern(decode(decoder, followed)));
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static String decode(String[] decoder, UserWritable user) {
+        return decoder == null ? user.toString() : decoder[(int) user.getId()];
+    }
+
+    /**
+     * converts a graph to a graph file.
+     * usage: CsrGraphFile [-D wtf.dictionary.path=...] text|index input output
+     * text: input is the text input of the pipeline, index: input is the output of the indexing job.
+     */
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        CsrGraph graph;
+        if (args[0].equals("text")) {
+            graph = CsrGraph.load(Paths.get(args[1]));
+        } else if (args[0].equals("index")) {
+            graph = loadInvertedLists(conf, new org.apache.hadoop.fs.Path(args[1]));
+        } else {
+            throw new IllegalArgumentException("unknown input format " + args[0] + ", expected text or index");
+        }
+        write(graph, Paths.get(args[2]));
+    }
+}
@@ -0,0 +1,161 @@
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes a value of the indexing and similarity jobs: a user id, a direction flag
+ * and a count. The direction flag replaces the "-" prefix of the text format, it is true
+ * when the key user follows this user directly.
+ * The count is the number of common followed users in the aggregating mode of the similarity job,
+ * otherwise it is 1.
+ * The scorers of WtfSimilarity.Scorer also need the number of users followed by this user (degree)
+ * and a sum of weights of the common followed users. They are only written if they are not 0, which
+ * is marked in the flags byte, so the records of the COUNT scorer do not grow.
+ */
+public class EdgeWritable implements Writable {
+    private static final int DIRECT = 1;
+    private static final int DEGREE = 2;
+    private static final int WEIGHT = 4;
+
+    private final UserWritable user = new UserWritable();
+    private boolean direct;
+    private int count = 1;
+    private int degree;
+    private double weight;
+
+    public EdgeWritable() {
+    }
+
+    /**
+     * @param user user id.
+     * @param direct true if the key user follows this user directly.
+     */
+    public EdgeWritable(UserWritable user, boolean direct) {
+        set(user, direct, 1);
+    }
+
+    /**
+     * @param user user id.
+     * @param direct true if the key user follows this user directly.
+     * @param count number of common followed users.
+     */
+    public EdgeWritable(UserWritable user, boolean direct, int count) {
+        set(user, direct, count);
+    }
+
+    /**
+     * @param user user id.
+     * @param direct true if the key user follows this user directly.
+     * @param count number of common followed users.
+     * @param degree number of users followed by this user, 0 if it is unknown.
+     * @param weight sum of the weights of the common followed users.
+     */
+    public EdgeWritable(UserWritable user, boolean direct, int count, int degree, double weight) {
+        set(user, direct, count, degree, weight);
+    }
+
+    /**
+     * @param user user id.
+     * @param direct true if the key user follows this user directly.
+     * @param count number of common followed users.
+     */
+    public void set(UserWritable user, boolean direct, int count) {
+        set(user, direct, count, 0, 0);
+    }
+
+    /**
+     * @param user user id.
+     * @param direct true if the key user follows this user directly.
+     * @param count number of common followed users.
+     * @param degree number of users followed by this user, 0 if it is unknown.
+     * @param weight sum of the weights of the common followed users.
+     */
+    public void set(UserWritable user, boolean direct, int count, int degree, double weight) {
+        this.user.set(user);
+        this.direct = direct;
+        this.count = count;
+        this.degree = degree;
+        this.weight = weight;
+    }
+
+    /**
+     * adds the count and the weight of more common followed users.
+     */
+    public void add(int count, double weight) {
+        this.count += count;
+        this.weight += weight;
+    }
+
+    public UserWritable getUser() {
+        return user;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getDegree() {
+        return degree;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte((direct ? DIRECT : 0) | (degree != 0 ? DEGREE : 0) | (weight != 0 ? WEIGHT : 0));
+        user.write(out);
+        WritableUtils.writeVInt(out, count);
+        if (degree != 0) {
+            WritableUtils.writeVInt(out, degree);
+        }
+        if (weight != 0) {
+            out.writeDouble(weight);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int flags = in.readByte();
+        direct = (flags & DIRECT) != 0;
+        user.readFields(in);
+        count = WritableUtils.readVInt(in);
+        degree = (flags & DEGREE) != 0 ? WritableUtils.readVInt(in) : 0;
+        weight = (flags & WEIGHT) != 0 ? in.readDouble() : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof EdgeWritable)) {
+            return false;
+        }
+        EdgeWritable other = (EdgeWritable) o;
+        return direct == other.direct && count == other.count && degree == other.degree
+                && Double.compare(weight, other.weight) == 0 && user.equals(other.user);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * user.hashCode() + (direct ? 1 : 0)) + count) + degree;
+    }
+
+    /**
+     * @return the edge in the text format: "-userId" for a directly followed user, otherwise "userId",
+     * followed by ":count" if the count is not 1, "#degree" if the degree is known and "~weight" if
+     * the weight is not 0.
+     */
+    @Override
+    public String toString() {
+        return (direct ? "-" : "") + user + (count != 1 ? ":" + count : "") + (degree != 0 ? "#" + degree : "")
+                + (weight != 0 ? "~" + weight : "");
+    }
+}
@@ -0,0 +1,131 @@
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes a value of the scoring joins of WtfMinHash: a user X and the users followed by X,
+ * sorted in the order of UserWritable. A candidate of a pair which is not joined yet has no followed users.
+ * The users read by readFields() are taken from a pool of the record, so a reused record does not allocate
+ * a UserWritable per followed user.
+ */
+public class FollowedWritable implements Writable {
+    private final UserWritable user = new UserWritable();
+    private final List<UserWritable> followed = new ArrayList<>();
+    /**
+     * users of followed by index, they are reused by the next records.
+     */
+    private final List<UserWritable> pool = new ArrayList<>();
+
+    public UserWritable getUser() {
+        return user;
+    }
+
+    /**
+     * @return the users followed by X in the order of UserWritable.
+     */
+    public List<UserWritable> getFollowed() {
+        return followed;
+    }
+
+    /**
+     * @return number of users followed by both X and the user of other, the lists are merged.
+     */
+    public int common(FollowedWritable other) {
+        List<UserWritable> a = followed;
+        List<UserWritable> b = other.followed;
+        int count = 0;
+        for (int i = 0, j = 0; i < a.size() && j < b.size(); ) {
+            int order = a.get(i).compareTo(b.get(j));
+            if (order == 0) {
+                count++;
+                i++;
+                j++;
+            } else if (order < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if X follows user.
+     */
+    public boolean follows(UserWritable user) {
+        return Collections.binarySearch(followed, user) >= 0;
+    }
+
+    /**
+     * copies other into this record, the users of the pool are reused.
+     */
+    public void set(FollowedWritable other) {
+        user.set(other.user);
+        followed.clear();
+        for (int i = 0; i < other.followed.size(); i++) {
+            followed.add(pooled(i));
+            followed.get(i).set(other.followed.get(i));
+        }
+    }
+
+    private UserWritable pooled(int i) {
+        while (pool.size() <= i) {
+            pool.add(new UserWritable());
+        }
+        return pool.get(i);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        user.write(out);
+        WritableUtils.writeVInt(out, followed.size());
+        for (UserWritable f : followed) {
+            f.write(out);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        user.readFields(in);
+        followed.clear();
+        int size = WritableUtils.readVInt(in);
+        for (int i = 0; i < size; i++) {
+            UserWritable f = pooled(i);
+            f.readFields(in);
+            followed.add(f);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FollowedWritable)) {
+            return false;
+        }
+        FollowedWritable other = (FollowedWritable) o;
+        return user.equals(other.user) && followed.equals(other.followed);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * user.hashCode() + followed.hashCode();
+    }
+
+    /**
+     * @return "X" followed by the followed users like " -F1 -F2 ...".
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder().append(user);
+        for (UserWritable f : followed) {
+            str.append(" -").append(f);
+        }
+        return str.toString();
+    }
+}
@@ -0,0 +1,184 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class generates a synthetic follower graph in the input format: X  F1 F2 ...  Fn
+ * The number of users followed by a user (out degree) follows a power law with the given mean, and the
+ * followed users are drawn from a Zipf law over the popularity ranks of the users, so the number of followers
+ * (in degree) follows a power law too and a few users are followed by many users like the hubs of a real
+ * follower graph. The popular users are shuffled over the ids.
+ * The graph only depends on the options and the seed.
+ */
+public class GraphGenerator {
+    /**
+     * configuration key for the number of users.
+     */
+    public static final String USERS = "wtf.generator.users";
+    /**
+     * configuration key for the mean number of users followed by a user.
+     */
+    public static final String DEGREE = "wtf.generator.degree";
+    /**
+     * configuration key for the exponent of the out degree distribution, it must be greater than 2.
+     */
+    public static final String OUT_EXPONENT = "wtf.generator.out.exponent";
+    /**
+     * configuration key for the exponent of the in degree distribution, it must be greater than 1, 0 means
+     * that the followed users are uniform.
+     */
+    public static final String IN_EXPONENT = "wtf.generator.in.exponent";
+    /**
+     * configuration key for the IdStyle of the user ids.
+     */
+    public static final String IDS = "wtf.generator.ids";
+    public static final String SEED = "wtf.generator.seed";
+
+    /**
+     * The style of the generated user ids.
+     */
+    public enum IdStyle {
+        /**
+         * 1, 2, 3, ...
+         */
+        NUMERIC,
+        /**
+         * user1, user2, user3, ...
+         */
+        STRING
+    }
+
+    private final int users;
+    private final double degree;
+    private final double outExponent;
+    private final double rankExponent;
+    private final IdStyle ids;
+    private final long seed;
+
+    /**
+     * @param users number of users
+     * @param degree mean number of users followed by a user
+     * @param outExponent exponent of the out degree distribution, greater than 2
+     * @param inExponent exponent of the in degree distribution, greater than 1, 0 means uniform
+     * @param ids style of the user ids
+     * @param seed random seed
+     */
+    public GraphGenerator(int users, double degree, double outExponent, double inExponent, IdStyle ids, long seed) {
+        if (outExponent <= 2) {
+            throw new IllegalArgumentException("the out degree exponent must be greater than 2");
+        }
+        if (inExponent != 0 && inExponent <= 1) {
+            throw new IllegalArgumentException("the in degree exponent must be greater than 1");
+        }
+        this.users = users;
+        this.degree = degree;
+        this.outExponent = outExponent;
+        // the in degree exponent of a Zipf law with exponent s is 1 + 1/s.
+        this.rankExponent = inExponent == 0 ? 0 : 1 / (inExponent - 1);
+        this.ids = ids;
+        this.seed = seed;
+    }
+
+    /**
+     * @param conf configuration with the wtf.generator.* options
+     */
+    public GraphGenerator(Configuration conf) {
+        this(conf.getInt(USERS, 1000), conf.getDouble(DEGREE, 20), conf.getDouble(OUT_EXPONENT, 2.5),
+                conf.getDouble(IN_EXPONENT, 2.2), conf.getEnum(IDS, IdStyle.NUMERIC), conf.getLong(SEED, 1));
+    }
+
+    /**
+     * @param user user index in [0, users)
+     * @return user id of the user.
+     */
+    public String id(int user) {
+        return ids == IdStyle.NUMERIC ? Integer.toString(user + 1) : "user" + (user + 1);
+    }
+
+    /**
+     * writes the graph.
+     * @param fs file system
+     * @param file output file
+     * @return number of edges
+     * @throws IOException
+     */
+    public long write(FileSystem fs, Path file) throws IOException {
+        Random random = new Random(seed);
+        // popularity rank -> user, so the hubs are spread over the ids.
+        int[] byRank = new int[users];
+        for (int i = 0; i < users; i++) {
+            byRank[i] = i;
+        }
+        for (int i = users - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int user = byRank[i];
+            byRank[i] = byRank[j];
+            byRank[j] = user;
+        }
+        // the minimum of the continuous power law with the mean degree.
+        double minDegree = degree * (outExponent - 2) / (outExponent - 1);
+        long edges = 0;
+        Set<Integer> followed = new HashSet<>();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(file, true),
+                StandardCharsets.UTF_8))) {
+            for (int user = 0; user < users; user++) {
+                double pareto = minDegree * Math.pow(1 - random.nextDouble(), -1 / (outExponent - 1));
+                int outDegree = (int) Math.min(users - 1, Math.max(1, Math.round(pareto)));
+                followed.clear();
+                writer.write(id(user));
+                writer.write('\t');
+                // a user with a high out degree may not find enough distinct users of a skewed popularity.
+                for (int attempt = 0; followed.size() < outDegree && attempt < 4 * outDegree; attempt++) {
+                    int target = byRank[rank(random)];
+                    if (target != user && followed.add(target)) {
+                        writer.write(' ');
+                        writer.write(id(target));
+                    }
+                }
+                edges += followed.size();
+                writer.write('\n');
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * @return a popularity rank in [0, users), rank r is drawn with a probability proportional to
+     * (r + 1)^-rankExponent by the inverse transform of the continuous power law.
+     */
+    private int rank(Random random) {
+        if (rankExponent == 0) {
+            return random.nextInt(users);
+        }
+        double u = random.nextDouble();
+        double x;
+        if (rankExponent == 1) {
+            x = Math.pow(users + 1, u);
+        } else {
+            double a = 1 - rankExponent;
+            x = Math.pow((Math.pow(users + 1, a) - 1) * u + 1, 1 / a);
+        }
+        return Math.min(users - 1, (int) x - 1);
+    }
+
+    /**
+     * usage: GraphGenerator [-D wtf.generator.users=1000 -D wtf.generator.degree=20 ...] output
+     */
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path output = new Path(args[0]);
+        long edges = new GraphGenerator(conf).write(output.getFileSystem(conf), output);
+        System.out.println(conf.getInt(USERS, 1000) + " users, " + edges + " edges");
+    }
+}
@@ -0,0 +1,354 @@
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes an inverted list of the indexing job for a user X:
+ * the followers [ Y1, Y2, ... , Yk ] where the Yi all follow user X, and the users [ F1, F2, ... ]
+ * which are followed directly by X (the "-Fi" of the text format).
+ * A block record of a hub list (see WtfSimilarity.HubPolicy.BLOCK) has a second block of followers,
+ * and only the pairs between the followers and the block followers are generated from it.
+ * For the scorers which need degrees (see WtfSimilarity.Scorer) the list also has the number of users
+ * followed by each follower, in the same order as the followers. The degree lists are empty otherwise.
+ * A block record also keeps the number of followers of the whole hub list.
+ * A long list can be split into parts for the threads of the similarity mapper (see
+ * WtfSimilarity.InvertedListInputFormat), then every part is a copy of the list which generates the pairs
+ * of one range of the followers.
+ * The users read by readFields() and add() are taken from pools of the record, so a reused record does not
+ * allocate a UserWritable per follower, and the degrees are kept in growable int arrays.
+ * The users of the lists are therefore overwritten by the next readFields() or add() after clear().
+ */
+public class InvertedListWritable implements Writable {
+    private final List<UserWritable> followers = new ArrayList<>();
+    private final List<UserWritable> followed = new ArrayList<>();
+    private final List<UserWritable> blockFollowers = new ArrayList<>();
+    private final Degrees followerDegrees = new Degrees();
+    private final Degrees blockFollowerDegrees = new Degrees();
+    /**
+     * users of the lists above by index, they are reused by the next records.
+     */
+    private final List<UserWritable> followerPool = new ArrayList<>();
+    private final List<UserWritable> followedPool = new ArrayList<>();
+    private final List<UserWritable> blockFollowerPool = new ArrayList<>();
+    /**
+     * number of followers of the whole list for a block record, 0 if it is the size of followers.
+     */
+    private int followerCount;
+    /**
+     * part of a split list and the number of its parts, 0 parts if the list is not split.
+     */
+    private int part;
+    private int parts;
+
+    /**
+     * @return users who follow user X.
+     */
+    public List<UserWritable> getFollowers() {
+        return followers;
+    }
+
+    /**
+     * @return users who are followed directly by user X.
+     */
+    public List<UserWritable> getFollowed() {
+        return followed;
+    }
+
+    /**
+     * @return the second block of followers of a block record, otherwise an empty list.
+     */
+    public List<UserWritable> getBlockFollowers() {
+        return blockFollowers;
+    }
+
+    /**
+     * @return numbers of users followed by the followers, or an empty list if they are unknown.
+     */
+    public Degrees getFollowerDegrees() {
+        return followerDegrees;
+    }
+
+    /**
+     * @return numbers of users followed by the block followers, or an empty list if they are unknown.
+     */
+    public Degrees getBlockFollowerDegrees() {
+        return blockFollowerDegrees;
+    }
+
+    /**
+     * @return number of users who follow user X, for a block record it is the number of followers of the hub list.
+     */
+    public int getFollowerCount() {
+        return followerCount != 0 ? followerCount : followers.size();
+    }
+
+    public void setFollowerCount(int followerCount) {
+        this.followerCount = followerCount;
+    }
+
+    /**
+     * @return the part of a split list, from 0 to getParts() - 1.
+     */
+    public int getPart() {
+        return part;
+    }
+
+    /**
+     * @return number of parts of a split list, 1 if the list is not split.
+     */
+    public int getParts() {
+        return parts != 0 ? parts : 1;
+    }
+
+    /**
+     * @param part the part of the list which generates pairs
+     * @param parts number of parts of the list, 1 if it is not split
+     */
+    public void setPart(int part, int parts) {
+        this.part = part;
+        this.parts = parts == 1 ? 0 : parts;
+    }
+
+    /**
+     * @return the degree at index i of a degree list, 0 if the degrees are unknown.
+     */
+    public static int degree(Degrees degrees, int i) {
+        return degrees.isEmpty() ? 0 : degrees.get(i);
+    }
+
+    /**
+     * adds a copy of an edge of the indexing mapper to the list.
+     * @param edge a follower of X with its degree, or a directly followed user of X if the edge is direct.
+     */
+    public void add(EdgeWritable edge) {
+        if (edge.isDirect()) {
+            followed.add(pooled(followedPool, followed.size(), edge.getUser()));
+            return;
+        }
+        while (edge.getDegree() != 0 && followerDegrees.size() < followers.size()) {
+            // a follower without a degree, so the degrees of the list are unknown.
+            followerDegrees.add(0);
+        }
+        followers.add(pooled(followerPool, followers.size(), edge.getUser()));
+        if (edge.getDegree() != 0 || !followerDegrees.isEmpty()) {
+            followerDegrees.add(edge.getDegree());
+        }
+    }
+
+    public void clear() {
+        followers.clear();
+        followed.clear();
+        blockFollowers.clear();
+        followerDegrees.clear();
+        blockFollowerDegrees.clear();
+        followerCount = 0;
+        part = 0;
+        parts = 0;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        write(out, followers);
+        write(out, followed);
+        write(out, blockFollowers);
+        writeDegrees(out, followerDegrees);
+        writeDegrees(out, blockFollowerDegrees);
+        WritableUtils.writeVInt(out, followerCount);
+        WritableUtils.writeVInt(out, parts);
+        if (parts != 0) {
+            WritableUtils.writeVInt(out, part);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        readFields(in, followers, followerPool);
+        readFields(in, followed, followedPool);
+        readFields(in, blockFollowers, blockFollowerPool);
+        readDegrees(in, followerDegrees);
+        readDegrees(in, blockFollowerDegrees);
+        followerCount = WritableUtils.readVInt(in);
+        parts = WritableUtils.readVInt(in);
+        part = parts != 0 ? WritableUtils.readVInt(in) : 0;
+    }
+
+    private static void writeDegrees(DataOutput out, Degrees degrees) throws IOException {
+        WritableUtils.writeVInt(out, degrees.size());
+        for (int i = 0; i < degrees.size(); i++) {
+            WritableUtils.writeVInt(out, degrees.get(i));
+        }
+    }
+
+    private static void readDegrees(DataInput in, Degrees degrees) throws IOException {
+        degrees.clear();
+        int size = WritableUtils.readVInt(in);
+        for (int i = 0; i < size; i++) {
+            degrees.add(WritableUtils.readVInt(in));
+        }
+    }
+
+    private static void write(DataOutput out, List<UserWritable> users) throws IOException {
+        WritableUtils.writeVInt(out, users.size());
+        for (UserWritable user : users) {
+            user.write(out);
+        }
+    }
+
+    private static void readFields(DataInput in, List<UserWritable> users, List<UserWritable> pool)
+            throws IOException {
+        users.clear();
+        int size = WritableUtils.readVInt(in);
+        for (int i = 0; i < size; i++) {
+            UserWritable user = pooled(pool, i, null);
+            user.readFields(in);
+            users.add(user);
+        }
+    }
+
+    /**
+     * @param user the user which is copied into the pooled user, or null
+     * @return the user at index i of the pool, it is allocated once and reused by the next records.
+     */
+    private static UserWritable pooled(List<UserWritable> pool, int i, UserWritable user) {
+        while (pool.size() <= i) {
+            pool.add(new UserWritable());
+        }
+        UserWritable pooled = pool.get(i);
+        if (user != null) {
+            pooled.set(user);
+        }
+        return pooled;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InvertedListWritable)) {
+            return false;
+        }
+        InvertedListWritable other = (InvertedListWritable) o;
+        return followers.equals(other.followers) && followed.equals(other.followed)
+                && blockFollowers.equals(other.blockFollowers) && followerDegrees.equals(other.followerDegrees)
+                && blockFollowerDegrees.equals(other.blockFollowerDegrees) && followerCount == other.followerCount
+                && part == other.part && parts == other.parts;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * followers.hashCode() + followed.hashCode()) + blockFollowers.hashCode();
+    }
+
+    /**
+     * @return the inverted list in the text format: " Y1 Y2 ... Yk -F1 -F2 ...", the block followers
+     * of a block record are appended after " |". A known degree is appended to a follower as "#degree".
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        append(str, followers, followerDegrees);
+        for (UserWritable user : followed) {
+            str.append(" -").append(user);
+        }
+        if (!blockFollowers.isEmpty()) {
+            str.append(" |");
+            append(str, blockFollowers, blockFollowerDegrees);
+        }
+        return str.toString();
+    }
+
+    private static void append(StringBuilder str, List<UserWritable> users, Degrees degrees) {
+        for (int i = 0; i < users.size(); i++) {
+            str.append(' ').append(users.get(i));
+            if (degree(degrees, i) != 0) {
+                str.append('#').append(degrees.get(i));
+            }
+        }
+    }
+
+    /**
+     * A growable list of degrees without boxing.
+     */
+    public static final class Degrees {
+        private int[] values = new int[16];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public int get(int i) {
+            return values[i];
+        }
+
+        public void add(int degree) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = degree;
+        }
+
+        /**
+         * adds the degrees of other from index from to index to - 1.
+         */
+        public void addAll(Degrees other, int from, int to) {
+            for (int i = from; i < to; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        public void addAll(Degrees other) {
+            addAll(other, 0, other.size);
+        }
+
+        public void swap(int i, int j) {
+            int degree = values[i];
+            values[i] = values[j];
+            values[j] = degree;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Degrees)) {
+                return false;
+            }
+            Degrees other = (Degrees) o;
+            if (size != other.size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (values[i] != other.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < size; i++) {
+                hash = 31 * hash + values[i];
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(Arrays.copyOf(values, size));
+        }
+    }
+}
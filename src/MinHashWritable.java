@@ -0,0 +1,131 @@
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes a value of the LSH job of WtfMinHash: a user X in the bucket of one band, with the
+ * fingerprints of the bands of its MinHash signature and the number of users followed by X. The fingerprints
+ * let the reducer detect that a pair already collided in an earlier band, so only the fingerprints of the
+ * bands before the band of the record are written. The followed users are not part of the record, the
+ * candidate pairs are joined with them afterwards, so a band record stays small whatever the number of users
+ * followed by X.
+ */
+public class MinHashWritable implements Writable {
+    private final UserWritable user = new UserWritable();
+    private int band;
+    private int[] fingerprints = new int[0];
+    private int degree;
+
+    public UserWritable getUser() {
+        return user;
+    }
+
+    /**
+     * @return the band of the bucket of this record.
+     */
+    public int getBand() {
+        return band;
+    }
+
+    public void setBand(int band) {
+        this.band = band;
+    }
+
+    /**
+     * @return 32 bit fingerprints of the band hashes of X, one per band. A record which is read has the
+     * fingerprints of the bands before its band only.
+     */
+    public int[] getFingerprints() {
+        return fingerprints;
+    }
+
+    public void setFingerprints(int[] fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @return number of users followed by X.
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    public void setDegree(int degree) {
+        this.degree = degree;
+    }
+
+    /**
+     * @return true if X and the user of other collided in a band before the band of this record.
+     */
+    public boolean collidedBefore(MinHashWritable other) {
+        for (int i = 0; i < band; i++) {
+            if (fingerprints[i] == other.fingerprints[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a deep copy, the reducer values are reused by hadoop.
+     */
+    public MinHashWritable copy() {
+        MinHashWritable copy = new MinHashWritable();
+        copy.user.set(user);
+        copy.band = band;
+        copy.fingerprints = Arrays.copyOf(fingerprints, fingerprints.length);
+        copy.degree = degree;
+        return copy;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        user.write(out);
+        WritableUtils.writeVInt(out, band);
+        for (int i = 0; i < band; i++) {
+            out.writeInt(fingerprints[i]);
+        }
+        WritableUtils.writeVInt(out, degree);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        user.readFields(in);
+        band = WritableUtils.readVInt(in);
+        if (fingerprints.length < band) {
+            fingerprints = new int[band];
+        }
+        for (int i = 0; i < band; i++) {
+            fingerprints[i] = in.readInt();
+        }
+        degree = WritableUtils.readVInt(in);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MinHashWritable)) {
+            return false;
+        }
+        MinHashWritable other = (MinHashWritable) o;
+        return band == other.band && user.equals(other.user) && degree == other.degree
+                && Arrays.equals(Arrays.copyOf(fingerprints, band), Arrays.copyOf(other.fingerprints, band));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * user.hashCode() + band) + degree;
+    }
+
+    /**
+     * @return "X@band".
+     */
+    @Override
+    public String toString() {
+        return user + "@" + band;
+    }
+}
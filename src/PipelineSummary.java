@@ -0,0 +1,232 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskReport;
+import org.apache.hadoop.mapreduce.TaskType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class runs the jobs of a pipeline one after the other and keeps a summary of every stage: the job,
+ * its wall time measured by the driver, whether it was successful and all its counters. A driver stops the
+ * pipeline after the first failed stage, writes the summary as JSON and exits with a non-zero status:
+ * {"successful":true,"duration_ms":...,"stages":[{"stage":"indexing","job":"wtf indexing","id":"job_...",
+ *  "successful":true,"duration_ms":...,"counters":{"group":{"COUNTER":value,...},...}},...]}
+ * A counter whose name starts with MAX_ is the maximum of a value in a reduce task, so the job counter is the
+ * sum of the maxima of the tasks. The summary has the maximum of the task counters instead, and leaves the
+ * counter out if the task counters are unknown, like in the local runner with several reduce tasks.
+ */
+public class PipelineSummary {
+    /**
+     * configuration key of the file of the JSON summary, the default depends on the driver.
+     */
+    public static final String PATH = "wtf.summary.path";
+    /**
+     * name prefix of the counters which are maxima of the reduce tasks.
+     */
+    static final String MAXIMUM_PREFIX = "MAX_";
+
+    /**
+     * A completed stage.
+     */
+    private static class Stage {
+        final String name;
+        final Job job;
+        final long durationMillis;
+        final boolean successful;
+        /**
+         * "group/counter" -> maximum over the reduce tasks of the MAX_ counters which are known.
+         */
+        final Map<String, Long> maxima;
+
+        Stage(String name, Job job, long durationMillis, boolean successful, Map<String, Long> maxima) {
+            this.name = name;
+            this.job = job;
+            this.durationMillis = durationMillis;
+            this.successful = successful;
+            this.maxima = maxima;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * submits a job and waits for its completion.
+     * @param stage stage name like "indexing"
+     * @param job configured job
+     * @return true if the job was successful.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     * @throws InterruptedException
+     */
+    public boolean run(String stage, Job job) throws IOException, ClassNotFoundException, InterruptedException {
+        long start = System.currentTimeMillis();
+        boolean successful = job.waitForCompletion(true);
+        long duration = System.currentTimeMillis() - start;
+        stages.add(new Stage(stage, job, duration, successful, maxima(job)));
+        return successful;
+    }
+
+    /**
+     * @return the maxima of the MAX_ counters of a completed job over its reduce task reports. Without task
+     * reports the job counter is the maximum only if the job had at most one reduce task.
+     */
+    private static Map<String, Long> maxima(Job job) throws IOException, InterruptedException {
+        Map<String, Long> maxima = new HashMap<>();
+        Counters counters = job.getCounters();
+        if (counters == null) {
+            return maxima;
+        }
+        TaskReport[] reports = job.getTaskReports(TaskType.REDUCE);
+        for (CounterGroup group : counters) {
+            for (Counter counter : group) {
+                if (!counter.getName().startsWith(MAXIMUM_PREFIX)) {
+                    continue;
+                }
+                String key = group.getName() + "/" + counter.getName();
+                if (reports.length > 0) {
+                    long maximum = 0;
+                    for (TaskReport report : reports) {
+                        if (report.getTaskCounters() != null) {
+                            maximum = Math.max(maximum,
+                                    report.getTaskCounters().findCounter(group.getName(), counter.getName()).getValue());
+                        }
+                    }
+                    maxima.put(key, maximum);
+                } else if (job.getNumReduceTasks() <= 1) {
+                    maxima.put(key, counter.getValue());
+                }
+            }
+        }
+        return maxima;
+    }
+
+    /**
+     * @return the jobs of the completed stages in the order they ran.
+     */
+    public List<Job> getJobs() {
+        List<Job> jobs = new ArrayList<>();
+        for (Stage stage : stages) {
+            jobs.add(stage.job);
+        }
+        return jobs;
+    }
+
+    /**
+     * @return true if all stages were successful.
+     */
+    public boolean isSuccessful() {
+        for (Stage stage : stages) {
+            if (!stage.successful) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return sum of the wall times of the stages.
+     */
+    public long getDurationMillis() {
+        long duration = 0;
+        for (Stage stage : stages) {
+            duration += stage.durationMillis;
+        }
+        return duration;
+    }
+
+    /**
+     * @return sum of a counter over all stages.
+     */
+    public long getCounter(Enum<?> counter) throws IOException {
+        long sum = 0;
+        for (Stage stage : stages) {
+            Counters counters = stage.job.getCounters();
+            if (counters != null) {
+                sum += counters.findCounter(counter).getValue();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the summary as a JSON object.
+     */
+    public String toJson() throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"successful\":").append(isSuccessful())
+                .append(",\"duration_ms\":").append(getDurationMillis())
+                .append(",\"stages\":[");
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            json.append(i == 0 ? "{" : ",{")
+                    .append("\"stage\":").append(quote(stage.name))
+                    .append(",\"job\":").append(quote(stage.job.getJobName()))
+                    .append(",\"id\":").append(quote(String.valueOf(stage.job.getJobID())))
+                    .append(",\"successful\":").append(stage.successful)
+                    .append(",\"duration_ms\":").append(stage.durationMillis)
+                    .append(",\"counters\":{");
+            Counters counters = stage.job.getCounters();
+            if (counters != null) {
+                String separator = "";
+                for (CounterGroup group : counters) {
+                    json.append(separator).append(quote(group.getName())).append(":{");
+                    String counterSeparator = "";
+                    for (Counter counter : group) {
+                        long value = counter.getValue();
+                        if (counter.getName().startsWith(MAXIMUM_PREFIX)) {
+                            Long maximum = stage.maxima.get(group.getName() + "/" + counter.getName());
+                            if (maximum == null) {
+                                continue;
+                            }
+                            value = maximum;
+                        }
+                        json.append(counterSeparator).append(quote(counter.getName())).append(':').append(value);
+                        counterSeparator = ",";
+                    }
+                    json.append('}');
+                    separator = ",";
+                }
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * writes the JSON summary to a file of the file system of the path.
+     */
+    public void write(Configuration conf, Path file) throws IOException {
+        try (FSDataOutputStream out = file.getFileSystem(conf).create(file, true)) {
+            out.write(toJson().getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * @return a JSON string of a value.
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -3,61 +3,117 @@ import java.util.List;
 /**
  * Created by Mojtaba on 2017-02-11.
  * This Class describe a recommendation, and a recommendation has a
- * user id and a number of followed user by this user in common.
+ * user id and a score: the number of followed user by this user in common,
+ * or the score of another WtfSimilarity.Scorer.
  */
-public class Recommendation implements Comparable {
+public class Recommendation implements Comparable<Recommendation> {
     /**
      * user Id as a string
      */
     private String userId;
     /**
-     * the number of followed user by this user in common as an int.
+     * the score, for the COUNT scorer the number of followed user by this user in common.
      */
-    private int commonUserCount;
+    private double score;
     /**
      * Constructor of Recommendation class
      * @param userId user id as a String
-     * @param commonUserCount number of followed user by this user in common as an int number.
+     * @param score number of followed user by this user in common, or another score.
      */
-    public Recommendation(String userId, int commonUserCount) {
+    public Recommendation(String userId, double score) {
         this.userId = userId;
-        this.commonUserCount = commonUserCount;
+        this.score = score;
+    }
+    /**
+     * @return user id as a string.
+     */
+    public String getUserId() {
+        return userId;
+    }
+    /**
+     * @return the score, for the COUNT scorer the number of followed user by this user in common.
+     */
+    public double getScore() {
+        return score;
     }
     /**
      * This method override compareTo method because it is used for sorting
      * a list or collection of Recommendations with sort method.
-     * @param o other Recommendation as an Object
-     * @return 0 if two Recommendations have same commonUserCount,
-     * 1 if the commonUserCount of first Recommendation is
-     * less than the commonUserCount of second Recommendation,
-     * and -1 if it is grater than the commonUserCount of second Recommendation.
+     * @param other other Recommendation
+     * @return 1 if the score of first Recommendation is
+     * less than the score of second Recommendation,
+     * and -1 if it is grater than the score of second Recommendation.
+     * If two Recommendations have same score, they are compared by user id
+     * in the order of UserWritable: numeric ids first by value, then string ids.
      */
     @Override
-    public int compareTo(Object o) {
-        if(this.commonUserCount == ((Recommendation)o).commonUserCount)
-            return 0;
+    public int compareTo(Recommendation other) {
+        if(this.score == other.score)
+            return compareUserIds(this.userId, other.userId);
         else
-            return this.commonUserCount > ((Recommendation) o).commonUserCount ? -1 : 1;
+            return this.score > other.score ? -1 : 1;
+    }
+
+    /**
+     * @return the order of two user ids without parsing them: a numeric id without leading zeros
+     * is smaller than a longer one, and numeric ids are smaller than string ids.
+     */
+    private static int compareUserIds(String a, String b){
+        boolean numericA = UserWritable.isNumeric(a);
+        boolean numericB = UserWritable.isNumeric(b);
+        if(numericA != numericB)
+            return numericA ? -1 : 1;
+        if(numericA && a.length() != b.length())
+            return a.length() < b.length() ? -1 : 1;
+        return a.compareTo(b);
+    }
+    /**
+     * rounds a score to the six decimals of formatScore(), so scores which are printed equal are ranked
+     * equal and their ties are ordered by user id.
+     * @param score non negative score
+     * @return the score rounded to six decimals.
+     */
+    public static double roundScore(double score){
+        return Math.round(score * 1000000) / 1000000.0;
+    }
+    /**
+     * formats a score like the output of the jobs: an integral score without a fraction, otherwise
+     * rounded to six decimals without trailing zeros, e.g. "3", "0.25" or "1.442695".
+     * @param score non negative score
+     * @return the score as a string.
+     */
+    public static String formatScore(double score){
+        long scaled = Math.round(score * 1000000);
+        long fraction = scaled % 1000000;
+        if(fraction == 0)
+            return Long.toString(scaled / 1000000);
+        StringBuilder str = new StringBuilder().append(scaled / 1000000).append('.');
+        String digits = Long.toString(1000000 + fraction);
+        int end = digits.length();
+        while(digits.charAt(end - 1) == '0')
+            end--;
+        return str.append(digits, 1, end).toString();
     }
     /**
-     * This method override toString method in order to have this structure "userId(commonUserCount)"
+     * This method override toString method in order to have this structure "userId(score)"
      * for converting to string of a Recommendation.
-     * @return string of Recommendation Object in this style: userId(commonUserCount)
+     * @return string of Recommendation Object in this style: userId(score)
      */
     @Override
     public String toString() {
-        return this.userId + "(" + this.commonUserCount + ")";
+        return this.userId + "(" + formatScore(this.score) + ")";
     }
     /**
      * it received a list of recommendations and return convert it to a string format.
      * @param Recommendations list of Recommendation Object
      * @return recommendations in a StringBuffer type in this style:
-     * "userId1(commonUserCount1) userId2(commonUserCount2) ... userIdn(commonUserCountn)"
+     * "userId1(score1) userId2(score2) ... userIdn(scoren)"
      */
     public static StringBuffer toStringBuffer(List<Recommendation> Recommendations){
-        StringBuffer str = new StringBuffer("");
+        StringBuffer str = new StringBuffer();
         for(Recommendation recommendation: Recommendations){
-            str.append(" " + recommendation.toString());
+            str.append(' ').append(recommendation.userId).append('(')
+                    .append(formatScore(recommendation.score)).append(')');
         }
         return str;
     }
@@ -0,0 +1,468 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class is a read-only store of the similarity output for lookups of the recommendations of one user.
+ * The rows are sorted by user id in the order of UserWritable (numeric ids first by value, then string
+ * ids by their bytes) and written as binary records into one file, which is memory-mapped:
+ * magic, version
+ * records: key length, key, n, n * (user id length, user id, score as a double)
+ * sparse index: file offsets of every interval-th record
+ * footer: sparse index offset, rows, interval, segment size, magic
+ * A lookup does a binary search in the sparse index, which is kept in the heap, and scans at most
+ * interval records; the keys are compared in place in the mapped file and only the first limit
+ * recommendations of the row are decoded. The file is mapped in segments of at most 1GB, a record never crosses a segment
+ * and the end of a segment is padded with zeros.
+ */
+public class RecommendationIndex {
+    /**
+     * "WTFR" in ASCII.
+     */
+    private static final int MAGIC = 0x57544652;
+    private static final int VERSION = 2;
+    private static final int HEADER = 8;
+    private static final int FOOTER = 28;
+    /**
+     * configuration key for the number of records per sparse index entry.
+     */
+    public static final String INTERVAL = "wtf.serving.interval";
+    public static final int DEFAULT_INTERVAL = 64;
+    static final int DEFAULT_SEGMENT = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int segment;
+    private final long end;
+    /**
+     * file offsets of the records 0, interval, 2 * interval, ...
+     */
+    private final long[] sparse;
+    private final long rows;
+    private final int interval;
+
+    private RecommendationIndex(ByteBuffer[] segments, int segment, long end, long[] sparse, long rows, int interval) {
+        this.segments = segments;
+        this.segment = segment;
+        this.end = end;
+        this.sparse = sparse;
+        this.rows = rows;
+        this.interval = interval;
+    }
+
+    /**
+     * @return number of users in the index.
+     */
+    public long size() {
+        return rows;
+    }
+
+    /**
+     * memory-maps an index file.
+     * @param file index file of build()
+     * @return the index
+     * @throws IOException if the file is not an index file
+     */
+    public static RecommendationIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER + FOOTER) {
+                throw new IOException(file + " is not a recommendation index");
+            }
+            ByteBuffer footer = read(channel, size - FOOTER, FOOTER);
+            long sparseStart = footer.getLong();
+            long rows = footer.getLong();
+            int interval = footer.getInt();
+            int segment = footer.getInt();
+            ByteBuffer header = read(channel, 0, HEADER);
+            if (footer.getInt() != MAGIC || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a recommendation index");
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException(file + " is an index of another version, it has to be built again");
+            }
+            ByteBuffer index = read(channel, sparseStart, (int) (size - FOOTER - sparseStart));
+            long[] sparse = new long[index.remaining() / 8];
+            for (int i = 0; i < sparse.length; i++) {
+                sparse[i] = index.getLong();
+            }
+            ByteBuffer[] segments = new ByteBuffer[(int) ((sparseStart + segment - 1) / segment)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i * segment;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segment, sparseStart - start));
+            }
+            return new RecommendationIndex(segments, segment, sparseStart, sparse, rows, interval);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param userId user id as it appears in the input file
+     * @param limit maximum number of recommendations, 0 means all of them
+     * @return the best recommendations of the user, or an empty list if the user has no row.
+     */
+    public List<Recommendation> getRecommendations(String userId, int limit) {
+        ByteBuffer key = ByteBuffer.wrap(userId.getBytes(StandardCharsets.UTF_8));
+        // the last sparse entry whose key is not greater than the user id.
+        int low = 0;
+        int high = sparse.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(key, sparse[middle]) >= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return Collections.emptyList();
+        }
+        long offset = sparse[block];
+        for (int i = 0; i < interval && offset < end; i++) {
+            int c = compare(key, offset);
+            if (c == 0) {
+                return read(offset, limit);
+            }
+            if (c < 0) {
+                break;
+            }
+            offset = next(offset);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return a view of the segment of a record with the position at the record.
+     */
+    private ByteBuffer record(long offset) {
+        ByteBuffer buffer = segments[(int) (offset / segment)].duplicate();
+        buffer.position((int) (offset % segment));
+        return buffer;
+    }
+
+    /**
+     * @return offset of the record after the record at offset, the padding at the end of a segment is skipped.
+     * It only uses absolute reads, so the shared segment is neither copied nor moved.
+     */
+    private long next(long offset) {
+        ByteBuffer buffer = segments[(int) (offset / segment)];
+        int position = (int) (offset % segment);
+        position += 4 + buffer.getInt(position);
+        int n = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < n; i++) {
+            position += 4 + buffer.getInt(position) + 8;
+        }
+        long start = offset - offset % segment;
+        // a key is never empty, so a zero length is padding.
+        if (buffer.limit() - position < 4 || buffer.getInt(position) == 0) {
+            return start + segment;
+        }
+        return start + position;
+    }
+
+    /**
+     * compares a user id with the key of the record at offset in place in the mapped segment.
+     */
+    private int compare(ByteBuffer key, long offset) {
+        ByteBuffer buffer = segments[(int) (offset / segment)];
+        int position = (int) (offset % segment);
+        return compare(key, 0, key.limit(), buffer, position + 4, buffer.getInt(position));
+    }
+
+    private List<Recommendation> read(long offset, int limit) {
+        ByteBuffer buffer = record(offset);
+        buffer.position(buffer.position() + 4 + buffer.getInt());
+        int n = buffer.getInt();
+        if (limit > 0) {
+            n = Math.min(n, limit);
+        }
+        List<Recommendation> recommendations = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            recommendations.add(new Recommendation(new String(name, StandardCharsets.UTF_8), buffer.getDouble()));
+        }
+        return recommendations;
+    }
+
+    /**
+     * compares two user ids in the order of UserWritable without parsing them: numeric ids are
+     * smaller than string ids, a shorter numeric id is smaller, otherwise the bytes are compared.
+     */
+    static int compare(byte[] a, byte[] b) {
+        return compare(ByteBuffer.wrap(a), 0, a.length, ByteBuffer.wrap(b), 0, b.length);
+    }
+
+    /**
+     * compares two user ids which are stored in buffers, with absolute reads only.
+     */
+    private static int compare(ByteBuffer a, int startA, int lengthA, ByteBuffer b, int startB, int lengthB) {
+        boolean numericA = isNumeric(a, startA, lengthA);
+        boolean numericB = isNumeric(b, startB, lengthB);
+        if (numericA != numericB) {
+            return numericA ? -1 : 1;
+        }
+        if (numericA && lengthA != lengthB) {
+            return lengthA < lengthB ? -1 : 1;
+        }
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            byte x = a.get(startA + i);
+            byte y = b.get(startB + i);
+            if (x != y) {
+                return (x & 0xff) - (y & 0xff);
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * @return true if the UTF-8 user id of length bytes at start is numeric like UserWritable.isNumeric().
+     */
+    private static boolean isNumeric(ByteBuffer user, int start, int length) {
+        if (length == 0 || length > 18 || (length > 1 && user.get(start) == '0')) {
+            return false;
+        }
+        for (int i = start; i < start + length; i++) {
+            byte b = user.get(i);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A row of the similarity output: X\t Y1(c1) Y2(c2) ...
+     */
+    private static class Row {
+        final byte[] key;
+        final String line;
+
+        Row(String line) {
+            int tab = line.indexOf('\t');
+            this.key = (tab < 0 ? line : line.substring(0, tab)).getBytes(StandardCharsets.UTF_8);
+            this.line = line;
+        }
+    }
+
+    /**
+     * The rows of a part file of the similarity output, which are sorted by user id. The file is read through
+     * the Hadoop FileSystem and decompressed with the codec of its extension.
+     */
+    private static class Rows implements Closeable {
+        private final org.apache.hadoop.fs.Path file;
+        private final BufferedReader reader;
+        private Row row;
+
+        Rows(Configuration conf, CompressionCodecFactory codecs, org.apache.hadoop.fs.Path file) throws IOException {
+            this.file = file;
+            InputStream in = file.getFileSystem(conf).open(file);
+            CompressionCodec codec = codecs.getCodec(file);
+            if (codec != null) {
+                in = codec.createInputStream(in);
+            }
+            reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            advance();
+        }
+
+        /**
+         * @return the current row, or null at the end of the file.
+         */
+        Row row() {
+            return row;
+        }
+
+        /**
+         * @throws IOException if the next row is not greater than the current one.
+         */
+        void advance() throws IOException {
+            String line = reader.readLine();
+            Row next = line == null ? null : new Row(line);
+            if (next != null && row != null && compare(row.key, next.key) >= 0) {
+                throw new IOException(file + " is not sorted by user id at user "
+                        + new String(next.key, StandardCharsets.UTF_8));
+            }
+            row = next;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * builds an index file from the similarity output.
+     * @param conf configuration of the file system and the compression codecs
+     * @param output output directory of the similarity job (part files) or a single file
+     * @param file local index file
+     * @param interval number of records per sparse index entry
+     * @throws IOException if a user has two rows or a part file is not sorted
+     */
+    public static void build(Configuration conf, org.apache.hadoop.fs.Path output, Path file, int interval)
+            throws IOException {
+        build(conf, output, file, interval, DEFAULT_SEGMENT);
+    }
+
+    static void build(Configuration conf, org.apache.hadoop.fs.Path output, Path file, int interval, int segment)
+            throws IOException {
+        FileSystem fs = output.getFileSystem(conf);
+        List<org.apache.hadoop.fs.Path> parts = new ArrayList<>();
+        if (fs.getFileStatus(output).isDirectory()) {
+            for (FileStatus status : fs.listStatus(output)) {
+                if (status.getPath().getName().startsWith("part-")) {
+                    parts.add(status.getPath());
+                }
+            }
+            parts.sort((a, b) -> a.getName().compareTo(b.getName()));
+        } else {
+            parts.add(output);
+        }
+        // k-way merge of the sorted part files.
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        List<Rows> sources = new ArrayList<>();
+        PriorityQueue<Rows> queue = new PriorityQueue<>((a, b) -> compare(a.row().key, b.row().key));
+        try {
+            for (org.apache.hadoop.fs.Path part : parts) {
+                Rows rows = new Rows(conf, codecs, part);
+                sources.add(rows);
+                if (rows.row() != null) {
+                    queue.add(rows);
+                }
+            }
+            write(queue, file, interval, segment);
+        } finally {
+            for (Rows rows : sources) {
+                rows.close();
+            }
+        }
+    }
+
+    private static void write(PriorityQueue<Rows> queue, Path file, int interval, int segment) throws IOException {
+        List<Long> sparse = new ArrayList<>();
+        long rows = 0;
+        long position = 0;
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        byte[] previous = null;
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file));
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position += HEADER;
+            while (!queue.isEmpty()) {
+                Rows source = queue.poll();
+                Row row = source.row();
+                source.advance();
+                if (source.row() != null) {
+                    queue.add(source);
+                }
+                if (previous != null && compare(previous, row.key) == 0) {
+                    throw new IOException("user " + new String(row.key, StandardCharsets.UTF_8) + " has two rows");
+                }
+                previous = row.key;
+                record.reset();
+                writeRecord(recordOut, row);
+                if (record.size() > segment) {
+                    throw new IOException("the row of user " + new String(row.key, StandardCharsets.UTF_8)
+                            + " is larger than a segment");
+                }
+                long free = segment - position % segment;
+                if (record.size() > free) {
+                    for (long i = 0; i < free; i++) {
+                        out.write(0);
+                    }
+                    position += free;
+                }
+                if (rows % interval == 0) {
+                    sparse.add(position);
+                }
+                record.writeTo(out);
+                position += record.size();
+                rows++;
+            }
+            long sparseStart = position;
+            for (long offset : sparse) {
+                out.writeLong(offset);
+            }
+            out.writeLong(sparseStart);
+            out.writeLong(rows);
+            out.writeInt(interval);
+            out.writeInt(segment);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Row row) throws IOException {
+        out.writeInt(row.key.length);
+        out.write(row.key);
+        int tab = row.line.indexOf('\t');
+        String[] tokens = tab < 0 ? new String[0] : row.line.substring(tab + 1).trim().split(" +");
+        int n = tokens.length == 1 && tokens[0].isEmpty() ? 0 : tokens.length;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            // user ids may contain parentheses, the score is in the last ones.
+            int open = tokens[i].lastIndexOf('(');
+            byte[] name = tokens[i].substring(0, open).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            out.writeDouble(Double.parseDouble(tokens[i].substring(open + 1, tokens[i].length() - 1)));
+        }
+    }
+
+    /**
+     * usage: RecommendationIndex [-D wtf.serving.interval=64] build outputDir indexFile
+     *        RecommendationIndex get indexFile userId [limit]
+     */
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        if (args[0].equals("build")) {
+            build(conf, new org.apache.hadoop.fs.Path(args[1]), Paths.get(args[2]), conf.getInt(INTERVAL, DEFAULT_INTERVAL));
+        } else if (args[0].equals("get")) {
+            RecommendationIndex index = open(Paths.get(args[1]));
+            int limit = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            System.out.println(args[2] + "\t" + Recommendation.toStringBuffer(index.getRecommendations(args[2], limit)));
+        } else {
+            throw new IllegalArgumentException("unknown command " + args[0] + ", expected build or get");
+        }
+    }
+}
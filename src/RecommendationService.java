@@ -0,0 +1,260 @@
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class serves the recommendations of a RecommendationIndex through a bounded LRU cache of rows.
+ * The cache is split into stripes by the hash of the user id, each stripe is an LRU map with its own lock
+ * and an equal share of the memory budget, so lookups of different stripes do not wait for each other.
+ * The budget is in bytes: the size of a row is estimated from the lengths of its user ids, so a few long
+ * rows and many short ones take the same memory.
+ * A miss decodes only the requested number of recommendations; the cached prefix of a row answers the
+ * lookups with a smaller or equal limit, and a lookup with a larger limit reads the row again.
+ * The index and its cache are one snapshot, and swap() replaces the snapshot with a new index file
+ * while lookups continue: a lookup uses the snapshot which was current when it started, so it never mixes
+ * rows of two snapshots, and the mapping of an old snapshot is released by the garbage collector when
+ * its last lookup is done.
+ * It is thread safe.
+ */
+public class RecommendationService {
+    /**
+     * configuration key for the memory budget of the cache in bytes.
+     */
+    public static final String CACHE_BYTES = "wtf.serving.cache.bytes";
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+    /**
+     * configuration key for the number of stripes of the cache.
+     */
+    public static final String CACHE_STRIPES = "wtf.serving.cache.stripes";
+    public static final int DEFAULT_CACHE_STRIPES = 16;
+    /**
+     * estimated bytes of a cache entry and of a Recommendation without their user ids.
+     */
+    static final int ENTRY_BYTES = 96;
+    static final int RECOMMENDATION_BYTES = 72;
+
+    private final long cacheBytes;
+    private final int stripes;
+    private volatile Snapshot snapshot;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The first recommendations of a row.
+     */
+    private static class Row {
+        final List<Recommendation> recommendations;
+        /**
+         * true if recommendations are all recommendations of the user.
+         */
+        final boolean complete;
+        final long bytes;
+
+        Row(String userId, List<Recommendation> recommendations, boolean complete) {
+            this.recommendations = recommendations;
+            this.complete = complete;
+            long bytes = ENTRY_BYTES + 2L * userId.length();
+            for (Recommendation recommendation : recommendations) {
+                bytes += RECOMMENDATION_BYTES + 2L * recommendation.getUserId().length();
+            }
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return true if the row answers a lookup with the limit.
+         */
+        boolean covers(int limit) {
+            return complete || (limit > 0 && limit <= recommendations.size());
+        }
+    }
+
+    /**
+     * An LRU map of rows bounded by the estimated bytes of its rows, guarded by its own lock.
+     */
+    private class Stripe {
+        /**
+         * user id -> first recommendations of the user, in access order.
+         */
+        private final LinkedHashMap<String, Row> rows = new LinkedHashMap<>(16, 0.75f, true);
+        private final long capacity;
+        private long bytes;
+
+        Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized Row lookup(String userId) {
+            return rows.get(userId);
+        }
+
+        synchronized void add(String userId, Row row) {
+            if (row.bytes > capacity) {
+                return;
+            }
+            Row old = rows.put(userId, row);
+            if (old != null) {
+                bytes -= old.bytes;
+            }
+            bytes += row.bytes;
+            Iterator<Row> eldest = rows.values().iterator();
+            while (bytes > capacity) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        synchronized int size() {
+            return rows.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * An index and the cache of its rows.
+     */
+    private class Snapshot {
+        final RecommendationIndex index;
+        final Stripe[] cache;
+
+        Snapshot(RecommendationIndex index) {
+            this.index = index;
+            this.cache = new Stripe[stripes];
+            for (int i = 0; i < stripes; i++) {
+                cache[i] = new Stripe(cacheBytes / stripes);
+            }
+        }
+
+        Stripe stripe(String userId) {
+            return cache[(userId.hashCode() & Integer.MAX_VALUE) % cache.length];
+        }
+    }
+
+    /**
+     * @param index index file of RecommendationIndex.build()
+     * @param cacheBytes memory budget of the cache in bytes, 0 turns the cache off
+     * @throws IOException
+     */
+    public RecommendationService(Path index, long cacheBytes) throws IOException {
+        this(index, cacheBytes, DEFAULT_CACHE_STRIPES);
+    }
+
+    /**
+     * @param index index file of RecommendationIndex.build()
+     * @param cacheBytes memory budget of the cache in bytes, 0 turns the cache off
+     * @param stripes number of stripes of the cache, each one gets cacheBytes / stripes
+     * @throws IOException
+     */
+    public RecommendationService(Path index, long cacheBytes, int stripes) throws IOException {
+        this.cacheBytes = cacheBytes;
+        this.stripes = stripes;
+        this.snapshot = new Snapshot(RecommendationIndex.open(index));
+    }
+
+    /**
+     * @param conf configuration with wtf.serving.cache.bytes and wtf.serving.cache.stripes
+     * @param index index file of RecommendationIndex.build()
+     * @throws IOException
+     */
+    public RecommendationService(Configuration conf, Path index) throws IOException {
+        this(index, conf.getLong(CACHE_BYTES, DEFAULT_CACHE_BYTES),
+                conf.getInt(CACHE_STRIPES, DEFAULT_CACHE_STRIPES));
+    }
+
+    /**
+     * @param userId user id as it appears in the input file
+     * @param limit maximum number of recommendations, 0 means all of them
+     * @return the best recommendations of the user, or an empty list if the user has no row.
+     */
+    public List<Recommendation> getRecommendations(String userId, int limit) {
+        Snapshot current = snapshot;
+        if (cacheBytes == 0) {
+            misses.incrementAndGet();
+            return current.index.getRecommendations(userId, limit);
+        }
+        Stripe stripe = current.stripe(userId);
+        Row row = stripe.lookup(userId);
+        if (row == null || !row.covers(limit)) {
+            misses.incrementAndGet();
+            List<Recommendation> recommendations = current.index.getRecommendations(userId, limit);
+            // fewer recommendations than the limit means that the row ended before it.
+            row = new Row(userId, Collections.unmodifiableList(recommendations),
+                    limit == 0 || recommendations.size() < limit);
+            stripe.add(userId, row);
+        } else {
+            hits.incrementAndGet();
+        }
+        List<Recommendation> recommendations = row.recommendations;
+        return limit > 0 && limit < recommendations.size() ? recommendations.subList(0, limit) : recommendations;
+    }
+
+    /**
+     * replaces the index by a new snapshot, the cache of the new snapshot is empty.
+     * @param index index file of RecommendationIndex.build()
+     * @throws IOException if the new index can not be opened, then the current snapshot is kept.
+     */
+    public void swap(Path index) throws IOException {
+        snapshot = new Snapshot(RecommendationIndex.open(index));
+    }
+
+    /**
+     * @return number of users in the current snapshot.
+     */
+    public long size() {
+        return snapshot.index.size();
+    }
+
+    /**
+     * @return number of lookups which were answered by the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups which read the index.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of rows which were removed from a full cache.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of rows in the cache of the current snapshot.
+     */
+    public int getCachedRows() {
+        int rows = 0;
+        for (Stripe stripe : snapshot.cache) {
+            rows += stripe.size();
+        }
+        return rows;
+    }
+
+    /**
+     * @return estimated bytes of the rows in the cache of the current snapshot.
+     */
+    public long getCachedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : snapshot.cache) {
+            bytes += stripe.bytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class keeps the best K recommendations of one user X in a bounded min-heap of primitive
+ * (user id, score) pairs. The score is the number of common followed users, or the score of
+ * another WtfSimilarity.Scorer. The root of the heap is the worst kept recommendation,
+ * so a new candidate only replaces it when it is better.
+ * A recommendation is better than another one if it has a higher score, and for the same
+ * score if its user id is smaller (numeric ids first, then string ids), so the
+ * order of the recommendations is deterministic.
+ */
+public class TopRecommendations {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * maximum number of kept recommendations, 0 means all of them.
+     */
+    private int limit;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] scores = new double[INITIAL_CAPACITY];
+    /**
+     * string user ids, null at the positions of numeric user ids. The objects are reused.
+     */
+    private UserWritable[] names = new UserWritable[INITIAL_CAPACITY];
+    private int size;
+    /**
+     * number of offered recommendations which are not kept because of the limit.
+     */
+    private long truncated;
+
+    /**
+     * @param limit maximum number of kept recommendations, 0 means all of them.
+     */
+    public TopRecommendations(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * removes all recommendations, the arrays are kept for the next user.
+     */
+    public void clear() {
+        size = 0;
+        truncated = 0;
+    }
+
+    /**
+     * @return number of kept recommendations.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of offered recommendations which are not kept because of the limit.
+     */
+    public long getTruncated() {
+        return truncated;
+    }
+
+    /**
+     * offers a recommendation to the heap.
+     * @param user recommended user id, it is copied if it is kept.
+     * @param score number of common followed users or another score
+     */
+    public void offer(UserWritable user, double score) {
+        if (limit == 0 || size < limit) {
+            if (size == ids.length) {
+                grow();
+            }
+            set(size, user, score);
+            siftUp(size++);
+            return;
+        }
+        truncated++;
+        if (compare(user, score, 0) > 0) {
+            set(0, user, score);
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * sorts the kept recommendations, the best recommendation is at index 0.
+     * The heap can not be used for offer() after sorting until it is cleared.
+     */
+    public void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    /**
+     * @param i index of a recommendation
+     * @param user is set to the user id of the recommendation
+     */
+    public void getUser(int i, UserWritable user) {
+        if (names[i] != null) {
+            user.set(names[i]);
+        } else {
+            user.set(ids[i]);
+        }
+    }
+
+    /**
+     * @param i index of a recommendation
+     * @return score of the recommendation
+     */
+    public double getScore(int i) {
+        return scores[i];
+    }
+
+    private void set(int i, UserWritable user, double score) {
+        scores[i] = score;
+        if (user.isNumeric()) {
+            ids[i] = user.getId();
+            names[i] = null;
+        } else {
+            ids[i] = 0;
+            if (names[i] == null) {
+                names[i] = new UserWritable();
+            }
+            names[i].set(user);
+        }
+    }
+
+    /**
+     * @return a positive number if the offered recommendation is better than the one at index i.
+     */
+    private int compare(UserWritable user, double score, int i) {
+        if (score != scores[i]) {
+            return score > scores[i] ? 1 : -1;
+        }
+        if (user.isNumeric() != (names[i] == null)) {
+            return user.isNumeric() ? 1 : -1;
+        }
+        return user.isNumeric() ? Long.compare(ids[i], user.getId()) : names[i].compareTo(user);
+    }
+
+    /**
+     * @return true if the recommendation at index i is worse than the one at index j.
+     */
+    private boolean worse(int i, int j) {
+        if (scores[i] != scores[j]) {
+            return scores[i] < scores[j];
+        }
+        boolean numeric = names[i] == null;
+        if (numeric != (names[j] == null)) {
+            return !numeric;
+        }
+        return numeric ? ids[i] > ids[j] : names[i].compareTo(names[j]) > 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        UserWritable name = names[i];
+        names[i] = names[j];
+        names[j] = name;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+}
@@ -0,0 +1,260 @@
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class describes a user id as a binary hadoop key.
+ * NOTE: user ids can be numbers or strings. A numeric id is stored as a variable length long,
+ * and any other id is stored as a Text, so a numeric id does not pay for its string representation.
+ * Numeric ids are sorted before string ids, numeric ids are sorted by value and string ids by their bytes.
+ */
+public class UserWritable implements WritableComparable<UserWritable> {
+    /**
+     * tag of a numeric id in the serialized form.
+     */
+    private static final byte NUMERIC = 0;
+    /**
+     * tag of a string id in the serialized form.
+     */
+    private static final byte STRING = 1;
+    /**
+     * the longest numeric id that can be stored in a long without overflow.
+     */
+    private static final int MAX_NUMERIC_LENGTH = 18;
+
+    private boolean numeric = true;
+    private long id;
+    private final Text name = new Text();
+
+    public UserWritable() {
+    }
+
+    /**
+     * @param user user id as it appears in the input file.
+     */
+    public UserWritable(String user) {
+        set(user);
+    }
+
+    /**
+     * @param id numeric user id.
+     */
+    public UserWritable(long id) {
+        set(id);
+    }
+
+    /**
+     * @param user user id as it appears in the input file. If the id is a number and it is written
+     *             without leading zeros, it is stored as a long. Otherwise, it is stored as a string.
+     */
+    public void set(String user) {
+        if (isNumeric(user)) {
+            set(Long.parseLong(user));
+        } else {
+            numeric = false;
+            id = 0;
+            name.set(user);
+        }
+    }
+
+    /**
+     * sets a user id from the UTF-8 bytes of the input, like set(String) without decoding a String.
+     * @param bytes buffer of the id
+     * @param start offset of the id in bytes
+     * @param length length of the id in bytes
+     */
+    public void set(byte[] bytes, int start, int length) {
+        if (!isNumeric(bytes, start, length)) {
+            numeric = false;
+            id = 0;
+            name.set(bytes, start, length);
+            return;
+        }
+        long value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        set(value);
+    }
+
+    /**
+     * @param id numeric user id.
+     */
+    public void set(long id) {
+        this.numeric = true;
+        this.id = id;
+        this.name.clear();
+    }
+
+    /**
+     * copies another user id into this object.
+     * @param other other user id.
+     */
+    public void set(UserWritable other) {
+        this.numeric = other.numeric;
+        this.id = other.id;
+        this.name.set(other.name);
+    }
+
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * @return numeric id of the user, only valid if isNumeric() is true.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return string id of the user, only valid if isNumeric() is false.
+     */
+    public Text getName() {
+        return name;
+    }
+
+    /**
+     * @return a copy of this user id, it is used when the object is kept while hadoop reuses the original.
+     */
+    public UserWritable copy() {
+        UserWritable copy = new UserWritable();
+        copy.set(this);
+        return copy;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        if (numeric) {
+            out.writeByte(NUMERIC);
+            WritableUtils.writeVLong(out, id);
+        } else {
+            out.writeByte(STRING);
+            name.write(out);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        if (in.readByte() == NUMERIC) {
+            set(WritableUtils.readVLong(in));
+        } else {
+            numeric = false;
+            id = 0;
+            name.readFields(in);
+        }
+    }
+
+    @Override
+    public int compareTo(UserWritable o) {
+        if (numeric != o.numeric) {
+            return numeric ? -1 : 1;
+        }
+        return numeric ? Long.compare(id, o.id) : name.compareTo(o.name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof UserWritable)) {
+            return false;
+        }
+        UserWritable other = (UserWritable) o;
+        return numeric == other.numeric && id == other.id && name.equals(other.name);
+    }
+
+    /**
+     * the hash code is used by the hadoop HashPartitioner, so it only depends on the id.
+     */
+    @Override
+    public int hashCode() {
+        return numeric ? Long.hashCode(id) : name.hashCode();
+    }
+
+    /**
+     * @return user id in the same format as the input file.
+     */
+    @Override
+    public String toString() {
+        return numeric ? Long.toString(id) : name.toString();
+    }
+
+    /**
+     * @param user user id as a string.
+     * @return true if user is a number without sign and leading zeros that fits in a long.
+     */
+    static boolean isNumeric(String user) {
+        int length = user.length();
+        if (length == 0 || length > MAX_NUMERIC_LENGTH || (length > 1 && user.charAt(0) == '0')) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = user.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the bytes are a number without sign and leading zeros that fits in a long, see isNumeric(String).
+     */
+    static boolean isNumeric(byte[] bytes, int start, int length) {
+        if (length == 0 || length > MAX_NUMERIC_LENGTH || (length > 1 && bytes[start] == '0')) {
+            return false;
+        }
+        for (int i = start; i < start + length; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A raw comparator which compares serialized user ids without deserializing them.
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(UserWritable.class);
+        }
+
+        /**
+         * @return the length of the serialized user id at offset s, so a user id can be compared inside a
+         * larger key.
+         */
+        public static int getLength(byte[] b, int s) throws IOException {
+            int n = WritableUtils.decodeVIntSize(b[s + 1]);
+            return b[s] == NUMERIC ? 1 + n : 1 + n + readVInt(b, s + 1);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            if (b1[s1] != b2[s2]) {
+                return b1[s1] == NUMERIC ? -1 : 1;
+            }
+            try {
+                if (b1[s1] == NUMERIC) {
+                    return Long.compare(readVLong(b1, s1 + 1), readVLong(b2, s2 + 1));
+                }
+                // a string id is a Text: vint length followed by the bytes.
+                int n1 = WritableUtils.decodeVIntSize(b1[s1 + 1]);
+                int n2 = WritableUtils.decodeVIntSize(b2[s2 + 1]);
+                return compareBytes(b1, s1 + 1 + n1, l1 - 1 - n1, b2, s2 + 1 + n2, l2 - 1 - n2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    static {
+        // register the raw comparator for the shuffle sort.
+        WritableComparator.define(UserWritable.class, new Comparator());
+    }
+}
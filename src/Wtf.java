@@ -1,23 +1,157 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.chain.ChainReducer;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
 
 import java.io.IOException;
 
 /**
  * Created by Mojtaba on 12/02/17.
  * this class chaining two indexer and similarity MapReduce jobs.
+ * If wtf.dictionary is true, the dictionary job runs before them, the input is encoded to int ids into
+ * middle-encoded and the output of the similarity job, output-encoded, is decoded into output,
+ * see WtfDictionary.
+ * If wtf.pipeline.fused is true (experimental), the pairs are generated in the reduce phase of the indexing
+ * job by a chained aggregating similarity mapper, so the inverted lists are never written and the similarity
+ * job only sums the pair counts of the reduce tasks. The pair counts of a list grow with the square of its
+ * length, so the fused middle is usually larger than the inverted lists, and the standard mode is the default.
+ * If wtf.lsh is true, the approximate mode of WtfMinHash runs instead of the indexing job.
+ * If wtf.skew is true, the skew stage of WtfSkew runs before the similarity job and balances its reducers.
+ * The options wtf.indexing.reducers, wtf.indexing.partitioner, wtf.similarity.reducers,
+ * wtf.similarity.partitioner and wtf.similarity.map.threads are applied to the jobs of the stages,
+ * see Common.JobBuilder.
+ * The pipeline stops after a failed job. The driver writes a JSON summary of the stages and their counters
+ * to wtf.summary.path, by default next to the output (wtf-output-summary.json), and exits with status 1
+ * if a job failed.
  */
 public class Wtf {
+    /**
+     * configuration key of the fused pipeline mode.
+     */
+    public static final String FUSED = "wtf.pipeline.fused";
+
     public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
         Configuration conf = new Configuration();
+        // generic options like -D wtf.similarity.aggregate=true are applied to conf.
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path output = new Path(args[2]);
+        PipelineSummary summary = run(conf, new Path(args[0]), new Path(args[1]), output);
+        summary.write(conf, new Path(conf.get(PipelineSummary.PATH, output.suffix("-summary.json").toString())));
+        System.exit(summary.isSuccessful() ? 0 : 1);
+    }
+
+    /**
+     * runs the jobs of the pipeline.
+     * @param conf job configuration
+     * @param input input of the pipeline: X  F1 F2 ...  Fn
+     * @param middle output of the indexing job
+     * @param output output of the similarity job
+     * @return the summary of the stages which ran, the pipeline stops after a failed stage.
+     */
+    public static PipelineSummary run(Configuration conf, Path input, Path middle, Path output)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        PipelineSummary summary = new PipelineSummary();
+        if(conf.getBoolean(WtfMinHash.ENABLED, false)){
+            WtfMinHash.run(conf, input, middle, output, summary);
+            return summary;
+        }
+        // optional dictionary job assigns dense int ids, the given dictionary path is reused otherwise.
+        if(conf.getBoolean(WtfDictionary.ENABLED, false) && conf.get(WtfDictionary.PATH) == null){
+            conf.set(WtfDictionary.PATH, middle.suffix("-dictionary").toString());
+        }
+        if(conf.get(WtfDictionary.PATH) == null){
+            runSimilarity(conf, input, middle, output, summary);
+            return summary;
+        }
+        Path dictionary = new Path(conf.get(WtfDictionary.PATH));
+        if(conf.getBoolean(WtfDictionary.ENABLED, false) && !WtfDictionary.run(conf, input, dictionary, summary)){
+            return summary;
+        }
+        // the indexing and similarity jobs only see the int ids.
+        Path encoded = middle.suffix("-encoded");
+        if(!WtfDictionary.encode(conf, input, dictionary, encoded, summary)){
+            return summary;
+        }
+        Path recommendations = output.suffix("-encoded");
+        if(!runSimilarity(conf, encoded, middle, recommendations, summary)){
+            return summary;
+        }
+        WtfDictionary.decode(conf, recommendations, dictionary, output, summary);
+        return summary;
+    }
+
+    /**
+     * runs the indexing and similarity jobs, in the fused mode or with the skew stage if they are enabled.
+     * @return true if all jobs were successful.
+     */
+    private static boolean runSimilarity(Configuration conf, Path input, Path middle, Path output,
+                                         PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        if(conf.getBoolean(FUSED, false)){
+            if(conf.getBoolean(WtfSkew.ENABLED, false)){
+                throw new IOException("the skew stage does not support the fused pipeline");
+            }
+            return runFused(conf, input, middle, output, summary);
+        }
         // indexing job starts first and hadoop waits for completion of this job.
-        Common.jobRunner(conf, "wtf indexing", WtfIndexing.class, WtfIndexing.WtfIndexingMapper.class,
-                WtfIndexing.WtfIndexingReducer.class, null, Text.class, Text.class, Text.class, Text.class,
-                new Path(args[0]), new Path(args[1]));
-        // after finishing first job second job will be run which is the similarity job.
-        Common.jobRunner(conf, "wtf similarity", WtfSimilarity.class,
-                WtfSimilarity.WtfSimilarityMapper.class, WtfSimilarity.WtfSimilarityReducer.class, null,
-                Text.class, Text.class, Text.class, Text.class, new Path(args[1]+ "part-r-00000"), new Path(args[2]));
+        boolean indexed = new Common.JobBuilder(conf, "wtf indexing", WtfIndexing.class).stage("indexing")
+                .mapper(WtfIndexing.WtfIndexingMapper.class).reducer(WtfIndexing.WtfIndexingReducer.class)
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, InvertedListWritable.class)
+                .inputFormat(TextInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                .input(input).output(middle)
+                .run(summary);
+        if(!indexed){
+            return false;
+        }
+        if(conf.getBoolean(WtfSkew.ENABLED, false)){
+            return WtfSkew.run(conf, middle, output, summary);
+        }
+        // after finishing first job second job will be run which is the similarity job,
+        // it reads the inverted lists of all reducers of the indexing job.
+        return new Common.JobBuilder(conf, "wtf similarity", WtfSimilarity.class).stage("similarity")
+                .mapper(WtfSimilarity.mapperClass(conf)).reducer(WtfSimilarity.WtfSimilarityReducer.class)
+                .combiner(WtfSimilarity.combinerClass(conf))
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                .inputFormat(WtfSimilarity.InvertedListInputFormat.class).outputFormat(TextOutputFormat.class)
+                .input(new Path(middle, "part-*")).output(output)
+                .run(summary);
+    }
+
+    /**
+     * runs the fused pipeline: the indexing reducer is chained with the aggregating similarity mapper, which
+     * counts the pairs (Yi, Yj) of a whole reduce task and writes the counts and the direct edges into middle,
+     * and the similarity job sums them with the identity mapper and the combiner. The fused mode always
+     * aggregates, otherwise middle would hold every single pair instead of the inverted lists. Even then
+     * middle is larger than the inverted lists unless the lists are short, which is why the mode is experimental.
+     */
+    private static boolean runFused(Configuration conf, Path input, Path middle, Path output, PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        Job pairs = new Common.JobBuilder(conf, "wtf indexing and pairs", Wtf.class).stage("indexing")
+                .mapper(WtfIndexing.WtfIndexingMapper.class)
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, EdgeWritable.class)
+                .inputFormat(TextInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                .input(input).output(middle)
+                .build();
+        ChainReducer.setReducer(pairs, WtfIndexing.WtfIndexingReducer.class, UserWritable.class, EdgeWritable.class,
+                UserWritable.class, InvertedListWritable.class, new Configuration(false));
+        ChainReducer.addMapper(pairs, WtfSimilarity.WtfSimilarityAggregatingMapper.class, UserWritable.class,
+                InvertedListWritable.class, UserWritable.class, EdgeWritable.class, new Configuration(false));
+        if(!summary.run("indexing", pairs)){
+            return false;
+        }
+        return new Common.JobBuilder(conf, "wtf similarity", WtfSimilarity.class).stage("similarity")
+                .mapper(Mapper.class).reducer(WtfSimilarity.WtfSimilarityReducer.class)
+                .combiner(WtfSimilarity.WtfSimilarityCombiner.class)
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                .inputFormat(SequenceFileInputFormat.class).outputFormat(TextOutputFormat.class)
+                .input(new Path(middle, "part-*")).output(output)
+                .run(summary);
     }
 }
@@ -0,0 +1,169 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class runs the pipeline on synthetic graphs of GraphGenerator of several sizes and appends one
+ * JSON line per engine and size to a results file, so the results of different versions can be compared.
+ * The engines are the indexing and similarity jobs of Wtf in the Hadoop local runner ("hadoop") and
+ * WtfLocal ("local"). A line has the wall time, the map output and reduce input records, the shuffled
+ * bytes, the peak heap and the input edges per second of a run. The engines run in this JVM, so the
+ * peak heap is the peak of the heap memory pools during the run.
+ * usage: WtfBenchmark [-D option=value ...] workDirectory results.jsonl
+ * the work directory must be on the local file system, the generic options are applied to all runs.
+ */
+public class WtfBenchmark {
+    /**
+     * configuration key for the comma separated numbers of users of the graphs.
+     */
+    public static final String SIZES = "wtf.benchmark.sizes";
+    /**
+     * configuration key for the comma separated engines: hadoop, local
+     */
+    public static final String ENGINES = "wtf.benchmark.engines";
+
+    /**
+     * The measurements of a run.
+     */
+    static class Result {
+        long wallMillis;
+        long mapOutputRecords;
+        long reduceInputRecords;
+        long shuffleBytes;
+        long peakHeapBytes;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static Result runHadoop(Configuration conf, Path input, Path middle, Path output)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        FileSystem fs = output.getFileSystem(conf);
+        fs.delete(middle, true);
+        fs.delete(output, true);
+        Result result = new Result();
+        resetPeakHeap();
+        long start = System.currentTimeMillis();
+        PipelineSummary summary = Wtf.run(new Configuration(conf), input, middle, output);
+        result.wallMillis = System.currentTimeMillis() - start;
+        result.peakHeapBytes = peakHeap();
+        if (!summary.isSuccessful()) {
+            throw new IOException("the pipeline failed on " + input);
+        }
+        result.mapOutputRecords = summary.getCounter(TaskCounter.MAP_OUTPUT_RECORDS);
+        result.reduceInputRecords = summary.getCounter(TaskCounter.REDUCE_INPUT_RECORDS);
+        result.shuffleBytes = summary.getCounter(TaskCounter.REDUCE_SHUFFLE_BYTES);
+        return result;
+    }
+
+    /**
+     * runs WtfLocal like its main(), loading the graph is part of the run.
+     */
+    static Result runLocal(Configuration conf, java.nio.file.Path input, java.nio.file.Path output)
+            throws IOException {
+        Result result = new Result();
+        Files.createDirectories(output);
+        resetPeakHeap();
+        long start = System.currentTimeMillis();
+        WtfLocal wtf = new WtfLocal(CsrGraph.load(input), conf.getInt(WtfSimilarity.TOP_K, 0),
+                conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT));
+        ForkJoinPool pool = new ForkJoinPool(conf.getInt(WtfLocal.THREADS, Runtime.getRuntime().availableProcessors()));
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output.resolve("part-r-00000")))) {
+            wtf.run(pool, out);
+        } finally {
+            pool.shutdown();
+        }
+        result.wallMillis = System.currentTimeMillis() - start;
+        result.peakHeapBytes = peakHeap();
+        return result;
+    }
+
+    static String toJson(Configuration conf, String engine, int users, long edges, Result result) {
+        return "{\"engine\":" + PipelineSummary.quote(engine)
+                + ",\"users\":" + users
+                + ",\"edges\":" + edges
+                + ",\"degree\":" + conf.getDouble(GraphGenerator.DEGREE, 20)
+                + ",\"out_exponent\":" + conf.getDouble(GraphGenerator.OUT_EXPONENT, 2.5)
+                + ",\"in_exponent\":" + conf.getDouble(GraphGenerator.IN_EXPONENT, 2.2)
+                + ",\"ids\":"
+                + PipelineSummary.quote(conf.getEnum(GraphGenerator.IDS, GraphGenerator.IdStyle.NUMERIC).name())
+                + ",\"scorer\":"
+                + PipelineSummary.quote(conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT).name())
+                + ",\"wall_ms\":" + result.wallMillis
+                + ",\"map_output_records\":" + result.mapOutputRecords
+                + ",\"reduce_input_records\":" + result.reduceInputRecords
+                + ",\"reduce_shuffle_bytes\":" + result.shuffleBytes
+                + ",\"peak_heap_bytes\":" + result.peakHeapBytes
+                + ",\"edges_per_second\":" + (result.wallMillis == 0 ? 0 : edges * 1000 / result.wallMillis)
+                + ",\"timestamp\":" + System.currentTimeMillis()
+                + ",\"processors\":" + Runtime.getRuntime().availableProcessors()
+                + ",\"java\":" + PipelineSummary.quote(System.getProperty("java.version"))
+                + "}";
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path work = new Path(args[0]);
+        FileSystem fs = FileSystem.getLocal(conf);
+        java.nio.file.Path results = Paths.get(args[1]);
+        for (String size : conf.getTrimmedStrings(SIZES, "1000", "10000")) {
+            int users = Integer.parseInt(size);
+            Path directory = fs.makeQualified(new Path(work, "users-" + users));
+            Path input = new Path(directory, "input");
+            Configuration graph = new Configuration(conf);
+            graph.setInt(GraphGenerator.USERS, users);
+            long edges = new GraphGenerator(graph).write(fs, new Path(input, "graph.txt"));
+            for (String engine : conf.getTrimmedStrings(ENGINES, "hadoop", "local")) {
+                Result result;
+                if (engine.equals("hadoop")) {
+                    result = runHadoop(conf, input, new Path(directory, "hadoop-middle"),
+                            new Path(directory, "hadoop-output"));
+                } else if (engine.equals("local")) {
+                    result = runLocal(conf, Paths.get(new Path(input, "graph.txt").toUri().getPath()),
+                            Paths.get(new Path(directory, "local-output").toUri().getPath()));
+                } else {
+                    throw new IllegalArgumentException("unknown engine: " + engine);
+                }
+                String line = toJson(graph, engine, users, edges, result);
+                System.out.println(line);
+                try (PrintStream out = new PrintStream(Files.newOutputStream(results, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND), true, StandardCharsets.UTF_8.name())) {
+                    out.println(line);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class compares the pipeline without compression and with the compression options of Common
+ * on a synthetic graph of GraphGenerator. For each setting it prints the wall time, the shuffled bytes and
+ * the sizes of wtf-middle and wtf-output as a tab separated line.
+ * usage: WtfCompressionBenchmark [-D option=value ...] workDirectory
+ * the graph is configured by the wtf.generator.* options, the generic options are applied to all settings.
+ */
+public class WtfCompressionBenchmark {
+    /**
+     * settings: name, map output codec, SequenceFile compression type, text output codec.
+     */
+    private static final String[][] SETTINGS = {
+            {"none", null, null, null},
+            {"map-output", DefaultCodec.class.getName(), null, null},
+            {"map-output+block-middle", DefaultCodec.class.getName(), "BLOCK", null},
+            {"all", DefaultCodec.class.getName(), "BLOCK", GzipCodec.class.getName()},
+    };
+
+    public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path work = new Path(args[0]);
+        FileSystem fs = work.getFileSystem(conf);
+        Path input = new Path(work, "input");
+        new GraphGenerator(conf).write(fs, new Path(input, "graph.txt"));
+        PrintStream out = System.out;
+        out.println("setting\twall_ms\tmap_output_materialized_bytes\treduce_shuffle_bytes\tmiddle_bytes\toutput_bytes");
+        for (String[] setting : SETTINGS) {
+            Configuration run = new Configuration(conf);
+            if (setting[1] != null) {
+                run.set(Common.COMPRESS_MAP_OUTPUT_CODEC, setting[1]);
+            }
+            if (setting[2] != null) {
+                run.set(Common.COMPRESS_MIDDLE_TYPE, setting[2]);
+            }
+            if (setting[3] != null) {
+                run.set(Common.COMPRESS_OUTPUT_CODEC, setting[3]);
+            }
+            Path middle = new Path(work, setting[0] + "-middle");
+            Path output = new Path(work, setting[0] + "-output");
+            fs.delete(middle, true);
+            fs.delete(output, true);
+            long start = System.currentTimeMillis();
+            PipelineSummary summary = Wtf.run(run, input, middle, output);
+            long wall = System.currentTimeMillis() - start;
+            if (!summary.isSuccessful()) {
+                throw new IOException("the pipeline failed with the setting " + setting[0]);
+            }
+            out.println(setting[0] + "\t" + wall
+                    + "\t" + summary.getCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES)
+                    + "\t" + summary.getCounter(TaskCounter.REDUCE_SHUFFLE_BYTES)
+                    + "\t" + fs.getContentSummary(middle).getLength()
+                    + "\t" + fs.getContentSummary(output).getLength());
+        }
+    }
+}
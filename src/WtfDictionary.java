@@ -0,0 +1,678 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This WtfDictionary class includes the dictionary MapReduce job which is the optional first stage
+ * of the pipeline. It assigns a dense int id to every user id of the input:
+ * user id -> int id
+ * The ids are assigned in the order of UserWritable (numeric ids first by value, then string ids), so the
+ * int ids of two users compare like the user ids, and the jobs on int ids order the recommendations with
+ * the same score and the rows like a run without the dictionary.
+ * The dictionary is written as a SequenceFile of (Text, IntWritable). No task loads the whole dictionary,
+ * the ids are encoded and decoded with reduce-side joins, where the dictionary entry of a user sorts before
+ * the records which are joined with it (see JoinKey):
+ * 1. encode followed: joins every edge X -> Fi with the entry of Fi and writes (X, int id of Fi).
+ * 2. encode: joins these edges with the entry of X and writes the input of the indexing job with int ids.
+ * Indexing and similarity jobs then only compare, hash and shuffle ints. The similarity output is decoded by
+ * two more joins:
+ * 3. decode recommended: joins the i-th recommendation Fi(score) of X with the entry of Fi.
+ * 4. decode: joins the decoded recommendations of X, which are sorted by i, with the entry of X.
+ * A reducer of the joins streams its values, it does not keep the records of a user in memory.
+ */
+public class WtfDictionary {
+    /**
+     * configuration key that enables the dictionary stage in the Wtf driver.
+     */
+    public static final String ENABLED = "wtf.dictionary";
+    /**
+     * configuration key of the dictionary path. The driver sets it for the indexing and similarity jobs
+     * when the dictionary stage is enabled.
+     */
+    public static final String PATH = "wtf.dictionary.path";
+    /**
+     * tags of the join keys, the dictionary entry sorts first.
+     */
+    static final byte ENTRY = 0;
+    static final byte RECORD = 1;
+
+    /**
+     * The key of the joins with the dictionary, and of the joins of WtfMinHash with the followed users:
+     * a user id, a tag and the index of a record. The keys are partitioned and grouped by the user id only,
+     * so a reduce call receives the dictionary entry of the user first and then its records in the order
+     * of their index.
+     */
+    public static class JoinKey implements WritableComparable<JoinKey> {
+        private final UserWritable user = new UserWritable();
+        private byte tag;
+        private int index;
+
+        public UserWritable getUser() {
+            return user;
+        }
+
+        public byte getTag() {
+            return tag;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void set(UserWritable user, byte tag) {
+            set(user, tag, 0);
+        }
+
+        public void set(UserWritable user, byte tag, int index) {
+            this.user.set(user);
+            this.tag = tag;
+            this.index = index;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            user.write(out);
+            out.writeByte(tag);
+            WritableUtils.writeVInt(out, index);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            user.readFields(in);
+            tag = in.readByte();
+            index = WritableUtils.readVInt(in);
+        }
+
+        @Override
+        public int compareTo(JoinKey o) {
+            int c = user.compareTo(o.user);
+            if (c != 0) {
+                return c;
+            }
+            return tag != o.tag ? Byte.compare(tag, o.tag) : Integer.compare(index, o.index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof JoinKey)) {
+                return false;
+            }
+            JoinKey other = (JoinKey) o;
+            return user.equals(other.user) && tag == other.tag && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return user.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return user + "@" + tag + "#" + index;
+        }
+
+        /**
+         * A raw comparator which compares serialized join keys without deserializing them.
+         */
+        public static class Comparator extends WritableComparator {
+            private static final UserWritable.Comparator USERS = new UserWritable.Comparator();
+
+            public Comparator() {
+                super(JoinKey.class);
+            }
+
+            @Override
+            public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+                try {
+                    int u1 = UserWritable.Comparator.getLength(b1, s1);
+                    int u2 = UserWritable.Comparator.getLength(b2, s2);
+                    int c = USERS.compare(b1, s1, u1, b2, s2, u2);
+                    if (c != 0) {
+                        return c;
+                    }
+                    if (b1[s1 + u1] != b2[s2 + u2]) {
+                        return Byte.compare(b1[s1 + u1], b2[s2 + u2]);
+                    }
+                    return Integer.compare(readVInt(b1, s1 + u1 + 1), readVInt(b2, s2 + u2 + 1));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+        }
+
+        static {
+            // register the raw comparator for the shuffle sort.
+            WritableComparator.define(JoinKey.class, new Comparator());
+        }
+    }
+
+    /**
+     * partitions the join keys by the user id.
+     */
+    public static class JoinPartitioner<V> extends Partitioner<JoinKey, V> {
+        @Override
+        public int getPartition(JoinKey key, V value, int numPartitions) {
+            return (key.getUser().hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    /**
+     * groups the join keys by the user id, it compares the serialized user ids like the raw comparator.
+     */
+    public static class JoinGroupingComparator extends WritableComparator {
+        private static final UserWritable.Comparator USERS = new UserWritable.Comparator();
+
+        public JoinGroupingComparator() {
+            super(JoinKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                return USERS.compare(b1, s1, UserWritable.Comparator.getLength(b1, s1),
+                        b2, s2, UserWritable.Comparator.getLength(b2, s2));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public int compare(Object a, Object b) {
+            return ((JoinKey) a).getUser().compareTo(((JoinKey) b).getUser());
+        }
+    }
+
+    /**
+     * The WtfDictionaryMapper class emits every user id of a line: X  F1 F2 ...  Fn
+     */
+    public static class WtfDictionaryMapper extends Mapper<Object, Text, UserWritable, NullWritable>{
+        UserWritable user = new UserWritable();
+
+        @Override
+        protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(value.toString());
+            while (itr.hasMoreTokens()){
+                user.set(itr.nextToken());
+                context.write(user, NullWritable.get());
+            }
+        }
+    }
+
+    /**
+     * The WtfDictionaryCombiner class removes duplicate user ids before the shuffle.
+     */
+    public static class WtfDictionaryCombiner extends Reducer<UserWritable, NullWritable, UserWritable, NullWritable>{
+        @Override
+        protected void reduce(UserWritable key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            context.write(key, NullWritable.get());
+        }
+    }
+
+    /**
+     * The WtfDictionaryReducer class assigns the int ids 0, 1, 2, ... to the user ids in the sorted order of
+     * the shuffle. The job has a single reduce task, so the ids are dense and in the order of the user ids.
+     */
+    public static class WtfDictionaryReducer extends Reducer<UserWritable, NullWritable, Text, IntWritable>{
+        Text user = new Text();
+        IntWritable id = new IntWritable();
+        private int next;
+
+        @Override
+        protected void reduce(UserWritable key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            user.set(key.toString());
+            id.set(next++);
+            context.write(user, id);
+        }
+    }
+
+    /**
+     * The EncoderEntryMapper class emits the dictionary entry of a user for the encoding joins:
+     * (user id, ENTRY) -> int id
+     */
+    public static class EncoderEntryMapper extends Mapper<Text, IntWritable, JoinKey, UserWritable>{
+        JoinKey join = new JoinKey();
+        UserWritable user = new UserWritable();
+        UserWritable id = new UserWritable();
+
+        @Override
+        protected void map(Text key, IntWritable value, Context context) throws IOException, InterruptedException {
+            user.set(key.getBytes(), 0, key.getLength());
+            join.set(user, ENTRY);
+            id.set(value.get());
+            context.write(join, id);
+        }
+    }
+
+    /**
+     * The FollowedEdgeMapper class emits every edge of a line X  F1 F2 ...  Fn keyed by the followed user:
+     * (Fi, RECORD) -> X
+     */
+    public static class FollowedEdgeMapper extends Mapper<Object, Text, JoinKey, UserWritable>{
+        JoinKey join = new JoinKey();
+        UserWritable user = new UserWritable();
+        UserWritable followed = new UserWritable();
+
+        @Override
+        protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(value.toString());
+            if (!itr.hasMoreTokens()) {
+                return;
+            }
+            user.set(itr.nextToken());
+            while (itr.hasMoreTokens()) {
+                followed.set(itr.nextToken());
+                join.set(followed, RECORD);
+                context.write(join, user);
+            }
+        }
+    }
+
+    /**
+     * The FollowedEncodingReducer class receives the int id of Fi and the users X who follow Fi, and
+     * writes (X, int id of Fi).
+     */
+    public static class FollowedEncodingReducer extends Reducer<JoinKey, UserWritable, UserWritable, UserWritable>{
+        UserWritable id = new UserWritable();
+
+        @Override
+        protected void reduce(JoinKey key, Iterable<UserWritable> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<UserWritable> records = values.iterator();
+            id.set(entry(key, records));
+            while (records.hasNext()) {
+                context.write(records.next(), id);
+            }
+        }
+    }
+
+    /**
+     * The FollowedMapper class emits the edges of the first encoding join keyed by the follower:
+     * (X, RECORD) -> int id of Fi
+     */
+    public static class FollowedMapper extends Mapper<UserWritable, UserWritable, JoinKey, UserWritable>{
+        JoinKey join = new JoinKey();
+
+        @Override
+        protected void map(UserWritable key, UserWritable value, Context context)
+                throws IOException, InterruptedException {
+            join.set(key, RECORD);
+            context.write(join, value);
+        }
+    }
+
+    /**
+     * The EncodingReducer class receives the int id of X and the int ids of the users followed by X, and
+     * writes the line of X in the input format of the indexing job: X  F1 F2 ...  Fn
+     */
+    public static class EncodingReducer extends Reducer<JoinKey, UserWritable, UserWritable, Text>{
+        private static final byte[] SPACE = {' '};
+        UserWritable id = new UserWritable();
+        Text line = new Text();
+
+        @Override
+        protected void reduce(JoinKey key, Iterable<UserWritable> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<UserWritable> records = values.iterator();
+            id.set(entry(key, records));
+            if (!records.hasNext()) {
+                // X only appears as a followed user.
+                return;
+            }
+            line.clear();
+            while (records.hasNext()) {
+                byte[] followed = Long.toString(records.next().getId()).getBytes(StandardCharsets.UTF_8);
+                line.append(SPACE, 0, 1);
+                line.append(followed, 0, followed.length);
+            }
+            context.write(id, line);
+        }
+    }
+
+    /**
+     * @return the value of the dictionary entry, which is the first value of a reduce call of a join.
+     * @throws IOException if the user id is not in the dictionary.
+     */
+    private static <V> V entry(JoinKey key, Iterator<V> values) throws IOException {
+        V entry = values.next();
+        if (key.getTag() != ENTRY) {
+            throw new IOException("user id " + key.getUser() + " is not in the dictionary");
+        }
+        return entry;
+    }
+
+    /**
+     * The DecoderEntryMapper class emits the dictionary entry of a user for the decoding joins:
+     * (int id, ENTRY) -> user id
+     */
+    public static class DecoderEntryMapper extends Mapper<Text, IntWritable, JoinKey, Text>{
+        JoinKey join = new JoinKey();
+        UserWritable id = new UserWritable();
+
+        @Override
+        protected void map(Text key, IntWritable value, Context context) throws IOException, InterruptedException {
+            id.set(value.get());
+            join.set(id, ENTRY);
+            context.write(join, key);
+        }
+    }
+
+    /**
+     * The RecommendedMapper class reads a line of the similarity output with int ids:
+     * X  F1(score1) F2(score2) ...
+     * and emits (Fi, RECORD) -> "X\ti\tscore" for the i-th recommendation, and (X, RECORD) -> "" which keeps the
+     * line of X even without recommendations.
+     */
+    public static class RecommendedMapper extends Mapper<LongWritable, Text, JoinKey, Text>{
+        private static final byte[] TAB = {'\t'};
+        JoinKey join = new JoinKey();
+        UserWritable user = new UserWritable();
+        Text record = new Text();
+
+        @Override
+        protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            byte[] bytes = value.getBytes();
+            int length = value.getLength();
+            int tab = find(bytes, 0, length, '\t');
+            user.set(bytes, 0, tab);
+            join.set(user, RECORD);
+            record.clear();
+            context.write(join, record);
+            int index = 0;
+            for (int start = tab + 1; start < length; ) {
+                if (bytes[start] == ' ') {
+                    start++;
+                    continue;
+                }
+                int open = find(bytes, start, length, '(');
+                int close = find(bytes, open, length, ')');
+                if (close == length) {
+                    throw new IOException("malformed recommendation in line: " + value);
+                }
+                user.set(bytes, start, open - start);
+                join.set(user, RECORD);
+                record.set(bytes, 0, tab);
+                record.append(TAB, 0, 1);
+                byte[] position = Integer.toString(++index).getBytes(StandardCharsets.UTF_8);
+                record.append(position, 0, position.length);
+                record.append(TAB, 0, 1);
+                record.append(bytes, open + 1, close - open - 1);
+                context.write(join, record);
+                start = close + 1;
+            }
+        }
+
+        /**
+         * @return the offset of the first byte b at or after start, or end if there is none.
+         */
+        private static int find(byte[] bytes, int start, int end, char b) {
+            while (start < end && bytes[start] != b) {
+                start++;
+            }
+            return start;
+        }
+    }
+
+    /**
+     * The RecommendedDecodingReducer class receives the user id of Fi and its recommendations, and writes
+     * ((X, RECORD, i), "Fi(score)") with the user id of Fi for the i-th recommendation of X. The line marker
+     * of X is written as ((X, RECORD, 0), "").
+     */
+    public static class RecommendedDecodingReducer extends Reducer<JoinKey, Text, JoinKey, Text>{
+        private static final byte[] OPEN = {'('};
+        private static final byte[] CLOSE = {')'};
+        JoinKey join = new JoinKey();
+        UserWritable user = new UserWritable();
+        Text name = new Text();
+        Text record = new Text();
+
+        @Override
+        protected void reduce(JoinKey key, Iterable<Text> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<Text> records = values.iterator();
+            name.set(entry(key, records));
+            while (records.hasNext()) {
+                Text value = records.next();
+                if (value.getLength() == 0) {
+                    join.set(key.getUser(), RECORD);
+                    context.write(join, value);
+                    continue;
+                }
+                byte[] bytes = value.getBytes();
+                int tab = value.find("\t");
+                int scoreTab = value.find("\t", tab + 1);
+                user.set(bytes, 0, tab);
+                int index = 0;
+                for (int i = tab + 1; i < scoreTab; i++) {
+                    index = index * 10 + (bytes[i] - '0');
+                }
+                join.set(user, RECORD, index);
+                record.set(name);
+                record.append(OPEN, 0, 1);
+                record.append(bytes, scoreTab + 1, value.getLength() - scoreTab - 1);
+                record.append(CLOSE, 0, 1);
+                context.write(join, record);
+            }
+        }
+    }
+
+    /**
+     * The DecodingReducer class receives the user id of X and the decoded recommendations of X in their order,
+     * and writes the line of X: X  F1(score1) F2(score2) ...
+     * Only the users with a line in the similarity output have records.
+     */
+    public static class DecodingReducer extends Reducer<JoinKey, Text, Text, Text>{
+        private static final byte[] SPACE = {' '};
+        Text name = new Text();
+        Text result = new Text();
+
+        @Override
+        protected void reduce(JoinKey key, Iterable<Text> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<Text> records = values.iterator();
+            name.set(entry(key, records));
+            if (!records.hasNext()) {
+                return;
+            }
+            result.clear();
+            while (records.hasNext()) {
+                Text record = records.next();
+                if (record.getLength() != 0) {
+                    result.append(SPACE, 0, 1);
+                    result.append(record.getBytes(), 0, record.getLength());
+                }
+            }
+            context.write(name, result);
+        }
+    }
+
+    /**
+     * reads the dictionary for decoding user ids in a single process, like CsrGraphFile.
+     * @param conf job configuration
+     * @param dictionary dictionary path, the output directory of the dictionary job
+     * @return an array where the user id of int id i is at index i
+     * @throws IOException
+     */
+    public static String[] loadDecoder(Configuration conf, Path dictionary) throws IOException {
+        Map<Integer, String> users = new HashMap<>();
+        read(conf, dictionary, (user, id) -> users.put(id, user.toString()));
+        int max = -1;
+        for (int id : users.keySet()) {
+            max = Math.max(max, id);
+        }
+        String[] decoder = new String[max + 1];
+        for (Map.Entry<Integer, String> entry : users.entrySet()) {
+            decoder[entry.getKey()] = entry.getValue();
+        }
+        return decoder;
+    }
+
+    /**
+     * receives the entries of the dictionary.
+     */
+    private interface Entries {
+        void add(Text user, int id);
+    }
+
+    /**
+     * reads all part files of the dictionary directory.
+     */
+    private static void read(Configuration conf, Path dictionary, Entries entries) throws IOException {
+        FileSystem fs = dictionary.getFileSystem(conf);
+        Text user = new Text();
+        IntWritable id = new IntWritable();
+        for (FileStatus status : fs.listStatus(dictionary)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+            try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))) {
+                while (reader.next(user, id)) {
+                    entries.add(user, id.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * runs the dictionary job.
+     * @param conf job configuration
+     * @param input input of the pipeline: X  F1 F2 ...  Fn
+     * @param output dictionary path
+     * @param summary summary of the pipeline
+     * @return true if the job was successful.
+     */
+    public static boolean run(Configuration conf, Path input, Path output, PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        Job job = new Common.JobBuilder(conf, "wtf dictionary", WtfDictionary.class).stage("dictionary")
+                .mapper(WtfDictionaryMapper.class).reducer(WtfDictionaryReducer.class)
+                .combiner(WtfDictionaryCombiner.class)
+                .mapOutput(UserWritable.class, NullWritable.class).output(Text.class, IntWritable.class)
+                .inputFormat(TextInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                .input(input).output(output)
+                .build();
+        // the ids are counted in the sorted order of a single reduce task, the combiners remove the duplicates.
+        job.setNumReduceTasks(1);
+        return summary.run("dictionary", job);
+    }
+
+    /**
+     * runs the two encoding joins.
+     * @param conf job configuration
+     * @param input input of the pipeline: X  F1 F2 ...  Fn
+     * @param dictionary dictionary path
+     * @param output the input of the indexing job with int ids, the first join writes to output-followed
+     * @param summary summary of the pipeline
+     * @return true if both jobs were successful.
+     */
+    public static boolean encode(Configuration conf, Path input, Path dictionary, Path output,
+                                 PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        Path followed = output.suffix("-followed");
+        // the mappers of the joins are added by MultipleInputs.
+        Job followedJob = new Common.JobBuilder(conf, "wtf encode followed", WtfDictionary.class).stage("encode")
+                .reducer(FollowedEncodingReducer.class)
+                .mapOutput(JoinKey.class, UserWritable.class).output(UserWritable.class, UserWritable.class)
+                .outputFormat(SequenceFileOutputFormat.class).output(followed)
+                .build();
+        MultipleInputs.addInputPath(followedJob, input, TextInputFormat.class, FollowedEdgeMapper.class);
+        MultipleInputs.addInputPath(followedJob, new Path(dictionary, "part-*"), SequenceFileInputFormat.class,
+                EncoderEntryMapper.class);
+        if (!summary.run("encode", join(followedJob))) {
+            return false;
+        }
+        Job encodeJob = new Common.JobBuilder(conf, "wtf encode", WtfDictionary.class).stage("encode")
+                .reducer(EncodingReducer.class)
+                .mapOutput(JoinKey.class, UserWritable.class).output(UserWritable.class, Text.class)
+                .outputFormat(TextOutputFormat.class).output(output)
+                .build();
+        MultipleInputs.addInputPath(encodeJob, new Path(followed, "part-*"), SequenceFileInputFormat.class,
+                FollowedMapper.class);
+        MultipleInputs.addInputPath(encodeJob, new Path(dictionary, "part-*"), SequenceFileInputFormat.class,
+                EncoderEntryMapper.class);
+        return summary.run("encode", join(encodeJob));
+    }
+
+    /**
+     * runs the two decoding joins.
+     * @param conf job configuration
+     * @param input output of the similarity job with int ids
+     * @param dictionary dictionary path
+     * @param output output of the pipeline, the first join writes to output-recommended
+     * @param summary summary of the pipeline
+     * @return true if both jobs were successful.
+     */
+    public static boolean decode(Configuration conf, Path input, Path dictionary, Path output,
+                                 PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        Path recommended = output.suffix("-recommended");
+        Job recommendedJob = new Common.JobBuilder(conf, "wtf decode recommended", WtfDictionary.class)
+                .stage("decode")
+                .reducer(RecommendedDecodingReducer.class)
+                .mapOutput(JoinKey.class, Text.class).output(JoinKey.class, Text.class)
+                .outputFormat(SequenceFileOutputFormat.class).output(recommended)
+                .build();
+        MultipleInputs.addInputPath(recommendedJob, new Path(input, "part-*"), TextInputFormat.class,
+                RecommendedMapper.class);
+        MultipleInputs.addInputPath(recommendedJob, new Path(dictionary, "part-*"), SequenceFileInputFormat.class,
+                DecoderEntryMapper.class);
+        if (!summary.run("decode", join(recommendedJob))) {
+            return false;
+        }
+        // the output of the first join is already keyed by (X, RECORD, i).
+        Job decodeJob = new Common.JobBuilder(conf, "wtf decode", WtfDictionary.class).stage("decode")
+                .reducer(DecodingReducer.class)
+                .mapOutput(JoinKey.class, Text.class).output(Text.class, Text.class)
+                .outputFormat(TextOutputFormat.class).output(output)
+                .build();
+        MultipleInputs.addInputPath(decodeJob, new Path(recommended, "part-*"), SequenceFileInputFormat.class,
+                Mapper.class);
+        MultipleInputs.addInputPath(decodeJob, new Path(dictionary, "part-*"), SequenceFileInputFormat.class,
+                DecoderEntryMapper.class);
+        return summary.run("decode", join(decodeJob));
+    }
+
+    /**
+     * @return the job with the partitioner and the grouping comparator of the joins, WtfMinHash uses them too.
+     */
+    static Job join(Job job) {
+        job.setPartitionerClass(JoinPartitioner.class);
+        job.setGroupingComparatorClass(JoinGroupingComparator.class);
+        return job;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        System.exit(run(conf, new Path(args[0]), new Path(args[1]), new PipelineSummary()) ? 0 : 1);
+    }
+}
@@ -0,0 +1,674 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class updates the output of a previous run with a delta file of follows and unfollows,
+ * instead of running the indexing and similarity jobs over the whole graph again.
+ * A line of the delta file is: X  +F1 -F2 ...  where X follows F1 and does not follow F2 anymore
+ * (a token without a sign is a follow). The delta is the net change, the order of the lines does not matter.
+ * The row of user X only changes if X follows or unfollows somebody, or if a user B followed by X
+ * gets or loses a follower. So the affected users are the users of the delta and the followers of the
+ * users followed or unfollowed in the delta, and the rows of all other users are the same as in a full run.
+ * Only the delta and the lists it touches are shuffled. The user sets which the mappers look up (the touched
+ * lists, the affected users and the affected followers of each list) are written by jobs with the reducers of
+ * the indexing stage, so a mapper only loads the partitions of the keys it reads, see PartitionedUsers.
+ * It runs these jobs:
+ * 1. touched: the distinct users of the delta, whose inverted lists change.
+ * 2. incremental indexing: copies the untouched previous inverted lists (wtf-middle) map-side, merges the delta
+ *    into the touched lists, and writes the affected users.
+ * 3. affected: partitions the affected users.
+ * 4. selected: the affected followers of each new inverted list, and the affected owners of a list.
+ * 5. incremental similarity: the similarity job which only emits the pairs of the affected users.
+ * 6. merge: a map-only job which drops the rows of the affected users from the previous output (wtf-output)
+ *    and adds their new rows. A part file of the output is still sorted.
+ * The jobs 3 to 5 are skipped if the delta did not change an edge.
+ * NOTE: the dictionary stage is not supported, because new users of the delta have no int id.
+ * The JACCARD and COSINE scorers are not supported either: when X follows or unfollows somebody, its degree
+ * changes the scores of X in the rows of users who are not affected. The ADAMIC_ADAR weight of B changes with
+ * the followers of B, whose rows are affected anyway.
+ * The previous lists and rows must be partitioned like a run with the default partitioners, otherwise the
+ * mappers load more partitions of the user sets.
+ */
+public class WtfIncremental {
+    /**
+     * configuration keys of the directories of the partitioned user sets and of their number of partitions,
+     * they are set by the driver.
+     */
+    public static final String PARTITIONS = "wtf.incremental.partitions";
+    public static final String TOUCHED = "wtf.incremental.touched";
+    public static final String AFFECTED = "wtf.incremental.affected";
+    public static final String SELECTED = "wtf.incremental.selected";
+    /**
+     * named output of the affected users in the output directory of the incremental indexing job.
+     */
+    static final String AFFECTED_OUTPUT = "affected";
+    /**
+     * named output of the untouched lists which the incremental indexing mapper copies, they are written to
+     * the files part-copied-m-* of the output, so the new lists are read with the glob part-*.
+     */
+    static final String COPIED_OUTPUT = "copied";
+    /**
+     * tags of the join keys of the incremental indexing job, the changes of the delta sort first. The reducer
+     * tells them apart by the count of the edge, which is 0 for a previous edge.
+     */
+    static final byte DELTA = 0;
+    static final byte PREVIOUS = 1;
+
+    /**
+     * Counters of the incremental jobs.
+     */
+    public enum Counter {
+        /**
+         * follow edges of the delta which are new.
+         */
+        ADDED_EDGES,
+        /**
+         * unfollow edges of the delta which removed an edge.
+         */
+        REMOVED_EDGES,
+        /**
+         * records of the previous inverted lists which are copied without a shuffle.
+         */
+        COPIED_LISTS,
+        /**
+         * rows of the output which are replaced or added.
+         */
+        UPDATED_ROWS,
+        /**
+         * rows of the previous output of affected users, they are replaced or removed.
+         */
+        REMOVED_ROWS
+    }
+
+    /**
+     * A set of users which is partitioned like the map output of UserWritable keys: the user X is in the file
+     * part-r-%05d of the partition (X.hashCode() & Integer.MAX_VALUE) % wtf.incremental.partitions.
+     * A partition is loaded when a user of it is looked up first, and the records of a map task are usually
+     * in one partition. A file of (X, NullWritable) only holds users, a file of (X, Y) maps X to the users Y.
+     */
+    public static class PartitionedUsers {
+        private final Configuration conf;
+        private final Path directory;
+        private final int partitions;
+        private final Map<Integer, Map<UserWritable, Set<UserWritable>>> loaded = new HashMap<>();
+
+        /**
+         * @param key configuration key of the directory of the set.
+         */
+        public PartitionedUsers(Configuration conf, String key) {
+            this.conf = conf;
+            this.directory = new Path(conf.get(key));
+            this.partitions = conf.getInt(PARTITIONS, 1);
+        }
+
+        public boolean contains(UserWritable user) throws IOException {
+            return partition(user).containsKey(user);
+        }
+
+        /**
+         * @return the users of user, an empty set if user is not in the set.
+         */
+        public Set<UserWritable> get(UserWritable user) throws IOException {
+            Set<UserWritable> users = partition(user).get(user);
+            return users != null ? users : Collections.<UserWritable>emptySet();
+        }
+
+        private Map<UserWritable, Set<UserWritable>> partition(UserWritable user) throws IOException {
+            int partition = (user.hashCode() & Integer.MAX_VALUE) % partitions;
+            Map<UserWritable, Set<UserWritable>> users = loaded.get(partition);
+            if(users == null){
+                users = load(new Path(directory, String.format("part-r-%05d", partition)));
+                loaded.put(partition, users);
+            }
+            return users;
+        }
+
+        private Map<UserWritable, Set<UserWritable>> load(Path file) throws IOException {
+            Map<UserWritable, Set<UserWritable>> users = new HashMap<>();
+            FileSystem fs = file.getFileSystem(conf);
+            // the file of a partition does not exist if its job was skipped.
+            if(!fs.exists(file)){
+                return users;
+            }
+            UserWritable user = new UserWritable();
+            try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file))) {
+                Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+                while (reader.next(user, value)) {
+                    Set<UserWritable> set = users.get(user);
+                    if(set == null){
+                        set = new HashSet<>();
+                        users.put(user.copy(), set);
+                    }
+                    if(value instanceof UserWritable){
+                        set.add(((UserWritable) value).copy());
+                    }
+                }
+            }
+            return users;
+        }
+    }
+
+    /**
+     * The DeltaUserMapper class emits the users whose inverted lists are touched by a delta line:
+     * X  +F1 -F2 ...  touches the list of X and the lists of the Fi.
+     */
+    public static class DeltaUserMapper extends Mapper<Object, Text, UserWritable, NullWritable>{
+        UserWritable user = new UserWritable();
+
+        @Override
+        protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(value.toString());
+            while (itr.hasMoreTokens()){
+                String token = itr.nextToken();
+                user.set(token.charAt(0) == '-' || token.charAt(0) == '+' ? token.substring(1) : token);
+                context.write(user, NullWritable.get());
+            }
+        }
+    }
+
+    /**
+     * The DistinctUserReducer class emits every user once, it is the combiner of its jobs too.
+     */
+    public static class DistinctUserReducer extends Reducer<UserWritable, NullWritable, UserWritable, NullWritable>{
+        @Override
+        protected void reduce(UserWritable key, Iterable<NullWritable> values, Context context)
+                throws IOException, InterruptedException {
+            context.write(key, NullWritable.get());
+        }
+    }
+
+    /**
+     * The PreviousListMapper class copies a previous inverted list of X to the output if the delta does not
+     * touch it. Otherwise it emits the edges of the list: (X, Yi) for each follower and (X, -Fi) for each
+     * directly followed user, with the tag PREVIOUS.
+     * The followers of a hub list of the BLOCK hub policy are taken from the records of the single blocks.
+     */
+    public static class PreviousListMapper
+            extends Mapper<UserWritable, InvertedListWritable, WtfDictionary.JoinKey, EdgeWritable>{
+        WtfDictionary.JoinKey joinKey = new WtfDictionary.JoinKey();
+        EdgeWritable edge = new EdgeWritable();
+        private PartitionedUsers touched;
+        private MultipleOutputs<WtfDictionary.JoinKey, EdgeWritable> outputs;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            touched = new PartitionedUsers(context.getConfiguration(), TOUCHED);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            if(outputs != null){
+                outputs.close();
+            }
+        }
+
+        @Override
+        protected void map(UserWritable key, InvertedListWritable value, Context context)
+                throws IOException, InterruptedException {
+            if(!touched.contains(key)){
+                // the outputs are only created for a copied list.
+                if(outputs == null){
+                    outputs = new MultipleOutputs<>(context);
+                }
+                context.getCounter(Counter.COPIED_LISTS).increment(1);
+                outputs.write(COPIED_OUTPUT, key, value, "part-" + COPIED_OUTPUT);
+                return;
+            }
+            joinKey.set(key, PREVIOUS);
+            if(value.getBlockFollowers().isEmpty()){
+                for(UserWritable follower: value.getFollowers()){
+                    edge.set(follower, false, 0);
+                    context.write(joinKey, edge);
+                }
+            }
+            for(UserWritable followed: value.getFollowed()){
+                edge.set(followed, true, 0);
+                context.write(joinKey, edge);
+            }
+        }
+    }
+
+    /**
+     * The DeltaMapper class emits the changed edges of a delta line: X  +F1 -F2 ...
+     * It emits (Fi, X) and (X, -Fi) like the indexing mapper with the tag DELTA, where the count of the edge
+     * is +1 for a follow and -1 for an unfollow.
+     */
+    public static class DeltaMapper extends Mapper<Object, Text, WtfDictionary.JoinKey, EdgeWritable>{
+        WtfDictionary.JoinKey joinKey = new WtfDictionary.JoinKey();
+        UserWritable user = new UserWritable();
+        UserWritable followed_by_user = new UserWritable();
+        EdgeWritable edge = new EdgeWritable();
+
+        @Override
+        protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(value.toString());
+            if(!itr.hasMoreTokens()){
+                return;
+            }
+            user.set(itr.nextToken());
+            while (itr.hasMoreTokens()){
+                String token = itr.nextToken();
+                int change = token.charAt(0) == '-' ? -1 : 1;
+                followed_by_user.set(token.charAt(0) == '-' || token.charAt(0) == '+' ? token.substring(1) : token);
+                edge.set(user, false, change);
+                joinKey.set(followed_by_user, DELTA);
+                context.write(joinKey, edge);
+                edge.set(followed_by_user, true, change);
+                joinKey.set(user, DELTA);
+                context.write(joinKey, edge);
+            }
+        }
+    }
+
+    /**
+     * The WtfIncrementalIndexingReducer class merges the changes and the previous edges of a touched list of X
+     * into the new inverted list of X. The changes of the delta come first and are summed up, then the previous
+     * edges are streamed into the list, so only the delta of X is kept in memory besides the list itself,
+     * and wtf.indexing.max.followers applies like in the indexing job.
+     * It writes the affected users to the named output "affected": X if the directly followed users of X
+     * changed, and all followers of X if a change of the followers of X is not zero. A follow of an edge which
+     * already exists makes the followers affected too, their rows are recomputed to the same rows.
+     */
+    public static class WtfIncrementalIndexingReducer extends WtfIndexing.WtfListReducer<WtfDictionary.JoinKey>{
+        /**
+         * user -> {sum of the changes, 1 if the edge is in the previous list}.
+         */
+        private Map<UserWritable, int[]> followers = new HashMap<>();
+        private Map<UserWritable, int[]> followed = new HashMap<>();
+        private EdgeWritable edge = new EdgeWritable();
+        private MultipleOutputs<UserWritable, InvertedListWritable> outputs;
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            super.cleanup(context);
+            if(outputs != null){
+                outputs.close();
+            }
+        }
+
+        @Override
+        protected void reduce(WtfDictionary.JoinKey key, Iterable<EdgeWritable> values, Context context)
+                throws IOException, InterruptedException {
+            followers.clear();
+            followed.clear();
+            result.clear();
+            UserWritable user = key.getUser();
+            // true once the changes of the delta are summed up, at the first previous edge.
+            boolean summed = false;
+            boolean followersAffected = false;
+            boolean followedChanged = false;
+            for(EdgeWritable value: values){
+                Map<UserWritable, int[]> changes = value.isDirect() ? followed : followers;
+                int[] state = changes.get(value.getUser());
+                if(value.getCount() != 0){
+                    if(state == null){
+                        state = new int[2];
+                        changes.put(value.getUser().copy(), state);
+                    }
+                    state[0] += value.getCount();
+                    continue;
+                }
+                if(!summed){
+                    followersAffected = changed(followers);
+                    summed = true;
+                }
+                if(state != null){
+                    state[1] = 1;
+                    if(state[0] < 0){
+                        if(value.isDirect()){
+                            context.getCounter(Counter.REMOVED_EDGES).increment(1);
+                            followedChanged = true;
+                        }
+                        continue;
+                    }
+                }
+                add(user, value, context);
+                if(followersAffected && !value.isDirect()){
+                    affected(value.getUser(), context);
+                }
+            }
+            if(!summed){
+                followersAffected = changed(followers);
+            }
+            // the follows of the delta which are not in the previous list.
+            followedChanged |= added(followed, user, false, context);
+            added(followers, user, followersAffected, context);
+            if(followedChanged){
+                affected(user, context);
+            }
+            flush(user, context);
+        }
+
+        /**
+         * @return true if a change of the users is not zero.
+         */
+        private static boolean changed(Map<UserWritable, int[]> changes){
+            for(int[] state: changes.values()){
+                if(state[0] != 0){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * adds the users of the delta which are not in the previous list and have a positive change.
+         * @param affected true if the added users are affected.
+         * @return true if a user is added.
+         */
+        private boolean added(Map<UserWritable, int[]> changes, UserWritable user, boolean affected, Context context)
+                throws IOException, InterruptedException {
+            boolean direct = changes == followed;
+            boolean changed = false;
+            for(Map.Entry<UserWritable, int[]> entry: changes.entrySet()){
+                int[] state = entry.getValue();
+                if(state[1] == 0 && state[0] > 0){
+                    edge.set(entry.getKey(), direct, 1);
+                    add(user, edge, context);
+                    if(direct){
+                        context.getCounter(Counter.ADDED_EDGES).increment(1);
+                    }
+                    if(affected){
+                        affected(entry.getKey(), context);
+                    }
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        private void affected(UserWritable user, Context context) throws IOException, InterruptedException {
+            // the outputs are only created if the delta changes a list.
+            if(outputs == null){
+                outputs = new MultipleOutputs<>(context);
+            }
+            outputs.write(AFFECTED_OUTPUT, user, NullWritable.get());
+        }
+    }
+
+    /**
+     * The SelectedMapper class reads a new inverted list of an affected user Y and emits (B, Y) for each user B
+     * followed by Y, since the follower Y of the list of B is affected, and (Y, Y) for the direct edges of Y.
+     */
+    public static class SelectedMapper extends Mapper<UserWritable, InvertedListWritable, UserWritable, UserWritable>{
+        private PartitionedUsers affected;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            affected = new PartitionedUsers(context.getConfiguration(), AFFECTED);
+        }
+
+        @Override
+        protected void map(UserWritable key, InvertedListWritable value, Context context)
+                throws IOException, InterruptedException {
+            if(value.getFollowed().isEmpty() || !affected.contains(key)){
+                return;
+            }
+            for(UserWritable followed: value.getFollowed()){
+                context.write(followed, key);
+            }
+            context.write(key, key);
+        }
+    }
+
+    /**
+     * The SelectedReducer class emits the distinct affected users of a list.
+     */
+    public static class SelectedReducer extends Reducer<UserWritable, UserWritable, UserWritable, UserWritable>{
+        private Set<UserWritable> users = new HashSet<>();
+
+        @Override
+        protected void reduce(UserWritable key, Iterable<UserWritable> values, Context context)
+                throws IOException, InterruptedException {
+            users.clear();
+            for(UserWritable value: values){
+                if(!users.contains(value)){
+                    users.add(value.copy());
+                    context.write(key, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * The similarity mapper of the incremental mode. It only emits the pairs and the direct edges of the
+     * affected users, so the reducer only computes their rows. An affected follower is paired with the whole
+     * list, so a list with a affected followers costs O(a * k) instead of all its pairs. The affected users of
+     * a list are looked up in the partition of its owner, and a list without them is skipped.
+     */
+    public static class WtfIncrementalSimilarityMapper extends WtfSimilarity.WtfSimilarityMapper{
+        private PartitionedUsers selected;
+        /**
+         * the affected users of the current list.
+         */
+        private Set<UserWritable> current;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            super.setup(context);
+            selected = new PartitionedUsers(context.getConfiguration(), SELECTED);
+        }
+
+        @Override
+        protected void map(UserWritable key, InvertedListWritable value, Context context)
+                throws IOException, InterruptedException {
+            current = selected.get(key);
+            if(!current.isEmpty()){
+                super.map(key, value, context);
+            }
+        }
+
+        @Override
+        protected void direct(UserWritable user, UserWritable followed, Context context)
+                throws IOException, InterruptedException {
+            if(current.contains(user)){
+                super.direct(user, followed, context);
+            }
+        }
+
+        @Override
+        protected boolean selective(){
+            return true;
+        }
+
+        @Override
+        protected boolean selected(UserWritable follower){
+            return current.contains(follower);
+        }
+    }
+
+    /**
+     * The PreviousRowMapper class copies a row of the previous output: X\t recommendations
+     * unless X is affected, then the row is replaced by the updated row of X, or removed if X does not
+     * follow anybody anymore.
+     */
+    public static class PreviousRowMapper extends Mapper<LongWritable, Text, Text, NullWritable>{
+        UserWritable user = new UserWritable();
+        private PartitionedUsers affected;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            affected = new PartitionedUsers(context.getConfiguration(), AFFECTED);
+        }
+
+        @Override
+        protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            byte[] bytes = value.getBytes();
+            int tab = 0;
+            while(tab < value.getLength() && bytes[tab] != '\t'){
+                tab++;
+            }
+            user.set(new String(bytes, 0, tab, StandardCharsets.UTF_8));
+            if(affected.contains(user)){
+                context.getCounter(Counter.REMOVED_ROWS).increment(1);
+                return;
+            }
+            context.write(value, NullWritable.get());
+        }
+    }
+
+    /**
+     * The UpdatedRowMapper class copies a row of the incremental similarity job.
+     */
+    public static class UpdatedRowMapper extends Mapper<LongWritable, Text, Text, NullWritable>{
+        @Override
+        protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            context.getCounter(Counter.UPDATED_ROWS).increment(1);
+            context.write(value, NullWritable.get());
+        }
+    }
+
+    /**
+     * runs the incremental jobs.
+     * @param conf job configuration
+     * @param previousMiddle inverted lists of the previous run
+     * @param delta delta file: X  +F1 -F2 ...
+     * @param previousOutput output of the previous run
+     * @param middle new inverted lists and affected users, the user sets are in middle-touched, middle-affected
+     *               and middle-selected.
+     * @param output new output, the rows of the affected users are in output-updated
+     * @return the summary of the stages which ran, the jobs stop after a failed stage.
+     */
+    public static PipelineSummary run(Configuration conf, Path previousMiddle, Path delta, Path previousOutput,
+                                      Path middle, Path output)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        PipelineSummary summary = new PipelineSummary();
+        if(conf.getBoolean(WtfDictionary.ENABLED, false) || conf.get(WtfDictionary.PATH) != null){
+            throw new IOException("the incremental mode does not support the dictionary stage");
+        }
+        if(conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT).needsDegrees()){
+            throw new IOException("the incremental mode does not support the " + conf.get(WtfSimilarity.SCORER)
+                    + " scorer");
+        }
+        // the mappers of the jobs with several inputs are added by MultipleInputs.
+        Job indexing = new Common.JobBuilder(conf, "wtf incremental indexing", WtfIncremental.class).stage("indexing")
+                .reducer(WtfIncrementalIndexingReducer.class)
+                .mapOutput(WtfDictionary.JoinKey.class, EdgeWritable.class)
+                .output(UserWritable.class, InvertedListWritable.class)
+                .outputFormat(SequenceFileOutputFormat.class).output(middle)
+                .build();
+        // the user sets have a partition per indexing reducer, like the default partitioning of the lists.
+        int partitions = Math.max(1, indexing.getNumReduceTasks());
+        Configuration sets = new Configuration(conf);
+        sets.setInt(PARTITIONS, partitions);
+        Path touched = middle.suffix("-touched");
+        Path affected = middle.suffix("-affected");
+        Path selected = middle.suffix("-selected");
+        sets.set(TOUCHED, touched.toString());
+        sets.set(AFFECTED, affected.toString());
+        sets.set(SELECTED, selected.toString());
+
+        Job touchedJob = new Common.JobBuilder(sets, "wtf incremental touched", WtfIncremental.class)
+                .mapper(DeltaUserMapper.class).combiner(DistinctUserReducer.class).reducer(DistinctUserReducer.class)
+                .mapOutput(UserWritable.class, NullWritable.class).output(UserWritable.class, NullWritable.class)
+                .outputFormat(SequenceFileOutputFormat.class).input(delta).output(touched)
+                .build();
+        touchedJob.setNumReduceTasks(partitions);
+        if(!summary.run("touched", touchedJob)){
+            return summary;
+        }
+
+        indexing.getConfiguration().setInt(PARTITIONS, partitions);
+        indexing.getConfiguration().set(TOUCHED, touched.toString());
+        MultipleInputs.addInputPath(indexing, new Path(previousMiddle, "part-*"), SequenceFileInputFormat.class,
+                PreviousListMapper.class);
+        MultipleInputs.addInputPath(indexing, delta, TextInputFormat.class, DeltaMapper.class);
+        MultipleOutputs.addNamedOutput(indexing, COPIED_OUTPUT, SequenceFileOutputFormat.class,
+                UserWritable.class, InvertedListWritable.class);
+        MultipleOutputs.addNamedOutput(indexing, AFFECTED_OUTPUT, SequenceFileOutputFormat.class,
+                UserWritable.class, NullWritable.class);
+        if(!summary.run("indexing", WtfDictionary.join(indexing))){
+            return summary;
+        }
+
+        Job merge = new Common.JobBuilder(sets, "wtf incremental merge", WtfIncremental.class)
+                .mapOutput(Text.class, NullWritable.class).output(Text.class, NullWritable.class)
+                .outputFormat(TextOutputFormat.class).output(output)
+                .build();
+        merge.setNumReduceTasks(0);
+        MultipleInputs.addInputPath(merge, new Path(previousOutput, "part-*"), TextInputFormat.class,
+                PreviousRowMapper.class);
+        // the affected files only exist if the delta changed an edge.
+        Path affectedFiles = new Path(middle, AFFECTED_OUTPUT + "-*");
+        if(affectedFiles.getFileSystem(conf).globStatus(affectedFiles).length > 0){
+            Job affectedJob = new Common.JobBuilder(sets, "wtf incremental affected", WtfIncremental.class)
+                    .mapper(Mapper.class).combiner(DistinctUserReducer.class).reducer(DistinctUserReducer.class)
+                    .mapOutput(UserWritable.class, NullWritable.class).output(UserWritable.class, NullWritable.class)
+                    .inputFormat(SequenceFileInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                    .input(affectedFiles).output(affected)
+                    .build();
+            affectedJob.setNumReduceTasks(partitions);
+            if(!summary.run("affected", affectedJob)){
+                return summary;
+            }
+
+            Job selectedJob = new Common.JobBuilder(sets, "wtf incremental selected", WtfIncremental.class)
+                    .mapper(SelectedMapper.class).reducer(SelectedReducer.class)
+                    .mapOutput(UserWritable.class, UserWritable.class).output(UserWritable.class, UserWritable.class)
+                    .inputFormat(SequenceFileInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                    .input(new Path(middle, "part-*")).output(selected)
+                    .build();
+            selectedJob.setNumReduceTasks(partitions);
+            if(!summary.run("selected", selectedJob)){
+                return summary;
+            }
+
+            Path updated = output.suffix("-updated");
+            boolean computed = new Common.JobBuilder(sets, "wtf incremental similarity", WtfIncremental.class)
+                    .stage("similarity")
+                    .mapper(WtfIncrementalSimilarityMapper.class).reducer(WtfSimilarity.WtfSimilarityReducer.class)
+                    .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                    .inputFormat(WtfSimilarity.InvertedListInputFormat.class).outputFormat(TextOutputFormat.class)
+                    .input(new Path(middle, "part-*")).output(updated)
+                    .run(summary);
+            if(!computed){
+                return summary;
+            }
+            MultipleInputs.addInputPath(merge, new Path(updated, "part-*"), TextInputFormat.class,
+                    UpdatedRowMapper.class);
+        }
+        summary.run("merge", merge);
+        return summary;
+    }
+
+    /**
+     * usage: WtfIncremental previousMiddle delta previousOutput middle output
+     * the JSON summary of the jobs is written to wtf.summary.path, by default next to the output.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path output = new Path(args[4]);
+        PipelineSummary summary = run(conf, new Path(args[0]), new Path(args[1]), new Path(args[2]),
+                new Path(args[3]), output);
+        summary.write(conf, new Path(conf.get(PipelineSummary.PATH, output.suffix("-summary.json").toString())));
+        System.exit(summary.isSuccessful() ? 0 : 1);
+    }
+}
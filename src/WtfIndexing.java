@@ -1,13 +1,23 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * Created by Arezou on 2017-02-11.
@@ -19,37 +29,402 @@ import java.util.StringTokenizer;
  * The reducer is the identity. It produces inverted lists of followers:
  * X, [ Y1, Y2, ... , Yk ]
  * where the Yi all follow user X.
+ * User ids are UserWritable keys and the "already follows" edges are EdgeWritable values with
+ * the direct flag, the inverted lists are written as InvertedListWritable into a SequenceFile.
  */ 
 public class WtfIndexing {
+    /**
+     * configuration key for the number of followers of an inverted list which the reducer keeps in memory,
+     * 0 means no limit. The followers of a longer list are spilled to Common.SPILL_DIR and the list is
+     * written as the block records of the BLOCK hub policy, so it needs the BLOCK hub policy if
+     * wtf.similarity.hub.threshold is set.
+     */
+    public static final String MAX_FOLLOWERS = "wtf.indexing.max.followers";
+
+    /**
+     * Counters of the indexing job.
+     */
+    public enum Counter {
+        /**
+         * blocks of hub lists, see WtfSimilarity.HubPolicy.BLOCK.
+         */
+        HUB_BLOCKS,
+        /**
+         * follow edges X -> Fi read by the mapper.
+         */
+        EDGES_READ,
+        /**
+         * inverted lists written by the reducer, a hub list of the BLOCK hub policy counts once.
+         */
+        INVERTED_LISTS,
+        /**
+         * number of followers of the longest inverted list of a reduce task. With several reduce tasks the job
+         * counter is the sum of the maxima of the tasks, so PipelineSummary reports the maximum of the task
+         * counters.
+         */
+        MAX_INVERTED_LIST_LENGTH,
+        /**
+         * inverted lists whose followers are spilled because of wtf.indexing.max.followers.
+         */
+        SPILLED_LISTS
+    }
+
     /**
      * The WtfIndexingMapper class emits Fi as the key and X as the value
      * for each user Fi followed by user X.
      */
-    public static class WtfIndexingMapper extends Mapper<Object, Text, Text, Text>{
-        Text user = new Text();
+    public static class WtfIndexingMapper extends Mapper<Object, Text, UserWritable, EdgeWritable>{
+        UserWritable user = new UserWritable();
+        UserWritable followed_by_user = new UserWritable();
+        EdgeWritable edge = new EdgeWritable();
+        /**
+         * true if the followers carry their degree, see WtfSimilarity.Scorer.
+         */
+        private boolean degrees;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            degrees = context.getConfiguration().getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT).needsDegrees();
+        }
+
         /**
          * @param key is the key of the chunk of data.
          * @param value is the value of the chunk or the information
          *              that we have in a chunk. In this example, value
          *              is a line of document. The value is: X  F1 F2 ...  Fn
          *              X is a user and follows F1 to Fn.
-         *              The map method emits (Fi, X) and (X, -Fi).
+         *              The map method emits (Fi, X) and (X, Fi) where the second edge is direct.
+         *              The follower X carries its degree n if the scorer needs degrees.
+         *              The ids are read from the bytes of the line, so no String is created for them.
          * @param context hadoop mapper context.
          * @throws IOException
          * @throws InterruptedException
          */
         @Override
         protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
-            StringTokenizer itr = new StringTokenizer(value.toString());
-            // First item of the iteration is a user(X).
-            user.set(itr.nextToken());
+            byte[] bytes = value.getBytes();
+            int length = value.getLength();
+            // First item of the line is a user(X).
+            int start = skipSpaces(bytes, 0, length);
+            if(start == length){
+                return;
+            }
+            int end = tokenEnd(bytes, start, length);
+            user.set(bytes, start, end - start);
+            int degree = degrees ? countTokens(bytes, end, length) : 0;
+            long edges = 0;
             // In this part, we iterate over all F1 to Fn and emit (Fi, X) and (X, -Fi).
-            while (itr.hasMoreTokens()){
-                Text followed_by_user = new Text();
-                followed_by_user.set(itr.nextToken());
-                context.write(followed_by_user, user);
-                followed_by_user.set("-" + followed_by_user.toString());
-                context.write(user, followed_by_user);
+            for(start = skipSpaces(bytes, end, length); start < length; start = skipSpaces(bytes, end, length)){
+                end = tokenEnd(bytes, start, length);
+                followed_by_user.set(bytes, start, end - start);
+                edge.set(user, false, 1, degree, 0);
+                context.write(followed_by_user, edge);
+                edge.set(followed_by_user, true, 1);
+                context.write(user, edge);
+                edges++;
+            }
+            context.getCounter(Counter.EDGES_READ).increment(edges);
+        }
+
+        /**
+         * @return true if b separates the ids of a line, like the default delimiters of StringTokenizer.
+         */
+        private static boolean isSpace(byte b){
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+        }
+
+        /**
+         * @return the offset of the first id at or after start, or end if there is no id.
+         */
+        private static int skipSpaces(byte[] bytes, int start, int end){
+            while(start < end && isSpace(bytes[start])){
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * @return the end of the id which starts at start.
+         */
+        private static int tokenEnd(byte[] bytes, int start, int end){
+            while(start < end && !isSpace(bytes[start])){
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * @return number of ids between start and end.
+         */
+        private static int countTokens(byte[] bytes, int start, int end){
+            int tokens = 0;
+            for(start = skipSpaces(bytes, start, end); start < end; start = skipSpaces(bytes, start, end)){
+                start = tokenEnd(bytes, start, end);
+                tokens++;
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * The base class of the reducers which build the inverted list of a user X, K is the map output key of X.
+     * A reduce call clears result, adds the edges of X with add() and writes the list with flush(), so the
+     * limits of wtf.indexing.max.followers and the block records of the BLOCK hub policy apply to every
+     * subclass.
+     */
+    public abstract static class WtfListReducer<K> extends Reducer<K, EdgeWritable, UserWritable, InvertedListWritable>{
+        InvertedListWritable result = new InvertedListWritable();
+        InvertedListWritable block = new InvertedListWritable();
+        /**
+         * followers per block of a hub list if the BLOCK hub policy is used, otherwise 0.
+         */
+        private int blockSize;
+        /**
+         * true if the block records carry the number of followers of the hub list, see WtfSimilarity.Scorer.
+         */
+        private boolean followerCounts;
+        /**
+         * number of followers of the longest inverted list of this task.
+         */
+        private int maxLength;
+        /**
+         * followers of a list which are kept in memory, 0 means no limit.
+         */
+        private int maxFollowers;
+        private File spillDirectory;
+        /**
+         * the spilled followers of the current list and their degrees, or null if the list fits in memory.
+         */
+        private File spilled;
+        private DataOutputStream spill;
+        private int spilledFollowers;
+        /**
+         * true if a spilled follower has a degree, so the degrees of the list are known.
+         */
+        private boolean spilledDegrees;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            Configuration conf = context.getConfiguration();
+            followerCounts = conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT).needsWeights();
+            WtfSimilarity.HubPolicy hubPolicy = conf.getEnum(WtfSimilarity.HUB_POLICY, WtfSimilarity.HubPolicy.SAMPLE);
+            if(hubPolicy == WtfSimilarity.HubPolicy.BLOCK){
+                blockSize = conf.getInt(WtfSimilarity.HUB_THRESHOLD, 0);
+            }
+            maxFollowers = conf.getInt(MAX_FOLLOWERS, 0);
+            if(maxFollowers > 0 && conf.getInt(WtfSimilarity.HUB_THRESHOLD, 0) > 0
+                    && hubPolicy != WtfSimilarity.HubPolicy.BLOCK){
+                throw new IOException(MAX_FOLLOWERS + " needs the BLOCK hub policy if "
+                        + WtfSimilarity.HUB_THRESHOLD + " is set");
+            }
+            spillDirectory = Common.spillDirectory(conf);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            deleteSpill();
+        }
+
+        /**
+         * adds an edge of the indexing mapper to the list of X in result. With wtf.indexing.max.followers, the
+         * followers above the limit are spilled to a local file, and the directly followed users above the limit
+         * are written as records without followers.
+         */
+        protected void add(UserWritable key, EdgeWritable value, Context context)
+                throws IOException, InterruptedException {
+            result.add(value);
+            if(maxFollowers > 0 && result.getFollowers().size() >= maxFollowers){
+                spillFollowers();
+            }
+            if(maxFollowers > 0 && result.getFollowed().size() >= maxFollowers){
+                writeFollowed(key, context);
+            }
+        }
+
+        /**
+         * writes the list of X in result unless it is empty.
+         */
+        protected void flush(UserWritable key, Context context) throws IOException, InterruptedException {
+            if(spill != null || !result.getFollowers().isEmpty() || !result.getFollowed().isEmpty()){
+                write(key, context);
+            }
+        }
+
+        /**
+         * emits the inverted list in result, or its block records if it is a hub list of the BLOCK hub policy.
+         */
+        private void write(UserWritable key, Context context) throws IOException, InterruptedException {
+            if(spill != null){
+                spillFollowers();
+                spill.close();
+                spill = null;
+            }
+            int length = spilled != null ? spilledFollowers : result.getFollowers().size();
+            context.getCounter(Counter.INVERTED_LISTS).increment(1);
+            if(length > maxLength){
+                context.getCounter(Counter.MAX_INVERTED_LIST_LENGTH).increment(length - maxLength);
+                maxLength = length;
+            }
+            if(spilled != null){
+                context.getCounter(Counter.SPILLED_LISTS).increment(1);
+                writeSpilledBlocks(key, context);
+                deleteSpill();
+                return;
+            }
+            if(blockSize > 0 && result.getFollowers().size() > blockSize){
+                writeBlocks(key, context);
+                return;
+            }
+            //It emit (x, result) where result is [ Y1, Y2, ... , Yk ].
+            context.write(key, result);
+        }
+
+        /**
+         * splits the followers of a hub list into blocks B1, B2, ... , Bb and emits (X, Bi) for each block
+         * and (X, Bi | Bj) for each pair of blocks i < j. The directly followed users are only in the first record.
+         */
+        private void writeBlocks(UserWritable key, Context context) throws IOException, InterruptedException {
+            List<UserWritable> followers = result.getFollowers();
+            InvertedListWritable.Degrees degrees = result.getFollowerDegrees();
+            int blocks = (followers.size() + blockSize - 1) / blockSize;
+            context.getCounter(Counter.HUB_BLOCKS).increment(blocks);
+            for(int i = 0; i < blocks; i++){
+                for(int j = i; j < blocks; j++){
+                    block.clear();
+                    if(followerCounts){
+                        block.setFollowerCount(followers.size());
+                    }
+                    if(i == 0 && j == 0){
+                        block.getFollowed().addAll(result.getFollowed());
+                    }
+                    int start = i * blockSize;
+                    int end = Math.min(followers.size(), (i + 1) * blockSize);
+                    block.getFollowers().addAll(followers.subList(start, end));
+                    if(!degrees.isEmpty()){
+                        block.getFollowerDegrees().addAll(degrees, start, end);
+                    }
+                    if(j != i){
+                        start = j * blockSize;
+                        end = Math.min(followers.size(), (j + 1) * blockSize);
+                        block.getBlockFollowers().addAll(followers.subList(start, end));
+                        if(!degrees.isEmpty()){
+                            block.getBlockFollowerDegrees().addAll(degrees, start, end);
+                        }
+                    }
+                    context.write(key, block);
+                }
+            }
+        }
+
+        /**
+         * appends the followers in memory and their degrees to the spill file of the current list.
+         */
+        private void spillFollowers() throws IOException {
+            if(spill == null){
+                spilled = File.createTempFile("wtf-followers-", ".spill", spillDirectory);
+                spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spilled)));
+                spilledFollowers = 0;
+                spilledDegrees = false;
+            }
+            List<UserWritable> followers = result.getFollowers();
+            InvertedListWritable.Degrees degrees = result.getFollowerDegrees();
+            for(int i = 0; i < followers.size(); i++){
+                int degree = InvertedListWritable.degree(degrees, i);
+                followers.get(i).write(spill);
+                WritableUtils.writeVInt(spill, degree);
+                spilledDegrees |= degree != 0;
+            }
+            spilledFollowers += followers.size();
+            followers.clear();
+            degrees.clear();
+        }
+
+        /**
+         * writes the directly followed users in memory as a record without followers, they generate
+         * only direct edges in the similarity job.
+         */
+        private void writeFollowed(UserWritable key, Context context) throws IOException, InterruptedException {
+            block.clear();
+            block.getFollowed().addAll(result.getFollowed());
+            context.write(key, block);
+            result.getFollowed().clear();
+        }
+
+        /**
+         * writes the spilled followers like writeBlocks, with blocks of at most wtf.indexing.max.followers
+         * followers. The file is read once for every block i, so only the blocks i and j are in memory.
+         */
+        private void writeSpilledBlocks(UserWritable key, Context context) throws IOException, InterruptedException {
+            int size = blockSize > 0 ? Math.min(blockSize, maxFollowers) : maxFollowers;
+            int blocks = (spilledFollowers + size - 1) / size;
+            if(blockSize > 0){
+                context.getCounter(Counter.HUB_BLOCKS).increment(blocks);
+            }
+            List<UserWritable> followers = new ArrayList<>();
+            InvertedListWritable.Degrees degrees = new InvertedListWritable.Degrees();
+            for(int i = 0; i < blocks; i++){
+                try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spilled)))){
+                    skipFollowers(in, i * size);
+                    readFollowers(in, Math.min(size, spilledFollowers - i * size), followers, degrees);
+                    for(int j = i; j < blocks; j++){
+                        block.clear();
+                        if(followerCounts){
+                            block.setFollowerCount(spilledFollowers);
+                        }
+                        if(i == 0 && j == 0){
+                            block.getFollowed().addAll(result.getFollowed());
+                        }
+                        block.getFollowers().addAll(followers);
+                        if(spilledDegrees){
+                            block.getFollowerDegrees().addAll(degrees);
+                        }
+                        if(j != i){
+                            readFollowers(in, Math.min(size, spilledFollowers - j * size), block.getBlockFollowers(),
+                                    block.getBlockFollowerDegrees());
+                            if(!spilledDegrees){
+                                block.getBlockFollowerDegrees().clear();
+                            }
+                        }
+                        context.write(key, block);
+                    }
+                }
+            }
+        }
+
+        /**
+         * reads the next n spilled followers and their degrees into the lists, which are cleared first.
+         */
+        private static void readFollowers(DataInputStream in, int n, List<UserWritable> followers,
+                                          InvertedListWritable.Degrees degrees) throws IOException {
+            followers.clear();
+            degrees.clear();
+            for(int i = 0; i < n; i++){
+                UserWritable follower = new UserWritable();
+                follower.readFields(in);
+                followers.add(follower);
+                degrees.add(WritableUtils.readVInt(in));
+            }
+        }
+
+        /**
+         * skips the next n spilled followers.
+         */
+        private static void skipFollowers(DataInputStream in, int n) throws IOException {
+            UserWritable follower = new UserWritable();
+            for(int i = 0; i < n; i++){
+                follower.readFields(in);
+                WritableUtils.readVInt(in);
+            }
+        }
+
+        private void deleteSpill() throws IOException {
+            if(spill != null){
+                spill.close();
+                spill = null;
+            }
+            if(spilled != null){
+                spilled.delete();
+                spilled = null;
             }
         }
     }
@@ -59,35 +434,41 @@ public class WtfIndexing {
      * X, [ Y1, Y2, ... , Yk ]
      * where the Yi all follow user X.
      */
-    public static class WtfIndexingReducer extends Reducer<Text, Text, Text, Text>{
+    public static class WtfIndexingReducer extends WtfListReducer<UserWritable>{
         /**
          * The reducer method receives a list of [ Y1, Y2, ... , Yk ] for X (user).
-         * The reducer method emits an inverted list of followers in this string format:
-         * "X    Y1 Y2 ...Yk" and hadoop writs this list in the output file.
+         * The reducer method emits an inverted list of followers and directly followed users
+         * of X and hadoop writs this list in the output file.
+         * If the BLOCK hub policy is used and X has more than wtf.similarity.hub.threshold followers,
+         * it emits a block record for each pair of blocks instead.
+         * With wtf.indexing.max.followers, the followers above the limit are spilled to a local file, and the
+         * directly followed users above the limit are written as records without followers.
          * @param key is a userId.
-         * @param values are list of users who followed user (key).
+         * @param values are list of users who followed user (key), and users followed directly by the key.
          * @param context hadoop reducer context.
          * @throws IOException
          * @throws InterruptedException
          */
         @Override
-        protected void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-            StringBuffer str = new StringBuffer();
-            //It iterates over values (Y1, Y2, ... , Yk) and appends to a string.
-            for(Text value: values){
-                str.append(" " + value.toString());
-            }
-            Text result = new Text();
-            result.set(str.toString());
-            //It emit (x, result) where result is "Y1 Y2 ...Yk".
-            context.write(key, result);
+        protected void reduce(UserWritable key, Iterable<EdgeWritable> values, Context context)
+                throws IOException, InterruptedException {
+            result.clear();
+            //It iterates over values (Y1, Y2, ... , Yk) and adds them to the inverted list.
+            for(EdgeWritable value: values){
+                add(key, value, context);
+            }
+            flush(key, context);
         }
     }
 
     public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
         Configuration conf = new Configuration();
-        Common.jobRunner(conf, "wtf indexing", WtfIndexing.class, WtfIndexingMapper.class,
-                WtfIndexingReducer.class, null, Text.class, Text.class, Text.class, Text.class,
+        // generic options like -D wtf.indexing.max.followers=100000 are applied to conf.
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        boolean successful = Common.jobRunner(conf, "wtf indexing", WtfIndexing.class, WtfIndexingMapper.class,
+                WtfIndexingReducer.class, null, UserWritable.class, EdgeWritable.class,
+                UserWritable.class, InvertedListWritable.class, TextInputFormat.class, SequenceFileOutputFormat.class,
                 new Path(args[0]), new Path(args[1]));
+        System.exit(successful ? 0 : 1);
     }
 }
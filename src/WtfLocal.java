@@ -0,0 +1,269 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class is a single machine version of the indexing and similarity jobs for graphs which fit
+ * in memory. It loads the input into a CsrGraph, where the in-lists of the graph are the inverted lists
+ * of the indexing job, and computes the recommendations of the users in parallel in a fork-join pool.
+ * For a user X it counts, for every user Fi followed by X, the other followers of Fi. Each worker
+ * thread reuses its counting arrays, so counting does not allocate.
+ * The input is either the text input of the Hadoop pipeline or a binary graph file of CsrGraphFile,
+ * which is memory-mapped instead of parsed.
+ * The output is the same as the output of the Hadoop pipeline with one reducer: outputPath/part-r-00000
+ * The scores of wtf.similarity.scorer are computed from the degrees of the graph.
+ * NOTE: it supports wtf.topk, but not the hub policies which are only needed for the Hadoop jobs.
+ */
+public class WtfLocal {
+    /**
+     * configuration key for the number of worker threads, the default is the number of processors.
+     */
+    public static final String THREADS = "wtf.local.threads";
+    /**
+     * number of users whose output lines are computed before they are written.
+     */
+    private static final int BATCH = 1 << 14;
+    /**
+     * number of users of a fork-join task which is not split anymore.
+     */
+    private static final int LEAF = 64;
+
+    private final CsrGraph graph;
+    private final int topK;
+    private final WtfSimilarity.Scorer scorer;
+    /**
+     * dense ids in the order of the output lines.
+     */
+    private final IntBuffer order;
+    /**
+     * dense id -> position in order, it is used as the user id of TopRecommendations so ties are
+     * broken in the same order as the Hadoop pipeline.
+     */
+    private final int[] rank;
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * @param graph follower graph
+     * @param topK maximum number of recommendations per user, 0 means all of them.
+     */
+    public WtfLocal(CsrGraph graph, int topK) {
+        this(graph, topK, WtfSimilarity.Scorer.COUNT);
+    }
+
+    /**
+     * @param graph follower graph
+     * @param topK maximum number of recommendations per user, 0 means all of them.
+     * @param scorer scorer of the recommendations
+     */
+    public WtfLocal(CsrGraph graph, int topK, WtfSimilarity.Scorer scorer) {
+        this.graph = graph;
+        this.topK = topK;
+        this.scorer = scorer;
+        this.order = graph.getOrder();
+        this.rank = new int[graph.size()];
+        for (int i = 0; i < rank.length; i++) {
+            rank[order.get(i)] = i;
+        }
+        this.workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    /**
+     * computes the recommendations of all users and writes them in the order of the Hadoop output.
+     * @param pool fork-join pool of the workers
+     * @param out output stream
+     * @throws IOException
+     */
+    public void run(ForkJoinPool pool, OutputStream out) throws IOException {
+        byte[][] lines = new byte[BATCH][];
+        for (int start = 0; start < rank.length; start += BATCH) {
+            int end = Math.min(rank.length, start + BATCH);
+            pool.invoke(new Lines(lines, start, start, end));
+            for (int i = 0; i < end - start; i++) {
+                if (lines[i] != null) {
+                    out.write(lines[i]);
+                    lines[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * computes the output lines of the users order[from .. to), lines[i - start] is the line of order[i].
+     */
+    private class Lines extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final byte[][] lines;
+        private final int start;
+        private final int from;
+        private final int to;
+
+        Lines(byte[][] lines, int start, int from, int to) {
+            this.lines = lines;
+            this.start = start;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                Worker worker = workers.get();
+                for (int i = from; i < to; i++) {
+                    lines[i - start] = worker.line(order.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Lines(lines, start, from, middle), new Lines(lines, start, middle, to));
+        }
+    }
+
+    /**
+     * The counting state of a worker thread, it is reused for all users of the thread.
+     */
+    private class Worker {
+        /**
+         * dense id -> number of users followed in common with the current user.
+         */
+        private final int[] counts = new int[graph.size()];
+        /**
+         * dense id -> sum of the weights of the users followed in common with the current user, only
+         * allocated for the ADAMIC_ADAR scorer.
+         */
+        private final double[] weights = scorer.needsWeights() ? new double[graph.size()] : null;
+        /**
+         * dense ids whose count is not 0.
+         */
+        private final int[] touched = new int[graph.size()];
+        /**
+         * dense id -> generation of the last user which follows it directly.
+         */
+        private final int[] excluded = new int[graph.size()];
+        private int generation;
+        private final TopRecommendations recommendations = new TopRecommendations(topK);
+        private final UserWritable user = new UserWritable();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        /**
+         * a view of the name table of the graph with its own position.
+         */
+        private final ByteBuffer names = graph.getNames().duplicate();
+        private byte[] name = new byte[64];
+
+        /**
+         * @param x dense id of user X
+         * @return the output line of X: "X\t Y1(c1) Y2(c2) ...\n", or null if X does not follow anybody
+         * and has no line in the Hadoop output.
+         */
+        byte[] line(int x) {
+            IntBuffer outOffsets = graph.getOutOffsets();
+            IntBuffer outTargets = graph.getOutTargets();
+            IntBuffer inOffsets = graph.getInOffsets();
+            IntBuffer inSources = graph.getInSources();
+            int outStart = outOffsets.get(x);
+            int outEnd = outOffsets.get(x + 1);
+            if (outStart == outEnd) {
+                return null;
+            }
+            generation++;
+            int size = 0;
+            for (int e = outStart; e < outEnd; e++) {
+                excluded[outTargets.get(e)] = generation;
+            }
+            // every inverted list of a user F followed by X contributes all followers of F.
+            for (int e = outStart; e < outEnd; e++) {
+                int followed = outTargets.get(e);
+                int inStart = inOffsets.get(followed);
+                int inEnd = inOffsets.get(followed + 1);
+                double weight = weights != null ? WtfSimilarity.Scorer.weight(inEnd - inStart) : 0;
+                for (int f = inStart; f < inEnd; f++) {
+                    int candidate = inSources.get(f);
+                    if (counts[candidate]++ == 0) {
+                        touched[size++] = candidate;
+                    }
+                    if (weights != null) {
+                        weights[candidate] += weight;
+                    }
+                }
+            }
+            // X itself is counted once in each inverted list, the pairs are only between different positions.
+            counts[x] -= outEnd - outStart;
+            recommendations.clear();
+            for (int i = 0; i < size; i++) {
+                int candidate = touched[i];
+                int count = counts[candidate];
+                counts[candidate] = 0;
+                double weight = 0;
+                if (weights != null) {
+                    weight = weights[candidate];
+                    weights[candidate] = 0;
+                }
+                if (count > 0 && excluded[candidate] != generation) {
+                    user.set(rank[candidate]);
+                    recommendations.offer(user, scorer.score(count, weight, outEnd - outStart,
+                            outOffsets.get(candidate + 1) - outOffsets.get(candidate)));
+                }
+            }
+            recommendations.sort();
+            line.reset();
+            writeName(x);
+            line.write('\t');
+            for (int i = 0; i < recommendations.size(); i++) {
+                recommendations.getUser(i, user);
+                line.write(' ');
+                writeName(order.get((int) user.getId()));
+                line.write('(');
+                byte[] score = Recommendation.formatScore(recommendations.getScore(i))
+                        .getBytes(StandardCharsets.US_ASCII);
+                line.write(score, 0, score.length);
+                line.write(')');
+            }
+            line.write('\n');
+            return line.toByteArray();
+        }
+
+        /**
+         * appends the UTF-8 user id of u to the line.
+         */
+        private void writeName(int u) {
+            IntBuffer nameOffsets = graph.getNameOffsets();
+            int start = nameOffsets.get(u);
+            int length = nameOffsets.get(u + 1) - start;
+            if (length > name.length) {
+                name = new byte[Math.max(length, name.length * 2)];
+            }
+            names.position(start);
+            names.get(name, 0, length);
+            line.write(name, 0, length);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        Path input = Paths.get(args[0]);
+        CsrGraph graph = CsrGraphFile.isGraphFile(input) ? CsrGraphFile.map(input) : CsrGraph.load(input);
+        WtfLocal wtf = new WtfLocal(graph, conf.getInt(WtfSimilarity.TOP_K, 0),
+                conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT));
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output);
+        ForkJoinPool pool = new ForkJoinPool(conf.getInt(THREADS, Runtime.getRuntime().availableProcessors()));
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output.resolve("part-r-00000")))) {
+            wtf.run(pool, out);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
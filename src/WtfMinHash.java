@@ -0,0 +1,545 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class is the approximate mode of the pipeline. The exact similarity job generates all pairs of every
+ * inverted list, which is quadratic in the length of the lists. Instead, the LSH job computes a MinHash
+ * signature of the set of users followed by each user X, with wtf.lsh.bands * wtf.lsh.rows hash functions,
+ * and puts X into one bucket per band. Only the pairs of users in the same bucket are scored, with the exact
+ * number of common followed users, so two users whose followed sets have the Jaccard similarity s are
+ * candidates with the probability 1 - (1 - s^rows)^bands.
+ * The band records only carry X and its signature, the followed users are joined with the candidate pairs
+ * afterwards, once per pair instead of once per band. It runs four jobs:
+ * 1. LSH: the mapper emits (bucket, X with its signature) for each band, the reducer emits the candidate
+ *    pairs (Yi, Yj) of a bucket which did not collide in an earlier band, each pair once, with Yi the user
+ *    who follows fewer users.
+ * 2. join: the candidate pairs (Yi, Yj) are joined with the followed users of Yi by Yi and emitted
+ *    by Yj.
+ * 3. scoring: the pairs are joined with the followed users of Yj by Yj, the reducer emits (Yi, Yj, count)
+ *    and (Yj, Yi, count) where count is the number of common followed users, and the direct edges (Yj, -Fi).
+ * 4. similarity: the identity mapper and WtfSimilarity.WtfSimilarityReducer, like the fused mode.
+ * The output has the format of the exact pipeline, WtfRecall compares it with the exact output.
+ * NOTE: the dictionary stage and the ADAMIC_ADAR scorer, which needs the followers of the common
+ * followed users, are not supported.
+ */
+public class WtfMinHash {
+    /**
+     * configuration key of the approximate mode of Wtf.
+     */
+    public static final String ENABLED = "wtf.lsh";
+    /**
+     * configuration key for the number of bands of a signature.
+     */
+    public static final String BANDS = "wtf.lsh.bands";
+    public static final int DEFAULT_BANDS = 16;
+    /**
+     * configuration key for the number of hash functions per band.
+     */
+    public static final String ROWS = "wtf.lsh.rows";
+    public static final int DEFAULT_ROWS = 1;
+    /**
+     * configuration key for the seed of the hash functions.
+     */
+    public static final String SEED = "wtf.lsh.seed";
+    /**
+     * configuration key for the maximum number of users of a bucket whose pairs are scored, the other
+     * users of a larger bucket are dropped from the bucket.
+     */
+    public static final String BUCKET_MAX = "wtf.lsh.bucket.max";
+    public static final int DEFAULT_BUCKET_MAX = 1000;
+    /**
+     * tags of the join keys, the followed users of a user sort before its candidates.
+     */
+    static final byte FOLLOWED = 0;
+    static final byte CANDIDATE = 1;
+
+    /**
+     * Counters of the LSH job.
+     */
+    public enum Counter {
+        /**
+         * users whose signature is computed by the mapper.
+         */
+        SIGNATURES,
+        /**
+         * buckets with at least two users.
+         */
+        BUCKETS,
+        /**
+         * buckets with more than wtf.lsh.bucket.max users.
+         */
+        LARGE_BUCKETS,
+        /**
+         * users which are dropped from large buckets.
+         */
+        DROPPED_MEMBERS,
+        /**
+         * pairs of users which are scored, each pair once.
+         */
+        CANDIDATE_PAIRS,
+        /**
+         * candidate pairs with at least one common followed user.
+         */
+        SCORED_PAIRS,
+        /**
+         * pairs of users which are not scored again because they collided in an earlier band.
+         */
+        DUPLICATE_PAIRS,
+        /**
+         * pairs of a large bucket with a dropped user which did not collide in an earlier band. They are
+         * skipped as duplicates in the later bands, so they are never scored.
+         */
+        LOST_PAIRS
+    }
+
+    /**
+     * The hash functions of the signatures, they only depend on the seed, so all mappers use the same ones.
+     */
+    static class Signer {
+        private final int bands;
+        private final int rows;
+        private final long[] seeds;
+
+        Signer(int bands, int rows, long seed) {
+            this.bands = bands;
+            this.rows = rows;
+            this.seeds = new long[bands * rows];
+            Random random = new Random(seed);
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = random.nextLong();
+            }
+        }
+
+        Signer(Configuration conf) {
+            this(conf.getInt(BANDS, DEFAULT_BANDS), conf.getInt(ROWS, DEFAULT_ROWS), conf.getLong(SEED, 1));
+        }
+
+        /**
+         * @param followed users followed by X, not empty
+         * @return the hash of every band of the MinHash signature of followed, the band index is part of the hash.
+         */
+        long[] bandHashes(List<UserWritable> followed) {
+            long[] minimums = new long[seeds.length];
+            Arrays.fill(minimums, Long.MAX_VALUE);
+            for (UserWritable user : followed) {
+                long hash = hash(user);
+                for (int i = 0; i < seeds.length; i++) {
+                    minimums[i] = Math.min(minimums[i], mix(hash ^ seeds[i]));
+                }
+            }
+            long[] hashes = new long[bands];
+            for (int band = 0; band < bands; band++) {
+                long hash = band;
+                for (int row = 0; row < rows; row++) {
+                    hash = mix(hash * 31 + minimums[band * rows + row]);
+                }
+                hashes[band] = hash;
+            }
+            return hashes;
+        }
+
+        /**
+         * @return a 64 bit hash of a user id, numeric ids are their own hash.
+         */
+        private static long hash(UserWritable user) {
+            if (user.isNumeric()) {
+                return user.getId();
+            }
+            // FNV-1a of the bytes of a string id.
+            long hash = 0xcbf29ce484222325L;
+            Text name = user.getName();
+            for (int i = 0; i < name.getLength(); i++) {
+                hash = (hash ^ (name.getBytes()[i] & 0xff)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        /**
+         * the finalizer of SplitMix64, it maps a 64 bit value to a well mixed 64 bit value.
+         */
+        static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * input of this Mapper is a line X  F1 F2 ...  Fn. It emits (bucket, X) for every band of the signature
+     * of { F1, F2, ... , Fn }, where the bucket is the hash of the band.
+     */
+    public static class WtfMinHashMapper extends Mapper<Object, Text, LongWritable, MinHashWritable> {
+        private Signer signer;
+        private final LongWritable bucket = new LongWritable();
+        private final MinHashWritable value = new MinHashWritable();
+        private final List<UserWritable> followed = new ArrayList<>();
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            signer = new Signer(context.getConfiguration());
+        }
+
+        @Override
+        protected void map(Object key, Text line, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(line.toString());
+            value.getUser().set(itr.nextToken());
+            followed.clear();
+            while (itr.hasMoreTokens()) {
+                followed.add(new UserWritable(itr.nextToken()));
+            }
+            if (followed.isEmpty()) {
+                return;
+            }
+            long[] hashes = signer.bandHashes(followed);
+            int[] fingerprints = new int[hashes.length];
+            for (int band = 0; band < hashes.length; band++) {
+                fingerprints[band] = (int) (hashes[band] ^ (hashes[band] >>> 32));
+            }
+            value.setFingerprints(fingerprints);
+            value.setDegree(followed.size());
+            for (int band = 0; band < hashes.length; band++) {
+                value.setBand(band);
+                bucket.set(hashes[band]);
+                context.write(bucket, value);
+            }
+            context.getCounter(Counter.SIGNATURES).increment(1);
+        }
+    }
+
+    /**
+     * The reducer receives the users of one bucket. It emits every pair (Yi, Yj) of the bucket as the
+     * candidate Yj of Yi, unless the pair collided in an earlier band, where Yi follows fewer users than Yj.
+     * The pairs of a dropped user which collide for the first time in this band are lost, they are counted by
+     * grouping the users by the fingerprints of the earlier bands and comparing the groups.
+     */
+    public static class WtfMinHashReducer
+            extends Reducer<LongWritable, MinHashWritable, WtfDictionary.JoinKey, FollowedWritable> {
+        private final List<MinHashWritable> members = new ArrayList<>();
+        private final Map<Prefix, Long> droppedPrefixes = new HashMap<>();
+        private final WtfDictionary.JoinKey pair = new WtfDictionary.JoinKey();
+        private final FollowedWritable candidate = new FollowedWritable();
+        private int bucketMax;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            bucketMax = context.getConfiguration().getInt(BUCKET_MAX, DEFAULT_BUCKET_MAX);
+        }
+
+        @Override
+        protected void reduce(LongWritable key, Iterable<MinHashWritable> values, Context context)
+                throws IOException, InterruptedException {
+            members.clear();
+            droppedPrefixes.clear();
+            long dropped = 0;
+            for (MinHashWritable value : values) {
+                if (members.size() < bucketMax) {
+                    members.add(value.copy());
+                } else {
+                    dropped++;
+                    add(droppedPrefixes, value);
+                }
+            }
+            if (members.size() < 2) {
+                return;
+            }
+            context.getCounter(Counter.BUCKETS).increment(1);
+            if (dropped > 0) {
+                context.getCounter(Counter.LARGE_BUCKETS).increment(1);
+                context.getCounter(Counter.DROPPED_MEMBERS).increment(dropped);
+                context.getCounter(Counter.LOST_PAIRS).increment(lostPairs());
+            }
+            long pairs = 0;
+            long duplicates = 0;
+            for (int i = 0; i < members.size(); i++) {
+                MinHashWritable a = members.get(i);
+                for (int j = i + 1; j < members.size(); j++) {
+                    MinHashWritable b = members.get(j);
+                    // a bucket key of another band with the same hash is only possible by a 64 bit collision.
+                    if (a.getBand() != b.getBand() || a.collidedBefore(b)) {
+                        duplicates++;
+                        continue;
+                    }
+                    pairs++;
+                    // the followed users of the key user are sent to the other user, the shorter list is sent.
+                    boolean first = a.getDegree() <= b.getDegree();
+                    pair.set((first ? a : b).getUser(), CANDIDATE);
+                    candidate.getUser().set((first ? b : a).getUser());
+                    context.write(pair, candidate);
+                }
+            }
+            context.getCounter(Counter.CANDIDATE_PAIRS).increment(pairs);
+            context.getCounter(Counter.DUPLICATE_PAIRS).increment(duplicates);
+        }
+
+        /**
+         * @return number of pairs of a dropped user with a kept or dropped user which did not collide in an
+         * earlier band. Users with the same earlier fingerprints are counted together.
+         */
+        private long lostPairs() {
+            Map<Prefix, Long> keptPrefixes = new HashMap<>();
+            for (MinHashWritable member : members) {
+                add(keptPrefixes, member);
+            }
+            List<Map.Entry<Prefix, Long>> dropped = new ArrayList<>(droppedPrefixes.entrySet());
+            long lost = 0;
+            for (int i = 0; i < dropped.size(); i++) {
+                Prefix a = dropped.get(i).getKey();
+                long count = dropped.get(i).getValue();
+                if (!a.collides(a)) {
+                    lost += count * (count - 1) / 2;
+                }
+                for (int j = i + 1; j < dropped.size(); j++) {
+                    if (!a.collides(dropped.get(j).getKey())) {
+                        lost += count * dropped.get(j).getValue();
+                    }
+                }
+                for (Map.Entry<Prefix, Long> kept : keptPrefixes.entrySet()) {
+                    if (!a.collides(kept.getKey())) {
+                        lost += count * kept.getValue();
+                    }
+                }
+            }
+            return lost;
+        }
+
+        private static void add(Map<Prefix, Long> prefixes, MinHashWritable member) {
+            Prefix prefix = new Prefix(Arrays.copyOf(member.getFingerprints(), member.getBand()));
+            Long count = prefixes.get(prefix);
+            prefixes.put(prefix, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * input of this Mapper is a line X  F1 F2 ...  Fn. It emits ((X, FOLLOWED), X with its sorted followed
+     * users) for the joins with the candidate pairs, users who follow nobody have no candidates.
+     */
+    public static class FollowedMapper extends Mapper<Object, Text, WtfDictionary.JoinKey, FollowedWritable> {
+        private final WtfDictionary.JoinKey key = new WtfDictionary.JoinKey();
+        private final FollowedWritable value = new FollowedWritable();
+
+        @Override
+        protected void map(Object offset, Text line, Context context) throws IOException, InterruptedException {
+            StringTokenizer itr = new StringTokenizer(line.toString());
+            value.getUser().set(itr.nextToken());
+            List<UserWritable> followed = value.getFollowed();
+            followed.clear();
+            while (itr.hasMoreTokens()) {
+                followed.add(new UserWritable(itr.nextToken()));
+            }
+            if (followed.isEmpty()) {
+                return;
+            }
+            Collections.sort(followed);
+            key.set(value.getUser(), FOLLOWED);
+            context.write(key, value);
+        }
+    }
+
+    /**
+     * The reducer of the join job receives the followed users of Yi first and then the candidates Yj of Yi.
+     * It emits ((Yj, CANDIDATE), Yi with its followed users) for every candidate, so a row is never buffered.
+     */
+    public static class CandidateJoinReducer extends
+            Reducer<WtfDictionary.JoinKey, FollowedWritable, WtfDictionary.JoinKey, FollowedWritable> {
+        private final WtfDictionary.JoinKey pair = new WtfDictionary.JoinKey();
+        private final FollowedWritable user = new FollowedWritable();
+
+        @Override
+        protected void reduce(WtfDictionary.JoinKey key, Iterable<FollowedWritable> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<FollowedWritable> candidates = values.iterator();
+            user.set(followed(key, candidates));
+            while (candidates.hasNext()) {
+                pair.set(candidates.next().getUser(), CANDIDATE);
+                context.write(pair, user);
+            }
+        }
+    }
+
+    /**
+     * The reducer of the scoring job receives the followed users of Yj first and then the candidates Yi of Yj
+     * with their followed users. It emits the direct edges (Yj, -Fi) and, for every candidate with common
+     * followed users, (Yi, Yj, count) and (Yj, Yi, count) where count is the number of users followed by
+     * both, if Yi does not follow Yj directly and the other way round.
+     */
+    public static class CandidateScoringReducer
+            extends Reducer<WtfDictionary.JoinKey, FollowedWritable, UserWritable, EdgeWritable> {
+        private final FollowedWritable user = new FollowedWritable();
+        private final EdgeWritable edge = new EdgeWritable();
+        private boolean degrees;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            degrees = context.getConfiguration().getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT)
+                    .needsDegrees();
+        }
+
+        @Override
+        protected void reduce(WtfDictionary.JoinKey key, Iterable<FollowedWritable> values, Context context)
+                throws IOException, InterruptedException {
+            Iterator<FollowedWritable> candidates = values.iterator();
+            user.set(followed(key, candidates));
+            for (UserWritable followed : user.getFollowed()) {
+                edge.set(followed, true, 1);
+                context.write(user.getUser(), edge);
+            }
+            long scored = 0;
+            while (candidates.hasNext()) {
+                FollowedWritable candidate = candidates.next();
+                int count = user.common(candidate);
+                if (count == 0) {
+                    continue;
+                }
+                scored++;
+                pair(user, candidate, count, context);
+                pair(candidate, user, count, context);
+            }
+            context.getCounter(Counter.SCORED_PAIRS).increment(scored);
+        }
+
+        /**
+         * emits (follower, candidate, count) if follower does not follow the candidate directly.
+         */
+        private void pair(FollowedWritable follower, FollowedWritable candidate, int count, Context context)
+                throws IOException, InterruptedException {
+            if (follower.follows(candidate.getUser())) {
+                return;
+            }
+            edge.set(candidate.getUser(), false, count, degrees ? candidate.getFollowed().size() : 0, 0);
+            context.write(follower.getUser(), edge);
+        }
+    }
+
+    /**
+     * @return the followed users of the key user, which are the first value of a reduce call of a join.
+     * @throws IOException if the key user has candidates but follows nobody.
+     */
+    private static FollowedWritable followed(WtfDictionary.JoinKey key, Iterator<FollowedWritable> values)
+            throws IOException {
+        FollowedWritable followed = values.next();
+        if (key.getTag() != FOLLOWED) {
+            throw new IOException("user " + key.getUser() + " has candidates but no followed users");
+        }
+        return followed;
+    }
+
+    /**
+     * The fingerprints of the bands before the band of a bucket.
+     */
+    static final class Prefix {
+        private final int[] fingerprints;
+
+        Prefix(int[] fingerprints) {
+            this.fingerprints = fingerprints;
+        }
+
+        /**
+         * @return true if the users of both prefixes collided in an earlier band, like
+         * MinHashWritable.collidedBefore.
+         */
+        boolean collides(Prefix other) {
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] == other.fingerprints[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Prefix && Arrays.equals(fingerprints, ((Prefix) o).fingerprints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(fingerprints);
+        }
+    }
+
+    /**
+     * runs the LSH, join, scoring and similarity jobs.
+     * @param conf job configuration
+     * @param input input of the pipeline: X  F1 F2 ...  Fn
+     * @param middle output of the scoring job, the scored pairs and the direct edges. The candidate pairs
+     *               are written to middle-candidates and the pairs joined with their first users to middle-joined.
+     * @param output output of the similarity job
+     * @param summary summary of the pipeline
+     * @return true if all jobs were successful.
+     */
+    public static boolean run(Configuration conf, Path input, Path middle, Path output, PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        if (conf.getBoolean(WtfDictionary.ENABLED, false) || conf.get(WtfDictionary.PATH) != null) {
+            throw new IOException("the approximate mode does not support the dictionary stage");
+        }
+        if (conf.getEnum(WtfSimilarity.SCORER, WtfSimilarity.Scorer.COUNT).needsWeights()) {
+            throw new IOException("the approximate mode does not support the " + conf.get(WtfSimilarity.SCORER)
+                    + " scorer");
+        }
+        Path candidates = middle.suffix("-candidates");
+        boolean hashed = new Common.JobBuilder(conf, "wtf lsh", WtfMinHash.class).stage("lsh")
+                .mapper(WtfMinHashMapper.class).reducer(WtfMinHashReducer.class)
+                .mapOutput(LongWritable.class, MinHashWritable.class)
+                .output(WtfDictionary.JoinKey.class, FollowedWritable.class)
+                .inputFormat(TextInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                .input(input).output(candidates)
+                .run(summary);
+        if (!hashed) {
+            return false;
+        }
+        // the mappers of the joins are added by MultipleInputs.
+        Path joined = middle.suffix("-joined");
+        Job joinJob = new Common.JobBuilder(conf, "wtf lsh join", WtfMinHash.class).stage("lsh")
+                .reducer(CandidateJoinReducer.class)
+                .mapOutput(WtfDictionary.JoinKey.class, FollowedWritable.class)
+                .output(WtfDictionary.JoinKey.class, FollowedWritable.class)
+                .outputFormat(SequenceFileOutputFormat.class).output(joined)
+                .build();
+        MultipleInputs.addInputPath(joinJob, input, TextInputFormat.class, FollowedMapper.class);
+        MultipleInputs.addInputPath(joinJob, new Path(candidates, "part-*"), SequenceFileInputFormat.class,
+                Mapper.class);
+        if (!summary.run("lsh", WtfDictionary.join(joinJob))) {
+            return false;
+        }
+        Job scoreJob = new Common.JobBuilder(conf, "wtf lsh scoring", WtfMinHash.class).stage("lsh")
+                .reducer(CandidateScoringReducer.class)
+                .mapOutput(WtfDictionary.JoinKey.class, FollowedWritable.class)
+                .output(UserWritable.class, EdgeWritable.class)
+                .outputFormat(SequenceFileOutputFormat.class).output(middle)
+                .build();
+        MultipleInputs.addInputPath(scoreJob, input, TextInputFormat.class, FollowedMapper.class);
+        MultipleInputs.addInputPath(scoreJob, new Path(joined, "part-*"), SequenceFileInputFormat.class,
+                Mapper.class);
+        if (!summary.run("lsh", WtfDictionary.join(scoreJob))) {
+            return false;
+        }
+        return new Common.JobBuilder(conf, "wtf similarity", WtfSimilarity.class).stage("similarity")
+                .mapper(Mapper.class).reducer(WtfSimilarity.WtfSimilarityReducer.class)
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                .inputFormat(SequenceFileInputFormat.class).outputFormat(TextOutputFormat.class)
+                .input(new Path(middle, "part-*")).output(output)
+                .run(summary);
+    }
+}
@@ -0,0 +1,165 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class compares the output of the approximate mode (see WtfMinHash) with the output of the exact
+ * pipeline on the same input, and reports the recall@K: for a user X with recommendations in the exact
+ * output, let K' = min(K, number of exact recommendations) and s the score of the K'-th exact recommendation.
+ * A recommendation of the first K approximate ones is a hit if its exact score is at least s, so ties at the
+ * K-th place do not count as misses. The recall of X is hits / K', and the report has the mean over all users.
+ * The exact pipeline must run without wtf.topk, or with a larger one than K. The first K approximate
+ * recommendations of every user are kept in memory, the exact output is streamed.
+ */
+public class WtfRecall {
+    /**
+     * configuration key for K.
+     */
+    public static final String K = "wtf.recall.k";
+    public static final int DEFAULT_K = 10;
+
+    private final int k;
+    /**
+     * user id -> the first K approximate recommendations.
+     */
+    private final Map<String, List<String>> approximate = new HashMap<>();
+    private long users;
+    private long fullRecallUsers;
+    private double recallSum;
+    private long approximateRecommendations;
+    private long exactRecommendations;
+
+    /**
+     * @param k number of recommendations per user which are compared
+     */
+    public WtfRecall(int k) {
+        this.k = k;
+    }
+
+    /**
+     * adds a line of the approximate output.
+     * @param line "X\t Y1(score1) Y2(score2) ..."
+     */
+    public void addApproximate(String line) {
+        int tab = line.indexOf('\t');
+        List<String> recommendations = new ArrayList<>();
+        for (String token : tokens(line, tab)) {
+            approximateRecommendations++;
+            if (recommendations.size() < k) {
+                recommendations.add(token.substring(0, token.lastIndexOf('(')));
+            }
+        }
+        approximate.put(line.substring(0, tab), recommendations);
+    }
+
+    /**
+     * compares a line of the exact output with the approximate recommendations of the user.
+     * @param line "X\t Y1(score1) Y2(score2) ..."
+     */
+    public void addExact(String line) {
+        int tab = line.indexOf('\t');
+        String[] tokens = tokens(line, tab);
+        exactRecommendations += tokens.length;
+        if (tokens.length == 0) {
+            return;
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (String token : tokens) {
+            int open = token.lastIndexOf('(');
+            scores.put(token.substring(0, open), Double.parseDouble(token.substring(open + 1, token.length() - 1)));
+        }
+        int expected = Math.min(k, tokens.length);
+        String last = tokens[expected - 1];
+        double threshold = Double.parseDouble(last.substring(last.lastIndexOf('(') + 1, last.length() - 1));
+        int hits = 0;
+        List<String> recommendations = approximate.get(line.substring(0, tab));
+        if (recommendations != null) {
+            for (String user : recommendations) {
+                Double score = scores.get(user);
+                if (score != null && score >= threshold) {
+                    hits++;
+                }
+            }
+        }
+        hits = Math.min(hits, expected);
+        users++;
+        recallSum += (double) hits / expected;
+        if (hits == expected) {
+            fullRecallUsers++;
+        }
+    }
+
+    /**
+     * @return the mean recall@K of the users with exact recommendations, 1 if there are none.
+     */
+    public double getRecall() {
+        return users == 0 ? 1 : recallSum / users;
+    }
+
+    /**
+     * @return the report as a JSON object.
+     */
+    public String toJson() {
+        return "{\"k\":" + k
+                + ",\"users\":" + users
+                + ",\"recall_at_k\":" + getRecall()
+                + ",\"users_with_full_recall\":" + fullRecallUsers
+                + ",\"exact_recommendations\":" + exactRecommendations
+                + ",\"approximate_recommendations\":" + approximateRecommendations
+                + "}";
+    }
+
+    private static String[] tokens(String line, int tab) {
+        String recommendations = line.substring(tab + 1).trim();
+        return recommendations.isEmpty() ? new String[0] : recommendations.split(" +");
+    }
+
+    /**
+     * adds the lines of all part files of an output directory.
+     * @param exact true for the exact output, false for the approximate output
+     */
+    public void read(Configuration conf, Path directory, boolean exact) throws IOException {
+        FileSystem fs = directory.getFileSystem(conf);
+        for (FileStatus status : fs.globStatus(new Path(directory, "part-*"))) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fs.open(status.getPath()), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    if (exact) {
+                        addExact(line);
+                    } else {
+                        addApproximate(line);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        if (args.length != 2) {
+            System.err.println("usage: WtfRecall [-D wtf.recall.k=10] exactOutput approximateOutput");
+            System.exit(2);
+        }
+        WtfRecall recall = new WtfRecall(conf.getInt(K, DEFAULT_K));
+        recall.read(conf, new Path(args[1]), false);
+        recall.read(conf, new Path(args[0]), true);
+        System.out.println(recall.toJson());
+    }
+}
@@ -1,8 +1,16 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
 
 import java.io.IOException;
 import java.util.*;
@@ -15,121 +23,790 @@ import java.util.*;
  * This class is responsible for each inverted list X, [ Y1, Y2, ..., Yk ]
  * calculate how may users are common from followed list of two users and
  * compute recommendation list for each user.
- * This class uses the output of the indexing MapReduce job as an input.
+ * This class uses the output of the indexing MapReduce job (a SequenceFile of InvertedListWritable) as an input.
  */
 public class WtfSimilarity {
     /**
-     * input file for this Mapper contains some information about user X like: X   Y1 Y2 ...Yk
-     * The mapper emits all pairs (Yi, Yj) and
-     * (Yj, Yi) where i ∈ [1, k], j ∈ [1, k] and i != j.
+     * configuration key that switches the similarity job to the aggregating mode, where the mapper
+     * counts pairs in memory and emits (Yi, Fj, partialCount) records which are summed again by a combiner.
+     */
+    public static final String AGGREGATE = "wtf.similarity.aggregate";
+    /**
+     * configuration key for the maximum number of partial counts kept in memory by the aggregating mapper
+     * before they are flushed to the context.
+     */
+    public static final String AGGREGATE_MAX_ENTRIES = "wtf.similarity.aggregate.max.entries";
+    public static final int DEFAULT_AGGREGATE_MAX_ENTRIES = 100000;
+    /**
+     * configuration key for the maximum number of recommendations per user, 0 means all of them.
+     */
+    public static final String TOP_K = "wtf.topk";
+    /**
+     * configuration key for the number of followers above which an inverted list is a hub list, 0 means
+     * that hub lists are not handled differently.
+     */
+    public static final String HUB_THRESHOLD = "wtf.similarity.hub.threshold";
+    /**
+     * configuration key for the HubPolicy of hub lists, the default is SAMPLE.
+     */
+    public static final String HUB_POLICY = "wtf.similarity.hub.policy";
+    /**
+     * configuration key for the Scorer which ranks the recommendations, the default is COUNT.
+     */
+    public static final String SCORER = "wtf.similarity.scorer";
+    /**
+     * configuration key for the number of candidates of a user which the reducer keeps in memory, the
+     * candidates above it are spilled to sorted runs in Common.SPILL_DIR, 0 means no limit.
+     */
+    public static final String MAX_CANDIDATES = "wtf.similarity.max.candidates";
+    public static final int DEFAULT_MAX_CANDIDATES = 1 << 20;
+    /**
+     * configuration key for the number of followers above which a list is split into one part per thread of
+     * the similarity mapper, see InvertedListInputFormat.
+     */
+    public static final String SPLIT_FOLLOWERS = "wtf.similarity.map.split";
+    public static final int DEFAULT_SPLIT_FOLLOWERS = 1000;
+
+    /**
+     * How a recommendation Fi of user X is scored. Let c be the number of users followed by X and Fi in common,
+     * d(X) and d(Fi) the numbers of users followed by X and by Fi, and k(Z) the number of followers of a commonly
+     * followed user Z. The degrees are carried from the indexing job through the inverted lists and the pairs,
+     * so scoring needs no extra join with a degree table.
+     */
+    public enum Scorer {
+        /**
+         * c, the number of common followed users.
+         */
+        COUNT,
+        /**
+         * c / (d(X) + d(Fi) - c), the Jaccard similarity of the followed sets.
+         */
+        JACCARD,
+        /**
+         * c / sqrt(d(X) * d(Fi)), the cosine similarity of the followed sets.
+         */
+        COSINE,
+        /**
+         * the sum of 1 / ln(k(Z)) over the common followed users Z, so a commonly followed popular user
+         * counts less than a commonly followed niche user.
+         */
+        ADAMIC_ADAR;
+
+        /**
+         * @return true if the scorer needs the degrees d(X) and d(Fi).
+         */
+        public boolean needsDegrees(){
+            return this == JACCARD || this == COSINE;
+        }
+
+        /**
+         * @return true if the scorer needs the weights of the common followed users.
+         */
+        public boolean needsWeights(){
+            return this == ADAMIC_ADAR;
+        }
+
+        /**
+         * the weights are multiples of 2^-24, so their sums are exact and do not depend on the order in
+         * which the pairs are added by the mappers, combiners and reducers.
+         */
+        private static final double WEIGHT_UNIT = 0x1p24;
+
+        /**
+         * @param followers number of followers k(Z) of a common followed user Z
+         * @return the Adamic-Adar weight 1 / ln(k(Z)) rounded to a multiple of 2^-24, 0 if Z has no pairs
+         * of followers.
+         */
+        public static double weight(int followers){
+            return followers < 2 ? 0 : Math.rint(WEIGHT_UNIT / Math.log(followers)) / WEIGHT_UNIT;
+        }
+
+        /**
+         * @param count number of common followed users c
+         * @param weight sum of the weights of the common followed users
+         * @param degree d(X)
+         * @param candidateDegree d(Fi)
+         * @return the score of the recommendation, rounded to the printed precision of
+         * Recommendation.formatScore(), so the ranking and the output use the same value.
+         */
+        public double score(int count, double weight, int degree, int candidateDegree){
+            switch(this){
+                case JACCARD:
+                    return Recommendation.roundScore((double) count / (degree + candidateDegree - count));
+                case COSINE:
+                    return Recommendation.roundScore(count / Math.sqrt((double) degree * candidateDegree));
+                case ADAMIC_ADAR:
+                    return Recommendation.roundScore(weight);
+                default:
+                    return count;
+            }
+        }
+    }
+
+    /**
+     * How pairs are generated for an inverted list with more followers than wtf.similarity.hub.threshold.
      */
-    public static class WtfSimilarityMapper extends Mapper<Object, Text, Text, Text>{
+    public enum HubPolicy {
         /**
-         * @param key is the key of the chunk of data.
-         * @param value is the value of the chunk or the information
-         *              that we have in a chunk. In this example, value
-         *              is a line of document. The value is: X  Y1 Y2 ...  Yn it also contains all Yi that is follwed By
-         *              X directly. The mapper emits all pairs (Yi, Yj) and (Yj, Yi) where i ∈ [1, k], j ∈ [1, k] and i != j.
-         *              It also emits X as a key and all Yi that is Followed directly(value) by X. in other word emits
-         *              (X, Yi) where Yi start with "-".
+         * no pairs are generated for a hub list.
+         */
+        SKIP,
+        /**
+         * pairs are generated for a random sample of wtf.similarity.hub.threshold followers,
+         * so the common user counts of a hub are approximate.
+         */
+        SAMPLE,
+        /**
+         * the indexing reducer splits a hub list into blocks of wtf.similarity.hub.threshold followers
+         * and writes one record for each pair of blocks, so the pairs of one hub are generated by many
+         * map tasks. All pairs are generated.
+         */
+        BLOCK
+    }
+
+    /**
+     * Counters of the similarity job.
+     */
+    public enum Counter {
+        /**
+         * inverted lists with more followers than wtf.similarity.hub.threshold.
+         */
+        HUB_LISTS,
+        /**
+         * pairs which are not generated because of the SKIP or SAMPLE hub policy.
+         */
+        SKIPPED_PAIRS,
+        /**
+         * pairs which are generated from sampled hub lists.
+         */
+        SAMPLED_PAIRS,
+        /**
+         * pairs (Yi, Yj) generated by the mapper.
+         */
+        PAIRS,
+        /**
+         * direct edges (X, Fi) emitted by the mapper.
+         */
+        DIRECT_EDGES,
+        /**
+         * candidates of the reducer which are not recommended because X follows them directly.
+         */
+        DIRECT_FILTERED,
+        /**
+         * recommendations of the reducer which are dropped because of wtf.topk.
+         */
+        TOPK_TRUNCATED,
+        /**
+         * recommendations written by the reducer.
+         */
+        RECOMMENDATIONS,
+        /**
+         * runs of candidates spilled by the reducer because of wtf.similarity.max.candidates.
+         */
+        SPILLED_RUNS
+    }
+
+    /**
+     * Histogram counters of the number of candidates of a user in the reducer, directly followed users
+     * are not candidates.
+     */
+    public enum CandidatesPerUser {
+        NONE,
+        FROM_1_TO_9,
+        FROM_10_TO_99,
+        FROM_100_TO_999,
+        FROM_1000_TO_9999,
+        FROM_10000
+    }
+
+    /**
+     * @return the histogram bucket of a number of candidates.
+     */
+    static CandidatesPerUser bucket(long candidates){
+        CandidatesPerUser[] buckets = CandidatesPerUser.values();
+        int bucket = 0;
+        for(long limit = 1; candidates >= limit && bucket < buckets.length - 1; limit *= 10){
+            bucket++;
+        }
+        return buckets[bucket];
+    }
+
+    /**
+     * The base class of the similarity mappers. Input of this Mapper is an inverted list of user X like:
+     * X   Y1 Y2 ...Yk
+     * It emits (X, Fi) for all users Fi which are followed directly by X and generates all pairs (Yi, Yj)
+     * and (Yj, Yi) where i ∈ [1, k], j ∈ [1, k] and i != j. A block record of the BLOCK hub policy only
+     * generates the pairs between its two blocks.
+     * A pair carries the degree of the candidate Yj and, for the ADAMIC_ADAR scorer, the weight of X.
+     * A mapper object is used by one thread. With wtf.similarity.map.threads every thread of the
+     * MultithreadedMapper has its own mapper, and in the aggregating mode its own table of partial counts,
+     * so the threads only share the synchronized writes. A part of a long list (see InvertedListInputFormat)
+     * only generates the pairs of its range of followers.
+     */
+    public abstract static class WtfPairMapper
+            extends Mapper<UserWritable, InvertedListWritable, UserWritable, EdgeWritable>{
+        protected EdgeWritable edge = new EdgeWritable();
+        private int hubThreshold;
+        private HubPolicy hubPolicy;
+        private Scorer scorer;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            hubThreshold = context.getConfiguration().getInt(HUB_THRESHOLD, 0);
+            hubPolicy = context.getConfiguration().getEnum(HUB_POLICY, HubPolicy.SAMPLE);
+            scorer = context.getConfiguration().getEnum(SCORER, Scorer.COUNT);
+        }
+
+        /**
+         * @param key is user X.
+         * @param value is the inverted list of user X: the followers Y1 Y2 ...  Yn and all users that are followed
+         *              directly by X. The mapper emits all pairs (Yi, Yj) and (Yj, Yi) where i ∈ [1, k], j ∈ [1, k]
+         *              and i != j.
+         *              It also emits X as a key and all users that are Followed directly by X as direct edges.
          * @param context hadoop mapper context.
          * @throws IOException
          * @throws InterruptedException
          */
         @Override
-        protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
-            StringTokenizer itr = new StringTokenizer(value.toString());
-            Text user = new Text();
-            //first element in the iteration is User X
-            user.set(itr.nextToken());
+        protected void map(UserWritable key, InvertedListWritable value, Context context)
+                throws IOException, InterruptedException {
+            // a part of a split list generates the pairs of its range of followers, the first part also
+            // emits the direct edges and counts the hub list.
+            int part = value.getPart();
+            int parts = value.getParts();
+            if(part == 0){
+                // emit (user, and directed follower of X)
+                for(UserWritable followed: value.getFollowed()){
+                    direct(key, followed, context);
+                }
+                context.getCounter(Counter.DIRECT_EDGES).increment(value.getFollowed().size());
+            }
             // followers are a list of all followers of user X
-            List<String> followers = new ArrayList<>();
-            while (itr.hasMoreTokens()) {
-                String follower_id = itr.nextToken();
-                // if followers' id start with "-" means that follows directly User X.
-                if(follower_id.startsWith("-")){
-                    Text follower = new Text(follower_id);
-                    // emit (user, and directed follower of X)
-                    context.write(user, follower);
-                }else{
-                    // add follower id in the list of follower.
-                    followers.add(follower_id);
+            List<UserWritable> followers = value.getFollowers();
+            InvertedListWritable.Degrees degrees = value.getFollowerDegrees();
+            List<UserWritable> blockFollowers = value.getBlockFollowers();
+            InvertedListWritable.Degrees blockDegrees = value.getBlockFollowerDegrees();
+            // the weight of X in the sums of the ADAMIC_ADAR scorer, it depends on all followers of a hub list.
+            double weight = scorer.needsWeights() ? Scorer.weight(value.getFollowerCount()) : 0;
+            // a block record of a hub list: emits all pairs between the two blocks.
+            if(!blockFollowers.isEmpty()){
+                int from = start(followers.size(), part, parts);
+                int to = start(followers.size(), part + 1, parts);
+                if(selective()){
+                    context.getCounter(Counter.PAIRS).increment(
+                            selectedPairs(followers, from, to, blockFollowers, blockDegrees, weight, context)
+                            + selectedPairs(blockFollowers, start(blockFollowers.size(), part, parts),
+                            start(blockFollowers.size(), part + 1, parts), followers, degrees, weight, context));
+                    return;
+                }
+                context.getCounter(Counter.PAIRS).increment(2L * (to - from) * blockFollowers.size());
+                for(int i = from; i < to; i++){
+                    UserWritable follower1 = followers.get(i);
+                    int degree1 = InvertedListWritable.degree(degrees, i);
+                    for(int j = 0; j < blockFollowers.size(); j++){
+                        UserWritable follower2 = blockFollowers.get(j);
+                        pair(follower1, follower2, InvertedListWritable.degree(blockDegrees, j), weight, context);
+                        pair(follower2, follower1, degree1, weight, context);
+                    }
                 }
+                return;
+            }
+            if(hubThreshold > 0 && followers.size() > hubThreshold && hubPolicy != HubPolicy.BLOCK){
+                followers = hub(key, followers, degrees, part == 0, context);
             }
+            if(selective()){
+                context.getCounter(Counter.PAIRS).increment(selectedPairs(followers,
+                        start(followers.size(), part, parts), start(followers.size(), part + 1, parts),
+                        followers, degrees, weight, context));
+                return;
+            }
+            int from = pairStart(followers.size(), part, parts);
+            int to = pairStart(followers.size(), part + 1, parts);
+            long pairs = 0;
             //iterates over followers and emits all pairs (Yi, Yj) and (Yj, Yi)
             // where i ∈ [1, k], j ∈ [1, k] and i != j
-            for (int i = 0; i < followers.size(); i++) {
-                Text follower1 = new Text(followers.get(i));
+            for (int i = from; i < to; i++) {
+                UserWritable follower1 = followers.get(i);
+                int degree1 = InvertedListWritable.degree(degrees, i);
                 for(int j = i + 1; j < followers.size(); j++) {
-                    Text follower2 = new Text(followers.get(j));
-                    context.write(follower1, follower2);
-                    context.write(follower2, follower1);
+                    UserWritable follower2 = followers.get(j);
+                    pair(follower1, follower2, InvertedListWritable.degree(degrees, j), weight, context);
+                    pair(follower2, follower1, degree1, weight, context);
                 }
+                pairs += 2L * (followers.size() - 1 - i);
             }
+            context.getCounter(Counter.PAIRS).increment(pairs);
+        }
+
+        /**
+         * @return the first of n rows of a part when every row generates the same number of pairs.
+         */
+        static int start(int n, int part, int parts){
+            return (int) ((long) n * part / parts);
+        }
+
+        /**
+         * @return the first row i of a part of the pairs of k followers, where row i generates the pairs
+         * (Yi, Yj) with j > i, so the parts have about the same number of pairs.
+         */
+        static int pairStart(int k, int part, int parts){
+            if(part >= parts){
+                return k;
+            }
+            long target = (long) k * (k - 1) / 2 * part / parts;
+            long pairs = 0;
+            int i = 0;
+            while(pairs < target){
+                pairs += k - 1 - i;
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * applies the SKIP or SAMPLE hub policy to the followers of a hub list, the degrees are
+         * shuffled with the followers.
+         * @param count true if the hub counters are incremented, only the first part of a split list counts.
+         * @return followers which are used for generating pairs.
+         */
+        private List<UserWritable> hub(UserWritable key, List<UserWritable> followers,
+                                       InvertedListWritable.Degrees degrees, boolean count, Context context){
+            long pairs = pairs(followers.size());
+            if(count){
+                context.getCounter(Counter.HUB_LISTS).increment(1);
+            }
+            if(hubPolicy == HubPolicy.SKIP){
+                if(count){
+                    context.getCounter(Counter.SKIPPED_PAIRS).increment(pairs);
+                }
+                return Collections.emptyList();
+            }
+            // partial Fisher-Yates shuffle, the seed depends on the user so a rerun samples the same followers,
+            // and every part of a split list samples the same followers.
+            Random random = new Random(key.hashCode());
+            for(int i = 0; i < hubThreshold; i++){
+                int j = i + random.nextInt(followers.size() - i);
+                Collections.swap(followers, i, j);
+                if(!degrees.isEmpty()){
+                    degrees.swap(i, j);
+                }
+            }
+            if(count){
+                context.getCounter(Counter.SKIPPED_PAIRS).increment(pairs - pairs(hubThreshold));
+                context.getCounter(Counter.SAMPLED_PAIRS).increment(pairs(hubThreshold));
+            }
+            return followers.subList(0, hubThreshold);
+        }
+
+        /**
+         * handles the pairs (Yi, Yj) where Yi is a selected follower of sources in [from, to) and Yj is a
+         * follower of candidates, so the work is O(a * k) for a selected followers. If sources and candidates
+         * are the same list, the pairs (Yi, Yi) are left out.
+         * @return number of handled pairs.
+         */
+        private long selectedPairs(List<UserWritable> sources, int from, int to, List<UserWritable> candidates,
+                                   InvertedListWritable.Degrees candidateDegrees, double weight, Context context)
+                throws IOException, InterruptedException {
+            long pairs = 0;
+            for(int i = from; i < to; i++){
+                UserWritable follower = sources.get(i);
+                if(!selected(follower)){
+                    continue;
+                }
+                for(int j = 0; j < candidates.size(); j++){
+                    if(sources == candidates && i == j){
+                        continue;
+                    }
+                    pair(follower, candidates.get(j), InvertedListWritable.degree(candidateDegrees, j), weight,
+                            context);
+                    pairs++;
+                }
+            }
+            return pairs;
+        }
+
+        /**
+         * @return true if the mapper only handles the pairs of selected followers, then it looks up every
+         * follower once instead of filtering all pairs.
+         */
+        protected boolean selective(){
+            return false;
+        }
+
+        /**
+         * @return true if the pairs (follower, candidate) are handled when the mapper is selective.
+         */
+        protected boolean selected(UserWritable follower){
+            return true;
+        }
+
+        /**
+         * @return number of emitted pairs (Yi, Yj) for k followers.
+         */
+        private static long pairs(long k){
+            return k * (k - 1);
+        }
+
+        /**
+         * emits the direct edge (X, followed) where X follows followed directly.
+         */
+        protected void direct(UserWritable user, UserWritable followed, Context context)
+                throws IOException, InterruptedException {
+            edge.set(followed, true, 1);
+            context.write(user, edge);
+        }
+
+        /**
+         * handles the pair (follower, candidate) where follower and candidate follow user X.
+         * @param candidateDegree number of users followed by the candidate, 0 if it is unknown
+         * @param weight weight of X for the ADAMIC_ADAR scorer, otherwise 0
+         */
+        protected abstract void pair(UserWritable follower, UserWritable candidate, int candidateDegree,
+                                     double weight, Context context) throws IOException, InterruptedException;
+    }
+
+    /**
+     * input of this Mapper is an inverted list of user X like: X   Y1 Y2 ...Yk
+     * The mapper emits all pairs (Yi, Yj) and
+     * (Yj, Yi) where i ∈ [1, k], j ∈ [1, k] and i != j.
+     */
+    public static class WtfSimilarityMapper extends WtfPairMapper{
+        @Override
+        protected void pair(UserWritable follower, UserWritable candidate, int candidateDegree, double weight,
+                            Context context) throws IOException, InterruptedException {
+            edge.set(candidate, false, 1, candidateDegree, weight);
+            context.write(follower, edge);
+        }
+    }
+
+    /**
+     * The aggregating version of WtfSimilarityMapper. Instead of emitting every pair (Yi, Yj) and (Yj, Yi)
+     * as a separate record, it counts the pairs in a bounded in-memory table and emits (Yi, Fj, count)
+     * whenever the table is full and at the end of the map task.
+     * Directly followed users are emitted as they are.
+     */
+    public static class WtfSimilarityAggregatingMapper extends WtfPairMapper{
+        /**
+         * partial counts and weights of common followed users: Yi -> (Yj -> edge)
+         */
+        private Map<UserWritable, Map<UserWritable, EdgeWritable>> partialCounts = new HashMap<>();
+        /**
+         * number of (Yi, Yj) entries which are kept in partialCounts.
+         */
+        private int entries = 0;
+        private int maxEntries;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            super.setup(context);
+            maxEntries = context.getConfiguration().getInt(AGGREGATE_MAX_ENTRIES, DEFAULT_AGGREGATE_MAX_ENTRIES);
+        }
+
+        @Override
+        protected void pair(UserWritable follower, UserWritable candidate, int candidateDegree, double weight,
+                            Context context) throws IOException, InterruptedException {
+            increment(follower, candidate, candidateDegree, weight, context);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            flush(context);
+        }
+
+        /**
+         * adds one and the weight to the partial count of (follower, candidate) and flushes the table when it is full.
+         */
+        private void increment(UserWritable follower, UserWritable candidate, int candidateDegree, double weight,
+                               Context context) throws IOException, InterruptedException {
+            Map<UserWritable, EdgeWritable> candidates = partialCounts.get(follower);
+            if(candidates == null){
+                candidates = new HashMap<>();
+                partialCounts.put(follower.copy(), candidates);
+            }
+            EdgeWritable count = candidates.get(candidate);
+            if(count == null){
+                UserWritable copy = candidate.copy();
+                candidates.put(copy, new EdgeWritable(copy, false, 1, candidateDegree, weight));
+                if(++entries >= maxEntries){
+                    flush(context);
+                }
+            }else{
+                count.add(1, weight);
+            }
+        }
+
+        /**
+         * emits (Yi, Fj, count) for all partial counts and clears the table.
+         */
+        private void flush(Context context) throws IOException, InterruptedException {
+            for(Map.Entry<UserWritable, Map<UserWritable, EdgeWritable>> entry: partialCounts.entrySet()){
+                for(EdgeWritable count: entry.getValue().values()){
+                    context.write(entry.getKey(), count);
+                }
+            }
+            partialCounts.clear();
+            entries = 0;
+        }
+    }
+
+    /**
+     * The combiner of the aggregating mode. It sums the partial counts of each candidate
+     * and emits every directly followed user only once. The counts of a directly followed user
+     * are dropped, because the reducer excludes it anyway.
+     */
+    public static class WtfSimilarityCombiner extends Reducer<UserWritable, EdgeWritable, UserWritable, EdgeWritable>{
+        private CandidateCounter candidates = new CandidateCounter();
+        private EdgeWritable result = new EdgeWritable();
+
+        @Override
+        protected void reduce(UserWritable key, Iterable<EdgeWritable> values, Context context)
+                throws IOException, InterruptedException {
+            candidates.clear();
+            for(EdgeWritable value: values) {
+                if(value.isDirect()){
+                    candidates.exclude(value.getUser());
+                }else{
+                    candidates.add(value.getUser(), value.getCount(), value.getDegree(), value.getWeight());
+                }
+            }
+            candidates.forEach((user, count, degree, weight) -> {
+                if(count == CandidateCounter.EXCLUDED){
+                    result.set(user, true, 1);
+                }else{
+                    result.set(user, false, count, degree, weight);
+                }
+                context.write(key, result);
+            });
         }
     }
 
     /**
      * The Reducer class responsibility is emitting all users with recommendations for each user for following.
      */
-    public static class WtfSimilarityReducer extends Reducer<Text, Text, Text, Text>{
+    public static class WtfSimilarityReducer extends Reducer<UserWritable, EdgeWritable, UserWritable, Text>{
+        private static final byte[] SPACE = {' '};
+        private static final byte[] OPEN = {'('};
+        private static final byte[] CLOSE = {')'};
+        private UserWritable user = new UserWritable();
+        /**
+         * counts of the candidates of the current user, it is reused between reduce calls.
+         */
+        private CandidateCounter candidates = new CandidateCounter();
+        /**
+         * the best recommendations of the current user, it is reused between reduce calls.
+         */
+        private TopRecommendations recommendations;
+        private Scorer scorer;
+        private Text result = new Text();
+        private Text name = new Text();
+        private byte[] digits = new byte[20];
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            recommendations = new TopRecommendations(context.getConfiguration().getInt(TOP_K, 0));
+            scorer = context.getConfiguration().getEnum(SCORER, Scorer.COUNT);
+            candidates.setSpill(context.getConfiguration().getInt(MAX_CANDIDATES, DEFAULT_MAX_CANDIDATES),
+                    Common.spillDirectory(context.getConfiguration()));
+        }
+
         /**
          * It receives a list X, [ F1, F2, ... ] where Fi appears exactly x times if X and Fi follow x people
          * in common. It counts the occurrences of Fi whenever Fi is not followed by X and sorts the
-         * resulting recommendations by number of common followed people.
-         * @param key userId of user X in a Text type
+         * resulting recommendations by the score of wtf.similarity.scorer, which is the number of common
+         * followed people by default, and by user id for the same score. The number of users followed by X,
+         * which the JACCARD and COSINE scorers need, is the number of its direct edges.
+         * The values are streamed once: a directly followed Fi is excluded in the candidate counter
+         * whenever it arrives, so the values are not buffered. Only the best wtf.topk recommendations
+         * are kept in a heap, if wtf.topk is set. A user with more than wtf.similarity.max.candidates
+         * candidates is counted in sorted runs on the local disk.
+         * @param key userId of user X
          * @param values is a list of [ F1, F2, ... ] where Fi is a user ids and appears exactly x times
          *               if X and Fi follow x people in common.
-         *               some of Fi starts with "-" which means user X follows directly Fi.
+         *               some of Fi are direct edges which means user X follows directly Fi.
+         *               In the aggregating mode Fi also carries a partial count.
          *
          * @param context hadoop reducer context
          * @throws IOException
          * @throws InterruptedException
          */
         @Override
-        protected void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-            Text result  = new Text();
-            // list of all user ids of [ F1, F2, ... ]
-            List<String> users = new ArrayList<>();
-            for(Text value: values) {
-                users.add(value.toString());
-            }
-
-            Map<String, Integer> map = new HashMap<>();
-            // iterates over user ids which are not started with "-".
-            for(String value : users){
-                if(!value.startsWith("-")) {
-                    // if we met the user id before and it exists in the map, we should add the number of occurrences.
-                    if(map.containsKey(value)){
-                        map.put(value, map.get(value) + 1);
-                    /* else if we met a user id for the first time and the map does not contain the key
-                       we should add it to the map in case that there is not a same user id in the users list
-                       where user id start with the "-".
-                     */
-                    }else if(!users.stream().anyMatch( f -> f.equals("-" + value))){
-                        map.put(value, 1);
-                    }
+        protected void reduce(UserWritable key, Iterable<EdgeWritable> values, Context context)
+                throws IOException, InterruptedException {
+            candidates.clear();
+            for(EdgeWritable value: values) {
+                if(value.isDirect()) {
+                    candidates.exclude(value.getUser());
+                }else{
+                    candidates.add(value.getUser(), value.getCount(), value.getDegree(), value.getWeight());
                 }
             }
-            // list of recommendations for a user X.
-            List<Recommendation> recommendations = new ArrayList<>();
-            // iterates over map and creates a Recommendation object for each key value pair in the map.
-            // key is the user id and value is the commonUserCount.
-            for(Map.Entry<String, Integer> entry: map.entrySet()){
-                recommendations.add(new Recommendation(entry.getKey(), entry.getValue()));
+            // offers each candidate which is not followed directly by X to the heap.
+            recommendations.clear();
+            int degree = candidates.getExcluded();
+            candidates.forEach((user, count, candidateDegree, weight) -> {
+                if(count != CandidateCounter.EXCLUDED){
+                    recommendations.offer(user, scorer.score(count, weight, degree, candidateDegree));
+                }
+            });
+            long excluded = candidates.getExcluded();
+            long offered = recommendations.size() + recommendations.getTruncated();
+            context.getCounter(bucket(offered)).increment(1);
+            context.getCounter(Counter.DIRECT_FILTERED).increment(excluded);
+            context.getCounter(Counter.TOPK_TRUNCATED).increment(recommendations.getTruncated());
+            context.getCounter(Counter.RECOMMENDATIONS).increment(recommendations.size());
+            context.getCounter(Counter.SPILLED_RUNS).increment(candidates.getSpills());
+            // descending sort of recommendations based on their score.
+            recommendations.sort();
+            // result is " userId1(score1) userId2(score2) ..." like Recommendation.toStringBuffer
+            result.clear();
+            for(int i = 0; i < recommendations.size(); i++){
+                recommendations.getUser(i, user);
+                result.append(SPACE, 0, 1);
+                append(user);
+                result.append(OPEN, 0, 1);
+                append(recommendations.getScore(i));
+                result.append(CLOSE, 0, 1);
             }
-            // descending sort of recommendation list based on commonUserCount.
-            Collections.sort(recommendations);
-            result.set(Recommendation.toStringBuffer(recommendations).toString());
             // emit(X, recommendations) key is user X and recommendation is a list of
             // recommendation for user X for following.
             context.write(key, result);
         }
+
+        /**
+         * deletes the runs of the last user.
+         */
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            candidates.clear();
+        }
+
+        /**
+         * appends a user id to the result as it appears in the input file.
+         */
+        private void append(UserWritable user){
+            if(user.isNumeric()){
+                append(user.getId());
+            }else{
+                result.append(user.getName().getBytes(), 0, user.getName().getLength());
+            }
+        }
+
+        /**
+         * appends a score to the result, the count of the COUNT scorer is appended without formatting.
+         */
+        private void append(double score){
+            if(scorer == Scorer.COUNT){
+                append((long) score);
+            }else{
+                name.set(Recommendation.formatScore(score));
+                result.append(name.getBytes(), 0, name.getLength());
+            }
+        }
+
+        /**
+         * appends the decimal digits of a non negative number to the result.
+         */
+        private void append(long number){
+            int start = digits.length;
+            do{
+                digits[--start] = (byte) ('0' + number % 10);
+                number /= 10;
+            }while(number > 0);
+            result.append(digits, start, digits.length - start);
+        }
+    }
+
+    /**
+     * The input format of the similarity job. If the mapper runs in several threads of a MultithreadedMapper
+     * (wtf.similarity.map.threads), a list with more than wtf.similarity.map.split followers is read once per
+     * thread as the parts of the list, so the threads generate the pairs of different ranges of its followers
+     * and one long list uses all threads. The parts of the plain pairs have about the same number of pairs.
+     */
+    public static class InvertedListInputFormat extends SequenceFileInputFormat<UserWritable, InvertedListWritable>{
+        @Override
+        public RecordReader<UserWritable, InvertedListWritable> createRecordReader(InputSplit split,
+                                                                                 TaskAttemptContext context){
+            return new InvertedListReader();
+        }
     }
+
+    /**
+     * reads the inverted lists and returns a long list again for each of its parts. The value is reused
+     * for the parts, which is safe because the MultithreadedMapper copies every record for its thread.
+     */
+    static class InvertedListReader extends RecordReader<UserWritable, InvertedListWritable>{
+        private final SequenceFileRecordReader<UserWritable, InvertedListWritable> reader =
+                new SequenceFileRecordReader<>();
+        private int threads;
+        private int splitFollowers;
+        private InvertedListWritable value;
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+            reader.initialize(split, context);
+            threads = context.getConfiguration().getInt(MultithreadedMapper.NUM_THREADS, 1);
+            splitFollowers = context.getConfiguration().getInt(SPLIT_FOLLOWERS, DEFAULT_SPLIT_FOLLOWERS);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            if(value != null && value.getPart() + 1 < value.getParts()){
+                value.setPart(value.getPart() + 1, value.getParts());
+                return true;
+            }
+            if(!reader.nextKeyValue()){
+                return false;
+            }
+            value = reader.getCurrentValue();
+            value.setPart(0, threads > 1 && value.getFollowers().size() > splitFollowers ? threads : 1);
+            return true;
+        }
+
+        @Override
+        public UserWritable getCurrentKey() {
+            return reader.getCurrentKey();
+        }
+
+        @Override
+        public InvertedListWritable getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return reader.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param conf job configuration
+     * @return the mapper class of the similarity job, depending on the aggregating mode.
+     */
+    public static Class<? extends WtfPairMapper> mapperClass(Configuration conf){
+        return conf.getBoolean(AGGREGATE, false) ? WtfSimilarityAggregatingMapper.class : WtfSimilarityMapper.class;
+    }
+
+    /**
+     * @param conf job configuration
+     * @return the combiner class of the similarity job, or null if the aggregating mode is off.
+     */
+    public static Class<? extends Reducer<UserWritable, EdgeWritable, UserWritable, EdgeWritable>> combinerClass(
+            Configuration conf){
+        return conf.getBoolean(AGGREGATE, false) ? WtfSimilarityCombiner.class : null;
+    }
+
     public static void main(String[] args) throws InterruptedException, IOException, ClassNotFoundException {
         Configuration conf = new Configuration();
-        Common.jobRunner(conf, "wtf similarity", WtfSimilarity.class,
-                WtfSimilarityMapper.class, WtfSimilarityReducer.class, null,
-                Text.class, Text.class, Text.class, Text.class, new Path(args[0]), new Path(args[1]));
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
+        boolean successful = Common.jobRunner(conf, "wtf similarity", WtfSimilarity.class,
+                mapperClass(conf), WtfSimilarityReducer.class, combinerClass(conf),
+                UserWritable.class, EdgeWritable.class, UserWritable.class, Text.class,
+                SequenceFileInputFormat.class, TextOutputFormat.class, new Path(args[0]), new Path(args[1]));
+        System.exit(successful ? 0 : 1);
     }
 }
@@ -0,0 +1,530 @@
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.reduce.LongSumReducer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ * This class balances the reducers of the similarity job on skewed graphs. The key of the similarity job
+ * is a follower Y, and Y receives k - 1 pairs from every inverted list of k followers it belongs to, so a user
+ * who follows many popular users receives far more values than the others and its reducer dominates the job.
+ * The skew stage runs between the indexing and the similarity jobs: it samples a fraction of the inverted lists
+ * (wtf.skew.sample.rate), estimates the number of values of every key and keeps the wtf.skew.keys largest ones.
+ * SkewPartitioner then places the heavy keys, whose volume is at least wtf.skew.heavy.fraction of the fair share
+ * total / reducers, on the least loaded reducers, and spreads the other keys by hash over the capacity which is
+ * left, so a reducer with a heavy key gets few or no other keys.
+ * If wtf.skew.salt is true, a key with more than the fair share is split into several salts on different
+ * reducers. A value of a salted key goes to the salt of the hash of its candidate, so all pairs of a candidate
+ * and its direct edge meet in the same salt, and the "-" exclusion stays exact. The reducer of a salt writes the
+ * partial counts like WtfSimilarityCombiner to the named output "salted", and the merge job computes the
+ * recommendations of the salted keys from them with WtfSimilarityReducer. Its part files are moved into the output.
+ * NOTE: the skew stage needs the inverted lists of the indexing job, it does not support the fused pipeline.
+ */
+public class WtfSkew {
+    /**
+     * configuration key that enables the skew stage in the Wtf driver.
+     */
+    public static final String ENABLED = "wtf.skew";
+    /**
+     * configuration key of the output of the skew stage, by default next to the middle directory (middle-skew).
+     */
+    public static final String PATH = "wtf.skew.path";
+    /**
+     * configuration key of the fraction of the inverted lists which are sampled.
+     */
+    public static final String SAMPLE_RATE = "wtf.skew.sample.rate";
+    public static final float DEFAULT_SAMPLE_RATE = 0.1f;
+    /**
+     * configuration key of the number of largest keys which are kept by the skew stage.
+     */
+    public static final String KEYS = "wtf.skew.keys";
+    public static final int DEFAULT_KEYS = 10000;
+    /**
+     * configuration key of the fraction of the fair share total / reducers from which a key is heavy.
+     */
+    public static final String HEAVY_FRACTION = "wtf.skew.heavy.fraction";
+    public static final float DEFAULT_HEAVY_FRACTION = 0.25f;
+    /**
+     * configuration key that enables salting of the keys with more than the fair share.
+     */
+    public static final String SALT = "wtf.skew.salt";
+    /**
+     * configuration key of the estimated number of values of all keys, the driver sets it after the skew stage.
+     */
+    public static final String TOTAL = "wtf.skew.total";
+    /**
+     * named output of the partial counts of the salted keys.
+     */
+    static final String SALTED_OUTPUT = "salted";
+    /**
+     * number of hash slots per reducer for the keys which are not heavy.
+     */
+    private static final int SLOTS_PER_REDUCER = 64;
+
+    /**
+     * Counters of the skew stage.
+     */
+    public enum Counter {
+        /**
+         * inverted lists read by the mapper which are sampled.
+         */
+        SAMPLED_LISTS,
+        /**
+         * estimated number of values of all keys of the similarity job.
+         */
+        VOLUME,
+        /**
+         * keys which are written by the reducer.
+         */
+        KEYS
+    }
+
+    /**
+     * @return true if the inverted list of user X is sampled. The decision depends only on X, so a rerun
+     * samples the same lists.
+     */
+    static boolean sampled(UserWritable user, float rate) {
+        return ((user.hashCode() * 0x9E3779B1) >>> 8) < rate * (1 << 24);
+    }
+
+    /**
+     * The WtfSkewMapper class estimates the values which a sampled inverted list of user X sends to the
+     * similarity reducers: the direct edges of X and, for each follower Y, the pairs with Y as key, which
+     * depend on the hub policy like in WtfSimilarity.WtfPairMapper. The numbers are divided by the sample rate.
+     */
+    public static class WtfSkewMapper extends Mapper<UserWritable, InvertedListWritable, UserWritable, LongWritable>{
+        private final LongWritable volume = new LongWritable();
+        private float rate;
+        private int hubThreshold;
+        private WtfSimilarity.HubPolicy hubPolicy;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            rate = context.getConfiguration().getFloat(SAMPLE_RATE, DEFAULT_SAMPLE_RATE);
+            hubThreshold = context.getConfiguration().getInt(WtfSimilarity.HUB_THRESHOLD, 0);
+            hubPolicy = context.getConfiguration().getEnum(WtfSimilarity.HUB_POLICY, WtfSimilarity.HubPolicy.SAMPLE);
+        }
+
+        @Override
+        protected void map(UserWritable key, InvertedListWritable value, Context context)
+                throws IOException, InterruptedException {
+            if(!sampled(key, rate)){
+                return;
+            }
+            context.getCounter(Counter.SAMPLED_LISTS).increment(1);
+            if(!value.getFollowed().isEmpty()){
+                write(key, value.getFollowed().size(), context);
+            }
+            List<UserWritable> followers = value.getFollowers();
+            List<UserWritable> blockFollowers = value.getBlockFollowers();
+            if(!blockFollowers.isEmpty()){
+                for(UserWritable follower: followers){
+                    write(follower, blockFollowers.size(), context);
+                }
+                for(UserWritable follower: blockFollowers){
+                    write(follower, followers.size(), context);
+                }
+                return;
+            }
+            long k = followers.size();
+            double pairs = k - 1;
+            if(hubThreshold > 0 && k > hubThreshold && hubPolicy != WtfSimilarity.HubPolicy.BLOCK){
+                // a follower of a sampled hub list is kept with the probability threshold / k.
+                pairs = hubPolicy == WtfSimilarity.HubPolicy.SKIP ? 0
+                        : (double) hubThreshold * (hubThreshold - 1) / k;
+            }
+            if(pairs > 0){
+                for(UserWritable follower: followers){
+                    write(follower, pairs, context);
+                }
+            }
+        }
+
+        private void write(UserWritable user, double values, Context context)
+                throws IOException, InterruptedException {
+            volume.set(Math.round(values / rate));
+            context.write(user, volume);
+        }
+    }
+
+    /**
+     * The WtfSkewReducer class sums the estimated volumes of every key, counts the total volume and writes the
+     * wtf.skew.keys largest keys at the end of the task. The job has one reducer.
+     */
+    public static class WtfSkewReducer extends Reducer<UserWritable, LongWritable, UserWritable, LongWritable>{
+        private final PriorityQueue<Map.Entry<UserWritable, Long>> largest =
+                new PriorityQueue<>(Map.Entry.comparingByValue());
+        private int keys;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            keys = context.getConfiguration().getInt(KEYS, DEFAULT_KEYS);
+        }
+
+        @Override
+        protected void reduce(UserWritable key, Iterable<LongWritable> values, Context context)
+                throws IOException, InterruptedException {
+            long volume = 0;
+            for(LongWritable value: values){
+                volume += value.get();
+            }
+            context.getCounter(Counter.VOLUME).increment(volume);
+            if(largest.size() < keys){
+                largest.add(new AbstractMap.SimpleEntry<>(key.copy(), volume));
+            }else if(keys > 0 && largest.peek().getValue() < volume){
+                largest.poll();
+                largest.add(new AbstractMap.SimpleEntry<>(key.copy(), volume));
+            }
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            LongWritable volume = new LongWritable();
+            for(Map.Entry<UserWritable, Long> entry: largest){
+                volume.set(entry.getValue());
+                context.write(entry.getKey(), volume);
+            }
+            context.getCounter(Counter.KEYS).increment(largest.size());
+        }
+    }
+
+    /**
+     * This class is the placement of the keys of the similarity job on the reducers. The heavy keys are split
+     * into their salts and placed from the largest to the smallest on the least loaded reducer. The other keys
+     * are hashed into a table of slots, and every reducer gets a number of slots proportional to the load it needs
+     * to reach the common level of all reducers, so the estimated loads are as even as possible.
+     */
+    public static class Plan {
+        /**
+         * heavy key -> reducers of its salts, one reducer if the key is not salted.
+         */
+        private final Map<UserWritable, int[]> heavy = new HashMap<>();
+        private final int[] slots;
+        private final double[] loads;
+
+        /**
+         * @param volumes estimated volumes of the largest keys
+         * @param total estimated volume of all keys
+         * @param reducers number of reducers
+         * @param heavyFraction fraction of the fair share from which a key is heavy
+         * @param salt true if the keys with more than the fair share are salted
+         */
+        public Plan(Map<UserWritable, Long> volumes, long total, int reducers, float heavyFraction, boolean salt) {
+            double fair = (double) total / reducers;
+            List<Map.Entry<UserWritable, Long>> keys = new ArrayList<>();
+            for(Map.Entry<UserWritable, Long> entry: volumes.entrySet()){
+                if(entry.getValue() > 0 && entry.getValue() >= heavyFraction * fair){
+                    keys.add(entry);
+                }
+            }
+            // the largest first, then by key so the plan is the same in all tasks.
+            keys.sort(Map.Entry.<UserWritable, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            loads = new double[reducers];
+            PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(
+                    Comparator.<Integer>comparingDouble(r -> loads[r]).thenComparingInt(r -> r));
+            for(int r = 0; r < reducers; r++){
+                leastLoaded.add(r);
+            }
+            double heavyVolume = 0;
+            for(Map.Entry<UserWritable, Long> key: keys){
+                int salts = salt ? (int) Math.min(reducers, Math.max(1, Math.ceil(key.getValue() / fair))) : 1;
+                int[] placement = new int[salts];
+                for(int s = 0; s < salts; s++){
+                    int r = leastLoaded.poll();
+                    placement[s] = r;
+                    loads[r] += (double) key.getValue() / salts;
+                    leastLoaded.add(r);
+                }
+                heavy.put(key.getKey(), placement);
+                heavyVolume += key.getValue();
+            }
+            double rest = Math.max(0, total - heavyVolume);
+            double level = level(loads, rest);
+            double[] shares = new double[reducers];
+            double sum = 0;
+            for(int r = 0; r < reducers; r++){
+                shares[r] = rest > 0 ? Math.max(0, level - loads[r]) : 1;
+                sum += shares[r];
+            }
+            slots = new int[reducers * SLOTS_PER_REDUCER];
+            double cumulative = 0;
+            int r = 0;
+            for(int i = 0; i < slots.length; i++){
+                double position = (i + 0.5) / slots.length * sum;
+                while(r < reducers - 1 && cumulative + shares[r] <= position){
+                    cumulative += shares[r++];
+                }
+                slots[i] = r;
+            }
+            for(int i = 0; i < reducers; i++){
+                loads[i] = Math.max(loads[i], level);
+            }
+        }
+
+        /**
+         * @return the level L where the reducers below L take the volume rest: sum of max(0, L - load) = rest.
+         */
+        private static double level(double[] loads, double rest){
+            double[] sorted = loads.clone();
+            Arrays.sort(sorted);
+            double below = 0;
+            for(int i = 0; i < sorted.length; i++){
+                below += sorted[i];
+                double level = (rest + below) / (i + 1);
+                if(i == sorted.length - 1 || level <= sorted[i + 1]){
+                    return level;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param key key of the similarity job
+         * @param candidate user of the value
+         * @param reducers number of reducers
+         * @return the reducer of the value.
+         */
+        public int getPartition(UserWritable key, UserWritable candidate, int reducers){
+            int[] placement = heavy.get(key);
+            if(placement == null){
+                return slots[(key.hashCode() & Integer.MAX_VALUE) % slots.length];
+            }
+            return placement.length == 1 ? placement[0]
+                    : placement[(candidate.hashCode() & Integer.MAX_VALUE) % placement.length];
+        }
+
+        /**
+         * @return true if the values of the key are split into several salts.
+         */
+        public boolean isSalted(UserWritable key){
+            int[] placement = heavy.get(key);
+            return placement != null && placement.length > 1;
+        }
+
+        /**
+         * @return number of heavy keys.
+         */
+        public int getHeavyKeys(){
+            return heavy.size();
+        }
+
+        /**
+         * @return the estimated loads of the reducers.
+         */
+        public double[] getLoads(){
+            return loads;
+        }
+
+        /**
+         * reads the output of the skew stage and builds the plan of the options of conf.
+         * @param conf job configuration with wtf.skew.path and wtf.skew.total
+         * @param reducers number of reducers of the similarity job
+         * @throws IOException
+         */
+        public static Plan load(Configuration conf, int reducers) throws IOException {
+            Map<UserWritable, Long> volumes = new HashMap<>();
+            Path path = new Path(conf.get(PATH));
+            FileSystem fs = path.getFileSystem(conf);
+            for(FileStatus status: fs.listStatus(path)){
+                if(!status.getPath().getName().startsWith("part-")){
+                    continue;
+                }
+                try(SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))){
+                    UserWritable user = new UserWritable();
+                    LongWritable volume = new LongWritable();
+                    while(reader.next(user, volume)){
+                        volumes.put(user.copy(), volume.get());
+                    }
+                }
+            }
+            return new Plan(volumes, conf.getLong(TOTAL, 0), reducers,
+                    conf.getFloat(HEAVY_FRACTION, DEFAULT_HEAVY_FRACTION), conf.getBoolean(SALT, false));
+        }
+    }
+
+    /**
+     * The SkewPartitioner class partitions the values of the similarity job with the Plan of the skew stage.
+     */
+    public static class SkewPartitioner extends Partitioner<UserWritable, EdgeWritable> implements Configurable {
+        private Configuration conf;
+        private Plan plan;
+
+        @Override
+        public void setConf(Configuration conf) {
+            this.conf = conf;
+            plan = null;
+        }
+
+        @Override
+        public Configuration getConf() {
+            return conf;
+        }
+
+        @Override
+        public int getPartition(UserWritable key, EdgeWritable value, int numPartitions) {
+            if(plan == null){
+                try{
+                    plan = Plan.load(conf, numPartitions);
+                }catch(IOException e){
+                    throw new IllegalStateException("cannot read the skew plan " + conf.get(PATH), e);
+                }
+            }
+            return plan.getPartition(key, value.getUser(), numPartitions);
+        }
+    }
+
+    /**
+     * The SaltedSimilarityReducer class is the reducer of the similarity job with salting. The values of a salted
+     * key are only the values of some candidates, so the reducer sums them like WtfSimilarityCombiner and writes
+     * them to the named output "salted": the partial counts of the candidates which X does not follow directly,
+     * and every directly followed user of the salt once. The other keys are reduced by WtfSimilarityReducer.
+     */
+    public static class SaltedSimilarityReducer extends WtfSimilarity.WtfSimilarityReducer{
+        private final CandidateCounter candidates = new CandidateCounter();
+        private final EdgeWritable result = new EdgeWritable();
+        private MultipleOutputs<UserWritable, Text> outputs;
+        private Plan plan;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            super.setup(context);
+            plan = Plan.load(context.getConfiguration(), context.getNumReduceTasks());
+            candidates.setSpill(context.getConfiguration().getInt(WtfSimilarity.MAX_CANDIDATES,
+                    WtfSimilarity.DEFAULT_MAX_CANDIDATES), Common.spillDirectory(context.getConfiguration()));
+            outputs = new MultipleOutputs<>(context);
+        }
+
+        @Override
+        protected void reduce(UserWritable key, Iterable<EdgeWritable> values, Context context)
+                throws IOException, InterruptedException {
+            if(!plan.isSalted(key)){
+                super.reduce(key, values, context);
+                return;
+            }
+            candidates.clear();
+            for(EdgeWritable value: values){
+                if(value.isDirect()){
+                    candidates.exclude(value.getUser());
+                }else{
+                    candidates.add(value.getUser(), value.getCount(), value.getDegree(), value.getWeight());
+                }
+            }
+            candidates.forEach((user, count, degree, weight) -> {
+                if(count == CandidateCounter.EXCLUDED){
+                    result.set(user, true, 1);
+                }else{
+                    result.set(user, false, count, degree, weight);
+                }
+                outputs.write(SALTED_OUTPUT, key, result);
+            });
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            super.cleanup(context);
+            candidates.clear();
+            outputs.close();
+        }
+    }
+
+    /**
+     * runs the skew stage, the similarity job with SkewPartitioner and, if keys are salted, the merge job.
+     * @param conf job configuration
+     * @param middle output of the indexing job
+     * @param output output of the similarity job
+     * @param summary summary of the pipeline
+     * @return true if all jobs were successful.
+     */
+    public static boolean run(Configuration conf, Path middle, Path output, PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        if(conf.get(PATH) == null){
+            conf.set(PATH, middle.suffix("-skew").toString());
+        }
+        Job skew = new Common.JobBuilder(conf, "wtf skew", WtfSkew.class)
+                .mapper(WtfSkewMapper.class).reducer(WtfSkewReducer.class).combiner(LongSumReducer.class)
+                .mapOutput(UserWritable.class, LongWritable.class).output(UserWritable.class, LongWritable.class)
+                .inputFormat(SequenceFileInputFormat.class).outputFormat(SequenceFileOutputFormat.class)
+                .input(new Path(middle, "part-*")).output(new Path(conf.get(PATH)))
+                .build();
+        skew.setNumReduceTasks(1);
+        if(!summary.run("skew", skew)){
+            return false;
+        }
+        conf.setLong(TOTAL, skew.getCounters().findCounter(Counter.VOLUME).getValue());
+        boolean salt = conf.getBoolean(SALT, false);
+        Job similarity = new Common.JobBuilder(conf, "wtf similarity", WtfSimilarity.class).stage("similarity")
+                .mapper(WtfSimilarity.mapperClass(conf))
+                .reducer(salt ? SaltedSimilarityReducer.class : WtfSimilarity.WtfSimilarityReducer.class)
+                .combiner(WtfSimilarity.combinerClass(conf))
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                .inputFormat(WtfSimilarity.InvertedListInputFormat.class).outputFormat(TextOutputFormat.class)
+                .input(new Path(middle, "part-*")).output(output)
+                .build();
+        similarity.setPartitionerClass(SkewPartitioner.class);
+        if(salt){
+            MultipleOutputs.addNamedOutput(similarity, SALTED_OUTPUT, SequenceFileOutputFormat.class,
+                    UserWritable.class, EdgeWritable.class);
+        }
+        if(!summary.run("similarity", similarity)){
+            return false;
+        }
+        FileSystem fs = output.getFileSystem(conf);
+        Path saltedFiles = new Path(output, SALTED_OUTPUT + "-r-*");
+        FileStatus[] salted = fs.globStatus(saltedFiles);
+        if(salted == null || salted.length == 0){
+            return true;
+        }
+        return merge(conf, saltedFiles, output, summary);
+    }
+
+    /**
+     * runs the merge job over the partial counts of the salted keys and moves its part files into the output.
+     */
+    private static boolean merge(Configuration conf, Path salted, Path output, PipelineSummary summary)
+            throws InterruptedException, IOException, ClassNotFoundException {
+        Path merged = output.suffix("-merge");
+        boolean successful = new Common.JobBuilder(conf, "wtf skew merge", WtfSkew.class).stage("merge")
+                .mapper(Mapper.class).reducer(WtfSimilarity.WtfSimilarityReducer.class)
+                .mapOutput(UserWritable.class, EdgeWritable.class).output(UserWritable.class, Text.class)
+                .inputFormat(SequenceFileInputFormat.class).outputFormat(TextOutputFormat.class)
+                .input(salted).output(merged)
+                .run(summary);
+        if(!successful){
+            return false;
+        }
+        FileSystem fs = output.getFileSystem(conf);
+        for(FileStatus status: fs.globStatus(new Path(merged, "part-*"))){
+            String name = status.getPath().getName();
+            fs.rename(status.getPath(), new Path(output, "part-merge-" + name.substring("part-".length())));
+        }
+        for(FileStatus status: fs.globStatus(salted)){
+            fs.delete(status.getPath(), false);
+        }
+        fs.delete(merged, true);
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class GraphGeneratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> generate(GraphGenerator generator, String name) throws IOException {
+        Path file = new Path(folder.getRoot().getPath(), name);
+        generator.write(FileSystem.getLocal(new Configuration()), file);
+        return Files.readAllLines(Paths.get(file.toUri().getPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testGraph() throws IOException {
+        GraphGenerator generator = new GraphGenerator(500, 10, 2.5, 2.2, GraphGenerator.IdStyle.STRING, 7);
+        List<String> lines = generate(generator, "graph.txt");
+        assertEquals(500, lines.size());
+        assertEquals(lines, generate(generator, "same.txt"));
+        int edges = 0;
+        for (int user = 0; user < lines.size(); user++) {
+            String[] line = lines.get(user).split("\t");
+            assertEquals("user" + (user + 1), line[0]);
+            Set<String> followed = new HashSet<>();
+            for (String id : line[1].trim().split(" ")) {
+                assertTrue(id.startsWith("user"));
+                assertFalse(id.equals(line[0]));
+                assertTrue(followed.add(id));
+            }
+            assertFalse(followed.isEmpty());
+            edges += followed.size();
+        }
+        assertTrue(edges > 5 * 500 && edges < 15 * 500);
+    }
+}
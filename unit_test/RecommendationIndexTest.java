@@ -0,0 +1,130 @@
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class RecommendationIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    Configuration conf = new Configuration();
+    Path output;
+    @Before
+    public void setUp() throws IOException {
+        // same rows as wtf-output/part-r-00000 in two sorted part files.
+        output = folder.newFolder("wtf-output").toPath();
+        Files.write(output.resolve("part-r-00000"), Arrays.asList("1\t 2(2)", "3\t", "5\t 1(1) 2(1) 4(1)"),
+                StandardCharsets.UTF_8);
+        Files.write(output.resolve("part-r-00001"), Arrays.asList("2\t 4(3)", "4\t", "10\t bob(1)", "bob\t 10(1)"),
+                StandardCharsets.UTF_8);
+    }
+
+    private void build(Path output, Path file, int interval) throws IOException {
+        RecommendationIndex.build(conf, new org.apache.hadoop.fs.Path(output.toUri()), file, interval);
+    }
+
+    private String lookup(RecommendationIndex index, String user, int limit) {
+        return Recommendation.toStringBuffer(index.getRecommendations(user, limit)).toString();
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index");
+        build(output, file, 2);
+        RecommendationIndex index = RecommendationIndex.open(file);
+        assertEquals(7, index.size());
+        assertEquals(" 2(2)", lookup(index, "1", 0));
+        assertEquals(" 4(3)", lookup(index, "2", 0));
+        assertEquals("", lookup(index, "3", 0));
+        assertEquals(" 1(1) 2(1)", lookup(index, "5", 2));
+        assertEquals(" bob(1)", lookup(index, "10", 0));
+        assertEquals(" 10(1)", lookup(index, "bob", 0));
+        assertTrue(index.getRecommendations("0", 0).isEmpty());
+        assertTrue(index.getRecommendations("6", 0).isEmpty());
+        assertTrue(index.getRecommendations("zed", 0).isEmpty());
+    }
+    @Test
+    public void testIndexSegments() throws IOException {
+        // segments of 60 bytes hold one or two records, the others are padded.
+        Path file = folder.getRoot().toPath().resolve("index");
+        Path segmented = folder.getRoot().toPath().resolve("index-segmented");
+        build(output, file, 4);
+        RecommendationIndex.build(conf, new org.apache.hadoop.fs.Path(output.toUri()), segmented, 4, 60);
+        RecommendationIndex index = RecommendationIndex.open(segmented);
+        for (String user : new String[]{"1", "2", "3", "4", "5", "10", "bob"}) {
+            assertEquals(user, lookup(RecommendationIndex.open(file), user, 0), lookup(index, user, 0));
+        }
+        assertEquals(" 1(1) 2(1) 4(1)", lookup(index, "5", 0));
+        assertEquals(" 10(1)", lookup(index, "bob", 0));
+    }
+    @Test
+    public void testIndexCompressed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index");
+        Path compressed = folder.getRoot().toPath().resolve("index-compressed");
+        build(output, file, 2);
+        Path part = output.resolve("part-r-00001");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(output.resolve("part-r-00001.gz")))) {
+            out.write(Files.readAllBytes(part));
+        }
+        Files.delete(part);
+        build(output, compressed, 2);
+        RecommendationIndex index = RecommendationIndex.open(compressed);
+        assertEquals(7, index.size());
+        for (String user : new String[]{"1", "2", "3", "4", "5", "10", "bob"}) {
+            assertEquals(user, lookup(RecommendationIndex.open(file), user, 0), lookup(index, user, 0));
+        }
+    }
+    @Test(expected = IOException.class)
+    public void testIndexNotSorted() throws IOException {
+        Files.write(output.resolve("part-r-00001"), Arrays.asList("bob\t 10(1)", "4\t", "2\t 4(3)", "10\t bob(1)"),
+                StandardCharsets.UTF_8);
+        build(output, folder.getRoot().toPath().resolve("index"), 2);
+    }
+    @Test
+    public void testService() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("index");
+        build(output, file, 2);
+        // one stripe of 500 bytes: the row of 5 takes 320 bytes, the rows of 1 and 2 take 172 bytes.
+        RecommendationService service = new RecommendationService(file, 500, 1);
+        List<Recommendation> recommendations = service.getRecommendations("5", 1);
+        assertEquals(1, recommendations.size());
+        assertEquals("1", recommendations.get(0).getUserId());
+        assertEquals(172, service.getCachedBytes());
+        assertEquals(1, service.getRecommendations("5", 1).size());
+        // only the first recommendation of 5 was decoded.
+        assertEquals(3, service.getRecommendations("5", 0).size());
+        assertEquals(2, service.getRecommendations("5", 2).size());
+        assertEquals(320, service.getCachedBytes());
+        service.getRecommendations("1", 0);
+        service.getRecommendations("2", 0);
+        assertEquals(2, service.getHits());
+        assertEquals(4, service.getMisses());
+        assertEquals(1, service.getEvictions());
+        assertEquals(2, service.getCachedRows());
+        assertEquals(344, service.getCachedBytes());
+
+        // a new snapshot where user 1 has a new recommendation.
+        Files.write(output.resolve("part-r-00000"), Arrays.asList("1\t 2(2) 4(1)", "3\t", "5\t 1(1) 2(1) 4(1)"),
+                StandardCharsets.UTF_8);
+        Path next = folder.getRoot().toPath().resolve("index-2");
+        build(output, next, 2);
+        service.swap(next);
+        assertEquals(0, service.getCachedRows());
+        assertEquals(" 2(2) 4(1)", Recommendation.toStringBuffer(service.getRecommendations("1", 0)).toString());
+    }
+}
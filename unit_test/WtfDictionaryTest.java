@@ -0,0 +1,147 @@
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.MapReduceDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfDictionaryTest {
+    MapDriver<Object, Text, UserWritable, NullWritable> mapDriver;
+    MapReduceDriver<Object, Text, UserWritable, NullWritable, Text, IntWritable> mapReduceDriver;
+    @Before
+    public void setUp() {
+        WtfDictionary.WtfDictionaryMapper mapper = new WtfDictionary.WtfDictionaryMapper();
+        WtfDictionary.WtfDictionaryReducer reducer = new WtfDictionary.WtfDictionaryReducer();
+        mapDriver = MapDriver.newMapDriver(mapper);
+        mapReduceDriver = MapReduceDriver.newMapReduceDriver(mapper, reducer, new WtfDictionary.WtfDictionaryCombiner());
+    }
+
+    static WtfDictionary.JoinKey join(String user, byte tag) {
+        return join(user, tag, 0);
+    }
+
+    static WtfDictionary.JoinKey join(String user, byte tag, int index) {
+        WtfDictionary.JoinKey key = new WtfDictionary.JoinKey();
+        key.set(new UserWritable(user), tag, index);
+        return key;
+    }
+
+    @Test
+    public void testMapper() throws IOException {
+        mapDriver.withInput(new LongWritable(), new Text("alice  bob 3"));
+        mapDriver.withOutput(new UserWritable("alice"), NullWritable.get());
+        mapDriver.withOutput(new UserWritable("bob"), NullWritable.get());
+        mapDriver.withOutput(new UserWritable("3"), NullWritable.get());
+        mapDriver.runTest();
+    }
+    @Test
+    public void testMapReduce() throws IOException {
+        mapReduceDriver.withInput(new LongWritable(), new Text("alice  bob 3"));
+        mapReduceDriver.withInput(new LongWritable(), new Text("bob  alice 10"));
+        // the ids are in the order of the user ids: numeric ids first by value, then string ids.
+        mapReduceDriver.withOutput(new Text("3"), new IntWritable(0));
+        mapReduceDriver.withOutput(new Text("10"), new IntWritable(1));
+        mapReduceDriver.withOutput(new Text("alice"), new IntWritable(2));
+        mapReduceDriver.withOutput(new Text("bob"), new IntWritable(3));
+        mapReduceDriver.runTest();
+    }
+    @Test
+    public void testJoinKeyComparators() throws IOException {
+        WtfDictionary.JoinKey entry = join("alice", WtfDictionary.ENTRY);
+        WtfDictionary.JoinKey second = join("alice", WtfDictionary.RECORD, 2);
+        WtfDictionary.JoinKey tenth = join("alice", WtfDictionary.RECORD, 10);
+        WtfDictionary.JoinKey other = join("9", WtfDictionary.RECORD, 1);
+        WritableComparator sort = WritableComparator.get(WtfDictionary.JoinKey.class);
+        WtfDictionary.JoinGroupingComparator group = new WtfDictionary.JoinGroupingComparator();
+        assertTrue(compare(sort, entry, second) < 0);
+        assertTrue(compare(sort, second, tenth) < 0);
+        assertTrue(compare(sort, other, entry) < 0);
+        assertEquals(0, compare(group, entry, tenth));
+        assertTrue(compare(group, other, second) < 0);
+    }
+
+    /**
+     * @return the comparison of the serialized keys.
+     */
+    private static int compare(WritableComparator comparator, WtfDictionary.JoinKey a, WtfDictionary.JoinKey b)
+            throws IOException {
+        DataOutputBuffer bufferA = new DataOutputBuffer();
+        DataOutputBuffer bufferB = new DataOutputBuffer();
+        a.write(bufferA);
+        b.write(bufferB);
+        return comparator.compare(bufferA.getData(), 0, bufferA.getLength(), bufferB.getData(), 0,
+                bufferB.getLength());
+    }
+    @Test
+    public void testEncodingReducer() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, UserWritable, UserWritable, Text> driver =
+                ReduceDriver.newReduceDriver(new WtfDictionary.EncodingReducer());
+        // the dictionary entry of alice comes first, then the int ids of the users she follows.
+        driver.withInput(join("alice", WtfDictionary.ENTRY),
+                Arrays.asList(new UserWritable(1), new UserWritable(2), new UserWritable(0)));
+        driver.withOutput(new UserWritable(1), new Text(" 2 0"));
+        driver.runTest();
+    }
+    @Test(expected = IOException.class)
+    public void testEncodingReducerMissingEntry() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, UserWritable, UserWritable, UserWritable> driver =
+                ReduceDriver.newReduceDriver(new WtfDictionary.FollowedEncodingReducer());
+        driver.withInput(join("carol", WtfDictionary.RECORD), Arrays.asList(new UserWritable("alice")));
+        driver.run();
+    }
+    @Test
+    public void testRecommendedMapper() throws IOException {
+        MapDriver<LongWritable, Text, WtfDictionary.JoinKey, Text> driver =
+                MapDriver.newMapDriver(new WtfDictionary.RecommendedMapper());
+        driver.withInput(new LongWritable(), new Text("1\t 0(2) 2(0.5)"));
+        driver.withOutput(join("1", WtfDictionary.RECORD), new Text(""));
+        driver.withOutput(join("0", WtfDictionary.RECORD), new Text("1\t1\t2"));
+        driver.withOutput(join("2", WtfDictionary.RECORD), new Text("1\t2\t0.5"));
+        driver.runTest();
+    }
+    @Test(expected = IOException.class)
+    public void testRecommendedMapperMalformedLine() throws IOException {
+        MapDriver<LongWritable, Text, WtfDictionary.JoinKey, Text> driver =
+                MapDriver.newMapDriver(new WtfDictionary.RecommendedMapper());
+        driver.withInput(new LongWritable(), new Text("1\t 0(2) 2(0.5"));
+        driver.run();
+    }
+    @Test
+    public void testRecommendedDecodingReducer() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, Text, WtfDictionary.JoinKey, Text> driver =
+                ReduceDriver.newReduceDriver(new WtfDictionary.RecommendedDecodingReducer());
+        driver.withInput(join("0", WtfDictionary.ENTRY),
+                Arrays.asList(new Text("carol"), new Text("1\t2\t0.5"), new Text("")));
+        driver.withOutput(join("1", WtfDictionary.RECORD, 2), new Text("carol(0.5)"));
+        driver.withOutput(join("0", WtfDictionary.RECORD), new Text(""));
+        driver.runTest();
+    }
+    @Test
+    public void testDecodingReducer() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, Text, Text, Text> driver =
+                ReduceDriver.newReduceDriver(new WtfDictionary.DecodingReducer());
+        // the entry of X, the line marker and the decoded recommendations in their order.
+        driver.withInput(join("1", WtfDictionary.ENTRY), Arrays.asList(new Text("alice"), new Text(""),
+                new Text("carol(5)"), new Text("7(2)")));
+        driver.withInput(join("2", WtfDictionary.ENTRY), Arrays.asList(new Text("dave"), new Text("")));
+        // a user without a line in the similarity output.
+        driver.withInput(join("3", WtfDictionary.ENTRY), Arrays.asList(new Text("erin")));
+        driver.withOutput(new Text("alice"), new Text(" carol(5) 7(2)"));
+        driver.withOutput(new Text("dave"), new Text(""));
+        driver.runTest();
+    }
+}
@@ -0,0 +1,143 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfIncrementalTest {
+    MapDriver<Object, Text, WtfDictionary.JoinKey, EdgeWritable> deltaMapDriver;
+    MapDriver<UserWritable, InvertedListWritable, WtfDictionary.JoinKey, EdgeWritable> previousMapDriver;
+    ReduceDriver<WtfDictionary.JoinKey, EdgeWritable, UserWritable, InvertedListWritable> reduceDriver;
+    MapDriver<UserWritable, InvertedListWritable, UserWritable, UserWritable> selectedMapDriver;
+    MapDriver<LongWritable, Text, Text, NullWritable> previousRowMapDriver;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        deltaMapDriver = MapDriver.newMapDriver(new WtfIncremental.DeltaMapper());
+        previousMapDriver = MapDriver.newMapDriver(new WtfIncremental.PreviousListMapper());
+        reduceDriver = ReduceDriver.newReduceDriver(new WtfIncremental.WtfIncrementalIndexingReducer());
+        selectedMapDriver = MapDriver.newMapDriver(new WtfIncremental.SelectedMapper());
+        previousRowMapDriver = MapDriver.newMapDriver(new WtfIncremental.PreviousRowMapper());
+    }
+
+    /**
+     * @param token user id, a "-" prefix means a direct edge like the text format.
+     * @param change change of the edge: 0 for a previous edge, +1 for a follow and -1 for an unfollow.
+     * @return edge of the token.
+     */
+    static EdgeWritable edge(String token, int change) {
+        boolean direct = token.startsWith("-");
+        return new EdgeWritable(new UserWritable(direct ? token.substring(1) : token), direct, change);
+    }
+
+    static WtfDictionary.JoinKey key(String user, byte tag) {
+        WtfDictionary.JoinKey key = new WtfDictionary.JoinKey();
+        key.set(new UserWritable(user), tag);
+        return key;
+    }
+
+    /**
+     * writes a user set of one partition and sets its directory and wtf.incremental.partitions in conf.
+     */
+    void users(Configuration conf, String key, String... users) throws IOException {
+        Path directory = new Path(folder.newFolder(key).toURI());
+        conf.set(key, directory.toString());
+        conf.setInt(WtfIncremental.PARTITIONS, 1);
+        try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+                SequenceFile.Writer.file(new Path(directory, "part-r-00000")),
+                SequenceFile.Writer.keyClass(UserWritable.class),
+                SequenceFile.Writer.valueClass(NullWritable.class))) {
+            for (String user : users) {
+                writer.append(new UserWritable(user), NullWritable.get());
+            }
+        }
+    }
+
+    @Test
+    public void testDeltaMapper() throws IOException {
+        deltaMapDriver.withInput(new LongWritable(), new Text("1\t +2 -3 4"));
+        deltaMapDriver.withOutput(key("2", WtfIncremental.DELTA), edge("1", 1));
+        deltaMapDriver.withOutput(key("1", WtfIncremental.DELTA), edge("-2", 1));
+        deltaMapDriver.withOutput(key("3", WtfIncremental.DELTA), edge("1", -1));
+        deltaMapDriver.withOutput(key("1", WtfIncremental.DELTA), edge("-3", -1));
+        deltaMapDriver.withOutput(key("4", WtfIncremental.DELTA), edge("1", 1));
+        deltaMapDriver.withOutput(key("1", WtfIncremental.DELTA), edge("-4", 1));
+        deltaMapDriver.runTest();
+    }
+    @Test
+    public void testPreviousListMapper() throws IOException {
+        users(previousMapDriver.getConfiguration(), WtfIncremental.TOUCHED, "3");
+        InvertedListWritable list = WtfIndexingTest.invertedList("2", "4", "-5");
+        InvertedListWritable block = WtfIndexingTest.invertedList("2", "4");
+        block.getBlockFollowers().add(new UserWritable("6"));
+        previousMapDriver.withInput(new UserWritable("3"), list);
+        // a block record between two blocks does not add followers.
+        previousMapDriver.withInput(new UserWritable("3"), block);
+        previousMapDriver.withOutput(key("3", WtfIncremental.PREVIOUS), edge("2", 0));
+        previousMapDriver.withOutput(key("3", WtfIncremental.PREVIOUS), edge("4", 0));
+        previousMapDriver.withOutput(key("3", WtfIncremental.PREVIOUS), edge("-5", 0));
+        previousMapDriver.runTest();
+    }
+    @Test
+    public void testReducerSpill() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfIndexing.MAX_FOLLOWERS, 2);
+        List<EdgeWritable> values = new ArrayList<>();
+        // the changes of the delta come first, a follow and an unfollow of 3 do not change the list.
+        values.add(edge("3", 1));
+        values.add(edge("3", -1));
+        values.add(edge("2", 0));
+        values.add(edge("-5", 0));
+        values.add(edge("3", 0));
+        values.add(edge("-6", 0));
+        values.add(edge("4", 0));
+        reduceDriver.withInput(key("1", WtfIncremental.DELTA), values);
+        // the previous edges are streamed into the list like in testReducerSpill of the indexing job.
+        InvertedListWritable crossBlock = WtfIndexingTest.invertedList("2", "3");
+        crossBlock.getBlockFollowers().add(new UserWritable("4"));
+        reduceDriver.withOutput(new UserWritable("1"), WtfIndexingTest.invertedList("-5", "-6"));
+        reduceDriver.withOutput(new UserWritable("1"), WtfIndexingTest.invertedList("2", "3"));
+        reduceDriver.withOutput(new UserWritable("1"), crossBlock);
+        reduceDriver.withOutput(new UserWritable("1"), WtfIndexingTest.invertedList("4"));
+        reduceDriver.withCounter(WtfIndexing.Counter.INVERTED_LISTS, 1);
+        reduceDriver.withCounter(WtfIndexing.Counter.MAX_INVERTED_LIST_LENGTH, 3);
+        reduceDriver.withCounter(WtfIndexing.Counter.SPILLED_LISTS, 1);
+        reduceDriver.runTest(true);
+    }
+    @Test
+    public void testSelectedMapper() throws IOException {
+        users(selectedMapDriver.getConfiguration(), WtfIncremental.AFFECTED, "1");
+        selectedMapDriver.withInput(new UserWritable("1"), WtfIndexingTest.invertedList("4", "-2", "-3"));
+        selectedMapDriver.withInput(new UserWritable("4"), WtfIndexingTest.invertedList("-1"));
+        selectedMapDriver.withOutput(new UserWritable("2"), new UserWritable("1"));
+        selectedMapDriver.withOutput(new UserWritable("3"), new UserWritable("1"));
+        selectedMapDriver.withOutput(new UserWritable("1"), new UserWritable("1"));
+        selectedMapDriver.runTest();
+    }
+    @Test
+    public void testPreviousRowMapper() throws IOException {
+        users(previousRowMapDriver.getConfiguration(), WtfIncremental.AFFECTED, "1", "5");
+        previousRowMapDriver.withInput(new LongWritable(), new Text("1\t 2(2)"));
+        previousRowMapDriver.withInput(new LongWritable(), new Text("2\t 4(3)"));
+        previousRowMapDriver.withInput(new LongWritable(), new Text("5\t 1(1)"));
+        previousRowMapDriver.withOutput(new Text("2\t 4(3)"), NullWritable.get());
+        previousRowMapDriver.withCounter(WtfIncremental.Counter.REMOVED_ROWS, 2);
+        previousRowMapDriver.runTest();
+    }
+}
@@ -16,9 +16,9 @@ import org.junit.Test;
  */
 
 public class WtfIndexingTest {
-    MapDriver<Object, Text, Text, Text> mapDriver;
-    ReduceDriver<Text, Text, Text, Text> reduceDriver;
-    MapReduceDriver<Object, Text, Text, Text, Text, Text> mapReduceDriver;
+    MapDriver<Object, Text, UserWritable, EdgeWritable> mapDriver;
+    ReduceDriver<UserWritable, EdgeWritable, UserWritable, InvertedListWritable> reduceDriver;
+    MapReduceDriver<Object, Text, UserWritable, EdgeWritable, UserWritable, InvertedListWritable> mapReduceDriver;
     @Before
     public void setUp() {
         WtfIndexing.WtfIndexingMapper mapper = new WtfIndexing.WtfIndexingMapper();
@@ -28,45 +28,141 @@ public class WtfIndexingTest {
         mapReduceDriver = MapReduceDriver.newMapReduceDriver(mapper, reducer);
     }
 
+    /**
+     * @param token user id, a "-" prefix means a direct edge like the text format.
+     * @return edge of the token.
+     */
+    static EdgeWritable edge(String token) {
+        boolean direct = token.startsWith("-");
+        return new EdgeWritable(new UserWritable(direct ? token.substring(1) : token), direct);
+    }
+
+    /**
+     * @param tokens followers and directly followed users ("-" prefix) of a user.
+     * @return inverted list of the tokens.
+     */
+    static InvertedListWritable invertedList(String... tokens) {
+        InvertedListWritable list = new InvertedListWritable();
+        for (String token : tokens) {
+            list.add(edge(token));
+        }
+        return list;
+    }
+
     @Test
     public void testMapper() throws IOException {
         mapDriver.withInput(new LongWritable(), new Text(
                 "1  3 4 5"));
-        mapDriver.withOutput(new Text("4"), new Text("1"));
-        mapDriver.withOutput(new Text("5"), new Text("1"));
-        mapDriver.withOutput(new Text("3"), new Text("1"));
-        mapDriver.withOutput(new Text("1"), new Text("-3"));
-        mapDriver.withOutput(new Text("1"), new Text("-4"));
-        mapDriver.withOutput(new Text("1"), new Text("-5"));
+        mapDriver.withOutput(new UserWritable("4"), edge("1"));
+        mapDriver.withOutput(new UserWritable("5"), edge("1"));
+        mapDriver.withOutput(new UserWritable("3"), edge("1"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-3"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-4"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-5"));
+        mapDriver.withCounter(WtfIndexing.Counter.EDGES_READ, 3);
+        mapDriver.runTest(false);
+    }
+    @Test
+    public void testMapperDegrees() throws IOException {
+        mapDriver.getConfiguration().set(WtfSimilarity.SCORER, "JACCARD");
+        mapDriver.withInput(new LongWritable(), new Text(
+                "1  3 4"));
+        mapDriver.withOutput(new UserWritable("3"), new EdgeWritable(new UserWritable("1"), false, 1, 2, 0));
+        mapDriver.withOutput(new UserWritable("4"), new EdgeWritable(new UserWritable("1"), false, 1, 2, 0));
+        mapDriver.withOutput(new UserWritable("1"), edge("-3"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-4"));
+        mapDriver.runTest(false);
+    }
+    @Test
+    public void testMapperStringIds() throws IOException {
+        mapDriver.withInput(new LongWritable(), new Text(
+                "alice  bob 007"));
+        mapDriver.withOutput(new UserWritable("bob"), edge("alice"));
+        mapDriver.withOutput(new UserWritable("007"), edge("alice"));
+        mapDriver.withOutput(new UserWritable("alice"), edge("-bob"));
+        mapDriver.withOutput(new UserWritable("alice"), edge("-007"));
         mapDriver.runTest(false);
     }
     @Test
+    public void testMapperWhitespace() throws IOException {
+        // tabs and repeated spaces separate ids like StringTokenizer, an empty line is skipped, and an id
+        // which does not fit in a long is a string id.
+        mapDriver.withInput(new LongWritable(), new Text(" \t1\t3  1234567890123456789 \r"));
+        mapDriver.withInput(new LongWritable(), new Text("  "));
+        mapDriver.withOutput(new UserWritable("3"), edge("1"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-3"));
+        mapDriver.withOutput(new UserWritable("1234567890123456789"), edge("1"));
+        mapDriver.withOutput(new UserWritable("1"), edge("-1234567890123456789"));
+        mapDriver.runTest(true);
+    }
+    @Test
     public void testReducer() throws IOException {
-        List<Text> values = new ArrayList<>();
-        values.add(new Text("-5"));
-        values.add(new Text("-3"));
-        values.add(new Text("2"));
-        values.add(new Text("3"));
-        values.add(new Text("4"));
-        values.add(new Text("-4"));
-        reduceDriver.withInput(new Text("1"), values);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("-5"));
+        values.add(edge("-3"));
+        values.add(edge("2"));
+        values.add(edge("3"));
+        values.add(edge("4"));
+        values.add(edge("-4"));
+        reduceDriver.withInput(new UserWritable("1"), values);
         //1	 -5 -3 2 3 4 -4
-        reduceDriver.withOutput(new Text("1"), new Text(" -5 -3 2 3 4 -4"));
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("-5", "-3", "2", "3", "4", "-4"));
+        reduceDriver.withCounter(WtfIndexing.Counter.INVERTED_LISTS, 1);
+        reduceDriver.withCounter(WtfIndexing.Counter.MAX_INVERTED_LIST_LENGTH, 3);
         reduceDriver.runTest(false);
     }
     @Test
+    public void testReducerHubBlocks() throws IOException {
+        reduceDriver.getConfiguration().set(WtfSimilarity.HUB_POLICY, "BLOCK");
+        reduceDriver.getConfiguration().setInt(WtfSimilarity.HUB_THRESHOLD, 2);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("2"));
+        values.add(edge("-5"));
+        values.add(edge("3"));
+        values.add(edge("4"));
+        reduceDriver.withInput(new UserWritable("1"), values);
+        InvertedListWritable crossBlock = invertedList("2", "3");
+        crossBlock.getBlockFollowers().add(new UserWritable("4"));
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("2", "3", "-5"));
+        reduceDriver.withOutput(new UserWritable("1"), crossBlock);
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("4"));
+        reduceDriver.withCounter(WtfIndexing.Counter.HUB_BLOCKS, 2);
+        reduceDriver.runTest(true);
+    }
+    @Test
+    public void testReducerSpill() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfIndexing.MAX_FOLLOWERS, 2);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("2"));
+        values.add(edge("-5"));
+        values.add(edge("3"));
+        values.add(edge("-6"));
+        values.add(edge("4"));
+        reduceDriver.withInput(new UserWritable("1"), values);
+        // the directly followed users are written when they reach the limit, the spilled followers are
+        // written in blocks like testReducerHubBlocks.
+        InvertedListWritable crossBlock = invertedList("2", "3");
+        crossBlock.getBlockFollowers().add(new UserWritable("4"));
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("-5", "-6"));
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("2", "3"));
+        reduceDriver.withOutput(new UserWritable("1"), crossBlock);
+        reduceDriver.withOutput(new UserWritable("1"), invertedList("4"));
+        reduceDriver.withCounter(WtfIndexing.Counter.INVERTED_LISTS, 1);
+        reduceDriver.withCounter(WtfIndexing.Counter.MAX_INVERTED_LIST_LENGTH, 3);
+        reduceDriver.withCounter(WtfIndexing.Counter.SPILLED_LISTS, 1);
+        reduceDriver.runTest(true);
+    }
+    @Test
     public void testMapReduce() throws IOException {
         mapReduceDriver.withInput(new LongWritable(), new Text(
                 "1  3 4 5"));
-        List<Text> values = new ArrayList<>();
-        values.add(new Text("-5"));
-        values.add(new Text("-3"));
-        values.add(new Text("2"));
-        values.add(new Text("3"));
-        values.add(new Text("4"));
-        values.add(new Text("-4"));
-        reduceDriver.withInput(new Text("1"), values);
-        reduceDriver.withOutput(new Text("1"), new Text(" -5 -3 2 3 4 -4"));
-        reduceDriver.runTest(false);
+        mapReduceDriver.withInput(new LongWritable(), new Text(
+                "2  1 3 5"));
+        mapReduceDriver.withOutput(new UserWritable("1"), invertedList("-3", "-4", "-5", "2"));
+        mapReduceDriver.withOutput(new UserWritable("2"), invertedList("-1", "-3", "-5"));
+        mapReduceDriver.withOutput(new UserWritable("3"), invertedList("1", "2"));
+        mapReduceDriver.withOutput(new UserWritable("4"), invertedList("1"));
+        mapReduceDriver.withOutput(new UserWritable("5"), invertedList("1", "2"));
+        mapReduceDriver.runTest(true);
     }
 }
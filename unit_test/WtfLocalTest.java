@@ -0,0 +1,83 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfLocalTest {
+    CsrGraph graph;
+    ForkJoinPool pool;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Before
+    public void setUp() {
+        // same graph as wtf-input/small-data
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        builder.addLine("1\t 3 4 5");
+        builder.addLine("2\t 1 3 5");
+        builder.addLine("3\t 1 2 4 5");
+        builder.addLine("4\t 1 2 3 5");
+        builder.addLine("5\t 3");
+        graph = builder.build();
+        pool = new ForkJoinPool(2);
+    }
+
+    private String run(int topK) throws IOException {
+        return run(topK, WtfSimilarity.Scorer.COUNT);
+    }
+
+    private String run(int topK, WtfSimilarity.Scorer scorer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new WtfLocal(graph, topK, scorer).run(pool, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testGraph() {
+        assertEquals(5, graph.size());
+        // followers of user 3 are the inverted list of the indexing job: 1 2 4 5
+        int three = 1;
+        assertEquals("3", graph.getName(three));
+        assertEquals(4, graph.getInOffsets().get(three + 1) - graph.getInOffsets().get(three));
+    }
+    @Test
+    public void testRun() throws IOException {
+        // same as wtf-output/part-r-00000
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1) 4(1)\n", run(0));
+    }
+    @Test
+    public void testRunTopK() throws IOException {
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1)\n", run(2));
+    }
+    @Test
+    public void testRunScorers() throws IOException {
+        assertEquals("1\t 2(0.5)\n2\t 4(0.75)\n3\t\n4\t\n5\t 1(0.333333) 2(0.333333) 4(0.25)\n",
+                run(0, WtfSimilarity.Scorer.JACCARD));
+        assertEquals("1\t 2(0.666667)\n2\t 4(0.866025)\n3\t\n4\t\n5\t 1(0.57735) 2(0.57735) 4(0.5)\n",
+                run(0, WtfSimilarity.Scorer.COSINE));
+        // same as WtfSimilarityTest.testAggregatingMapReduceAdamicAdar
+        assertEquals("1\t 2(1.442695)\n2\t 4(2.352934)\n3\t\n4\t\n5\t 1(0.721348) 2(0.721348) 4(0.721348)\n",
+                run(0, WtfSimilarity.Scorer.ADAMIC_ADAR));
+    }
+    @Test
+    public void testGraphFile() throws IOException {
+        Path file = folder.newFile("graph").toPath();
+        CsrGraphFile.write(graph, file);
+        assertTrue(CsrGraphFile.isGraphFile(file));
+        graph = CsrGraphFile.map(file);
+        assertEquals(5, graph.size());
+        assertEquals("3", graph.getName(1));
+        assertEquals("1\t 2(2)\n2\t 4(3)\n3\t\n4\t\n5\t 1(1) 2(1) 4(1)\n", run(0));
+    }
+}
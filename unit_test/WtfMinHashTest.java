@@ -0,0 +1,161 @@
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfMinHashTest {
+    MapDriver<Object, Text, LongWritable, MinHashWritable> mapDriver;
+    ReduceDriver<LongWritable, MinHashWritable, WtfDictionary.JoinKey, FollowedWritable> reduceDriver;
+
+    @Before
+    public void setUp() {
+        mapDriver = MapDriver.newMapDriver(new WtfMinHash.WtfMinHashMapper());
+        reduceDriver = ReduceDriver.newReduceDriver(new WtfMinHash.WtfMinHashReducer());
+    }
+
+    /**
+     * @return a value of the LSH job for user in band with the fingerprints of its bands and its degree.
+     */
+    static MinHashWritable member(String user, int band, int[] fingerprints, int degree) {
+        MinHashWritable value = new MinHashWritable();
+        value.getUser().set(user);
+        value.setBand(band);
+        value.setFingerprints(fingerprints);
+        value.setDegree(degree);
+        return value;
+    }
+
+    /**
+     * @return a value of the joins for user with its sorted followed users.
+     */
+    static FollowedWritable followed(String user, String... followed) {
+        FollowedWritable value = new FollowedWritable();
+        value.getUser().set(user);
+        for (String f : followed) {
+            value.getFollowed().add(new UserWritable(f));
+        }
+        return value;
+    }
+
+    @Test
+    public void testMapper() throws IOException {
+        mapDriver.getConfiguration().setInt(WtfMinHash.BANDS, 4);
+        mapDriver.getConfiguration().setInt(WtfMinHash.ROWS, 2);
+        mapDriver.withInput(new LongWritable(), new Text("1\t 5 3 4"));
+        mapDriver.withInput(new LongWritable(), new Text("2\t 4 5 3"));
+        mapDriver.withInput(new LongWritable(), new Text("3\t 6 7 8"));
+        mapDriver.withInput(new LongWritable(), new Text("9\t"));
+        List<Pair<LongWritable, MinHashWritable>> output = mapDriver.run();
+        assertEquals(12, output.size());
+        for (int band = 0; band < 4; band++) {
+            // the same followed users have the same buckets, and the followed users are sorted.
+            assertEquals(output.get(band).getFirst(), output.get(4 + band).getFirst());
+            assertEquals("1@" + band, output.get(band).getSecond().toString());
+            assertEquals(3, output.get(band).getSecond().getDegree());
+            assertEquals(band, output.get(4 + band).getSecond().getBand());
+            assertNotEquals(output.get(band).getFirst(), output.get(8 + band).getFirst());
+        }
+    }
+    @Test
+    public void testReducer() throws IOException {
+        int[] fingerprints = {7, 8};
+        List<MinHashWritable> values = new ArrayList<>();
+        values.add(member("1", 0, fingerprints, 3));
+        values.add(member("2", 0, fingerprints, 3));
+        values.add(member("3", 0, new int[]{7, 9}, 1));
+        reduceDriver.withInput(new LongWritable(42), values);
+        // every pair of the first band is a candidate pair, keyed by the user who follows fewer users.
+        reduceDriver.withOutput(WtfDictionaryTest.join("1", WtfMinHash.CANDIDATE), followed("2"));
+        reduceDriver.withOutput(WtfDictionaryTest.join("3", WtfMinHash.CANDIDATE), followed("1"));
+        reduceDriver.withOutput(WtfDictionaryTest.join("3", WtfMinHash.CANDIDATE), followed("2"));
+        reduceDriver.withCounter(WtfMinHash.Counter.BUCKETS, 1);
+        reduceDriver.withCounter(WtfMinHash.Counter.CANDIDATE_PAIRS, 3);
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testReducerDuplicatePairs() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfMinHash.BUCKET_MAX, 2);
+        List<MinHashWritable> values = new ArrayList<>();
+        // 1 and 2 collided in band 0 already, 3 and 4 are dropped from the bucket.
+        values.add(member("1", 1, new int[]{7, 8}, 1));
+        values.add(member("2", 1, new int[]{7, 8}, 1));
+        values.add(member("3", 1, new int[]{6, 8}, 1));
+        values.add(member("4", 1, new int[]{7, 8}, 1));
+        reduceDriver.withInput(new LongWritable(42), values);
+        reduceDriver.withCounter(WtfMinHash.Counter.DUPLICATE_PAIRS, 1);
+        reduceDriver.withCounter(WtfMinHash.Counter.DROPPED_MEMBERS, 2);
+        // 3 did not collide with 1, 2 and 4 in band 0, 4 collided with 1 and 2.
+        reduceDriver.withCounter(WtfMinHash.Counter.LOST_PAIRS, 3);
+        reduceDriver.withCounter(WtfMinHash.Counter.LARGE_BUCKETS, 1);
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testFollowedMapper() throws IOException {
+        MapDriver<Object, Text, WtfDictionary.JoinKey, FollowedWritable> driver =
+                MapDriver.newMapDriver(new WtfMinHash.FollowedMapper());
+        driver.withInput(new LongWritable(), new Text("1\t 5 3 4"));
+        driver.withInput(new LongWritable(), new Text("9\t"));
+        driver.withOutput(WtfDictionaryTest.join("1", WtfMinHash.FOLLOWED), followed("1", "3", "4", "5"));
+        driver.runTest();
+    }
+    @Test
+    public void testCandidateJoinReducer() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, FollowedWritable, WtfDictionary.JoinKey, FollowedWritable> driver =
+                ReduceDriver.newReduceDriver(new WtfMinHash.CandidateJoinReducer());
+        // the followed users of 1 come first, then its candidates 2 and 3.
+        driver.withInput(WtfDictionaryTest.join("1", WtfMinHash.FOLLOWED),
+                Arrays.asList(followed("1", "3", "4", "5"), followed("2"), followed("3")));
+        driver.withOutput(WtfDictionaryTest.join("2", WtfMinHash.CANDIDATE), followed("1", "3", "4", "5"));
+        driver.withOutput(WtfDictionaryTest.join("3", WtfMinHash.CANDIDATE), followed("1", "3", "4", "5"));
+        driver.runTest();
+    }
+    @Test(expected = IOException.class)
+    public void testCandidateJoinReducerMissingFollowed() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, FollowedWritable, WtfDictionary.JoinKey, FollowedWritable> driver =
+                ReduceDriver.newReduceDriver(new WtfMinHash.CandidateJoinReducer());
+        driver.withInput(WtfDictionaryTest.join("1", WtfMinHash.CANDIDATE), Arrays.asList(followed("2")));
+        driver.run();
+    }
+    @Test
+    public void testCandidateScoringReducer() throws IOException {
+        ReduceDriver<WtfDictionary.JoinKey, FollowedWritable, UserWritable, EdgeWritable> driver =
+                ReduceDriver.newReduceDriver(new WtfMinHash.CandidateScoringReducer());
+        // the followed users of 2 come first, then its candidates 1 and 3 with their followed users.
+        driver.withInput(WtfDictionaryTest.join("2", WtfMinHash.FOLLOWED),
+                Arrays.asList(followed("2", "1", "3", "5"), followed("1", "3", "4", "5"), followed("3", "6")));
+        driver.withOutput(new UserWritable("2"), WtfSimilarityTest.edge("-1"));
+        driver.withOutput(new UserWritable("2"), WtfSimilarityTest.edge("-3"));
+        driver.withOutput(new UserWritable("2"), WtfSimilarityTest.edge("-5"));
+        // 2 follows 1, so only 1 gets the recommendation 2 with the common users 3 and 5.
+        driver.withOutput(new UserWritable("1"), WtfSimilarityTest.edge("2", 2));
+        driver.withCounter(WtfMinHash.Counter.SCORED_PAIRS, 1);
+        driver.runTest();
+    }
+    @Test
+    public void testRecall() {
+        WtfRecall recall = new WtfRecall(2);
+        recall.addApproximate("1\t 2(3) 7(1)");
+        recall.addApproximate("5\t 4(1)");
+        recall.addExact("1\t 2(3) 6(2) 7(1)");
+        // 4 ties with 1 and 2 at the second place, it is a hit.
+        recall.addExact("5\t 1(1) 2(1) 4(1)");
+        recall.addExact("3\t");
+        assertTrue(recall.toJson().contains("\"users\":2,"));
+        assertEquals((0.5 + 0.5) / 2, recall.getRecall(), 1e-9);
+    }
+}
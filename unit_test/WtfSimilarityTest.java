@@ -1,4 +1,3 @@
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mrunit.mapreduce.MapDriver;
 import org.apache.hadoop.mrunit.mapreduce.MapReduceDriver;
@@ -14,9 +13,12 @@ import java.util.List;
  * Created by mojtaba on 13/02/17.
  */
 public class WtfSimilarityTest {
-    MapDriver<Object, Text, Text, Text> mapDriver;
-    ReduceDriver<Text, Text, Text, Text> reduceDriver;
-    MapReduceDriver<Object, Text, Text, Text, Text, Text> mapReduceDriver;
+    MapDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable> mapDriver;
+    ReduceDriver<UserWritable, EdgeWritable, UserWritable, Text> reduceDriver;
+    MapReduceDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable, UserWritable, Text> mapReduceDriver;
+    MapDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable> aggregatingMapDriver;
+    MapReduceDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable, UserWritable, Text>
+            aggregatingMapReduceDriver;
     @Before
     public void setUp() {
         WtfSimilarity.WtfSimilarityMapper mapper = new WtfSimilarity.WtfSimilarityMapper();
@@ -24,57 +26,288 @@ public class WtfSimilarityTest {
         mapDriver = MapDriver.newMapDriver(mapper);
         reduceDriver = ReduceDriver.newReduceDriver(reducer);
         mapReduceDriver = MapReduceDriver.newMapReduceDriver(mapper, reducer);
+        WtfSimilarity.WtfSimilarityAggregatingMapper aggregatingMapper =
+                new WtfSimilarity.WtfSimilarityAggregatingMapper();
+        aggregatingMapDriver = MapDriver.newMapDriver(aggregatingMapper);
+        aggregatingMapReduceDriver = MapReduceDriver.newMapReduceDriver(aggregatingMapper,
+                new WtfSimilarity.WtfSimilarityReducer(), new WtfSimilarity.WtfSimilarityCombiner());
+    }
+
+    /**
+     * @param token user id, a "-" prefix means a direct edge like the text format.
+     * @param count number of common followed users.
+     * @return edge of the token.
+     */
+    static EdgeWritable edge(String token, int count) {
+        boolean direct = token.startsWith("-");
+        return new EdgeWritable(new UserWritable(direct ? token.substring(1) : token), direct, count);
+    }
+
+    static EdgeWritable edge(String token) {
+        return edge(token, 1);
+    }
+
+    static UserWritable user(String user) {
+        return new UserWritable(user);
     }
 
     @Test
     public void testMapper() throws IOException {
-        mapDriver.withInput(new LongWritable(), new Text(
-                "1  -5 -3 2 3 4 -4"));
-        mapDriver.withOutput(new Text("1"), new Text("-5"));
-        mapDriver.withOutput(new Text("1"), new Text("-3"));
-        mapDriver.withOutput(new Text("1"), new Text("-4"));
-        mapDriver.withOutput(new Text("2"), new Text("3"));
-        mapDriver.withOutput(new Text("3"), new Text("2"));
-        mapDriver.withOutput(new Text("2"), new Text("4"));
-        mapDriver.withOutput(new Text("4"), new Text("2"));
-        mapDriver.withOutput(new Text("3"), new Text("4"));
-        mapDriver.withOutput(new Text("4"), new Text("3"));
+        mapDriver.withInput(user("1"), WtfIndexingTest.invertedList("-5", "-3", "2", "3", "4", "-4"));
+        mapDriver.withOutput(user("1"), edge("-5"));
+        mapDriver.withOutput(user("1"), edge("-3"));
+        mapDriver.withOutput(user("1"), edge("-4"));
+        mapDriver.withOutput(user("2"), edge("3"));
+        mapDriver.withOutput(user("3"), edge("2"));
+        mapDriver.withOutput(user("2"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("2"));
+        mapDriver.withOutput(user("3"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("3"));
+        mapDriver.withCounter(WtfSimilarity.Counter.PAIRS, 6);
+        mapDriver.withCounter(WtfSimilarity.Counter.DIRECT_EDGES, 3);
         mapDriver.runTest(false);
     }
     @Test
+    public void testMapperBlockRecord() throws IOException {
+        InvertedListWritable crossBlock = WtfIndexingTest.invertedList("2", "3");
+        crossBlock.getBlockFollowers().add(user("4"));
+        mapDriver.withInput(user("1"), crossBlock);
+        mapDriver.withOutput(user("2"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("2"));
+        mapDriver.withOutput(user("3"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("3"));
+        mapDriver.runTest(true);
+    }
+    @Test
+    public void testMapperParts() throws IOException {
+        // both parts of a split list generate 6 of the 12 pairs, and the first part the direct edge.
+        for (int part = 0; part < 2; part++) {
+            InvertedListWritable list = WtfIndexingTest.invertedList("2", "3", "4", "5", "-6");
+            list.setPart(part, 2);
+            mapDriver.withInput(user("1"), list);
+        }
+        mapDriver.withOutput(user("1"), edge("-6"));
+        mapDriver.withOutput(user("2"), edge("3"));
+        mapDriver.withOutput(user("3"), edge("2"));
+        mapDriver.withOutput(user("2"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("2"));
+        mapDriver.withOutput(user("2"), edge("5"));
+        mapDriver.withOutput(user("5"), edge("2"));
+        mapDriver.withOutput(user("3"), edge("4"));
+        mapDriver.withOutput(user("4"), edge("3"));
+        mapDriver.withOutput(user("3"), edge("5"));
+        mapDriver.withOutput(user("5"), edge("3"));
+        mapDriver.withOutput(user("4"), edge("5"));
+        mapDriver.withOutput(user("5"), edge("4"));
+        mapDriver.withCounter(WtfSimilarity.Counter.PAIRS, 12);
+        mapDriver.withCounter(WtfSimilarity.Counter.DIRECT_EDGES, 1);
+        mapDriver.runTest(true);
+    }
+    @Test
+    public void testMapperHubSkip() throws IOException {
+        mapDriver.getConfiguration().set(WtfSimilarity.HUB_POLICY, "SKIP");
+        mapDriver.getConfiguration().setInt(WtfSimilarity.HUB_THRESHOLD, 2);
+        mapDriver.withInput(user("1"), WtfIndexingTest.invertedList("2", "3", "4", "-5"));
+        mapDriver.withOutput(user("1"), edge("-5"));
+        mapDriver.withCounter(WtfSimilarity.Counter.HUB_LISTS, 1);
+        mapDriver.withCounter(WtfSimilarity.Counter.SKIPPED_PAIRS, 6);
+        mapDriver.runTest(true);
+    }
+    @Test
+    public void testMapperAdamicAdar() throws IOException {
+        mapDriver.getConfiguration().set(WtfSimilarity.SCORER, "ADAMIC_ADAR");
+        double weight = WtfSimilarity.Scorer.weight(2);
+        mapDriver.withInput(user("3"), WtfIndexingTest.invertedList("1", "2", "-5"));
+        mapDriver.withOutput(user("3"), edge("-5"));
+        mapDriver.withOutput(user("1"), new EdgeWritable(user("2"), false, 1, 0, weight));
+        mapDriver.withOutput(user("2"), new EdgeWritable(user("1"), false, 1, 0, weight));
+        mapDriver.runTest(true);
+    }
+    @Test
     public void testReducer() throws IOException {
-        List<Text> values = new ArrayList<>();
-        values.add(new Text("-3"));
-        values.add(new Text("-4"));
-        values.add(new Text("2"));
-        values.add(new Text("2"));
-        values.add(new Text("3"));
-        values.add(new Text("4"));
-        values.add(new Text("3"));
-        values.add(new Text("-5"));
-        values.add(new Text("4"));
-        values.add(new Text("5"));
-        reduceDriver.withInput(new Text("1"), values);
-        reduceDriver.withOutput(new Text("1"), new Text(" 2(2)"));
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("-3"));
+        values.add(edge("-4"));
+        values.add(edge("2"));
+        values.add(edge("2"));
+        values.add(edge("3"));
+        values.add(edge("4"));
+        values.add(edge("3"));
+        values.add(edge("-5"));
+        values.add(edge("4"));
+        values.add(edge("5"));
+        reduceDriver.withInput(user("1"), values);
+        reduceDriver.withOutput(user("1"), new Text(" 2(2)"));
         reduceDriver.runTest(false);
     }
     @Test
-    public void testMapReduce() throws IOException {
-        mapReduceDriver.withInput(new LongWritable(), new Text(
-                "1  -5 -3 2 3 4 -4"));
-        List<Text> values = new ArrayList<>();
-        values.add(new Text("-3"));
-        values.add(new Text("-4"));
-        values.add(new Text("2"));
-        values.add(new Text("2"));
-        values.add(new Text("3"));
-        values.add(new Text("4"));
-        values.add(new Text("3"));
-        values.add(new Text("-5"));
-        values.add(new Text("4"));
-        values.add(new Text("5"));
-        reduceDriver.withInput(new Text("1"), values);
-        reduceDriver.withOutput(new Text("1"), new Text(" 2(2)"));
+    public void testReducerDirectFollowAfterCandidates() throws IOException {
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("3"));
+        values.add(edge("2"));
+        values.add(edge("3"));
+        values.add(edge("6", 2));
+        values.add(edge("-3"));
+        values.add(edge("3"));
+        values.add(edge("bob"));
+        values.add(edge("-bob"));
+        reduceDriver.withInput(user("1"), values);
+        reduceDriver.withOutput(user("1"), new Text(" 6(2) 2(1)"));
+        reduceDriver.withCounter(WtfSimilarity.Counter.DIRECT_FILTERED, 2);
+        reduceDriver.withCounter(WtfSimilarity.Counter.RECOMMENDATIONS, 2);
+        reduceDriver.withCounter(WtfSimilarity.CandidatesPerUser.FROM_1_TO_9, 1);
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testReducerSpill() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfSimilarity.MAX_CANDIDATES, 2);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("3"));
+        values.add(edge("2"));
+        values.add(edge("3"));
+        values.add(edge("6", 2));
+        values.add(edge("-3"));
+        values.add(edge("3"));
+        values.add(edge("bob"));
+        values.add(edge("-bob"));
+        reduceDriver.withInput(user("1"), values);
+        // 3 is counted in the first run and excluded in the second run.
+        reduceDriver.withOutput(user("1"), new Text(" 6(2) 2(1)"));
+        reduceDriver.withCounter(WtfSimilarity.Counter.DIRECT_FILTERED, 2);
+        reduceDriver.withCounter(WtfSimilarity.Counter.RECOMMENDATIONS, 2);
+        reduceDriver.withCounter(WtfSimilarity.Counter.SPILLED_RUNS, 2);
+        reduceDriver.withCounter(WtfSimilarity.CandidatesPerUser.FROM_1_TO_9, 1);
         reduceDriver.runTest(false);
     }
-}
\ No newline at end of file
+    @Test
+    public void testReducerSpillJaccard() throws IOException {
+        reduceDriver.getConfiguration().set(WtfSimilarity.SCORER, "JACCARD");
+        reduceDriver.getConfiguration().setInt(WtfSimilarity.MAX_CANDIDATES, 1);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(new EdgeWritable(user("2"), false, 1, 3, 0));
+        values.add(edge("-3"));
+        values.add(new EdgeWritable(user("5"), false, 1, 1, 0));
+        values.add(new EdgeWritable(user("2"), false, 1, 3, 0));
+        values.add(edge("-4"));
+        reduceDriver.withInput(user("1"), values);
+        // the degree of 1 is the number of direct edges of all runs, like in testReducerJaccard.
+        reduceDriver.withOutput(user("1"), new Text(" 2(0.666667) 5(0.5)"));
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testReducerJaccard() throws IOException {
+        reduceDriver.getConfiguration().set(WtfSimilarity.SCORER, "JACCARD");
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(new EdgeWritable(user("2"), false, 1, 3, 0));
+        values.add(edge("-3"));
+        values.add(new EdgeWritable(user("5"), false, 1, 1, 0));
+        values.add(new EdgeWritable(user("2"), false, 1, 3, 0));
+        values.add(edge("-4"));
+        reduceDriver.withInput(user("1"), values);
+        // 2 follows 3 users and 2 of them in common with the 2 users followed by 1: 2 / (2 + 3 - 2)
+        reduceDriver.withOutput(user("1"), new Text(" 2(0.666667) 5(0.5)"));
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testReducerCosineTies() throws IOException {
+        reduceDriver.getConfiguration().set(WtfSimilarity.SCORER, "COSINE");
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(new EdgeWritable(user("5"), false, 1, 1, 0));
+        values.add(new EdgeWritable(user("2"), false, 3, 9, 0));
+        values.add(edge("-3"));
+        values.add(edge("-4"));
+        values.add(edge("-6"));
+        reduceDriver.withInput(user("1"), values);
+        // 1 / sqrt(3 * 1) and 3 / sqrt(3 * 9) differ in the last bit, they are printed equal and ordered by id.
+        reduceDriver.withOutput(user("1"), new Text(" 2(0.57735) 5(0.57735)"));
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testReducerTopK() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfSimilarity.TOP_K, 3);
+        List<EdgeWritable> values = new ArrayList<>();
+        values.add(edge("bob", 2));
+        values.add(edge("10", 2));
+        values.add(edge("9", 2));
+        values.add(edge("7", 1));
+        values.add(edge("alice", 5));
+        values.add(edge("2", 1));
+        reduceDriver.withInput(user("1"), values);
+        reduceDriver.withOutput(user("1"), new Text(" alice(5) 9(2) 10(2)"));
+        reduceDriver.withCounter(WtfSimilarity.Counter.TOPK_TRUNCATED, 3);
+        reduceDriver.runTest(false);
+    }
+    @Test
+    public void testMapReduce() throws IOException {
+        addSmallDataInvertedLists(mapReduceDriver);
+        addSmallDataRecommendations(mapReduceDriver);
+        mapReduceDriver.runTest(true);
+    }
+    @Test
+    public void testAggregatingMapper() throws IOException {
+        aggregatingMapDriver.withInput(user("3"), WtfIndexingTest.invertedList("1", "-2", "2", "4"));
+        aggregatingMapDriver.withInput(user("5"), WtfIndexingTest.invertedList("1", "2", "-3"));
+        aggregatingMapDriver.withOutput(user("3"), edge("-2"));
+        aggregatingMapDriver.withOutput(user("5"), edge("-3"));
+        aggregatingMapDriver.withOutput(user("1"), edge("2", 2));
+        aggregatingMapDriver.withOutput(user("1"), edge("4", 1));
+        aggregatingMapDriver.withOutput(user("2"), edge("1", 2));
+        aggregatingMapDriver.withOutput(user("2"), edge("4", 1));
+        aggregatingMapDriver.withOutput(user("4"), edge("1", 1));
+        aggregatingMapDriver.withOutput(user("4"), edge("2", 1));
+        aggregatingMapDriver.runTest(false);
+    }
+    @Test
+    public void testAggregatingMapperFlush() throws IOException {
+        aggregatingMapDriver.getConfiguration().setInt(WtfSimilarity.AGGREGATE_MAX_ENTRIES, 1);
+        aggregatingMapDriver.withInput(user("3"), WtfIndexingTest.invertedList("1", "2"));
+        aggregatingMapDriver.withInput(user("5"), WtfIndexingTest.invertedList("1", "2"));
+        aggregatingMapDriver.withOutput(user("1"), edge("2"));
+        aggregatingMapDriver.withOutput(user("2"), edge("1"));
+        aggregatingMapDriver.withOutput(user("1"), edge("2"));
+        aggregatingMapDriver.withOutput(user("2"), edge("1"));
+        aggregatingMapDriver.runTest(false);
+    }
+    @Test
+    public void testAggregatingMapReduce() throws IOException {
+        addSmallDataInvertedLists(aggregatingMapReduceDriver);
+        addSmallDataRecommendations(aggregatingMapReduceDriver);
+        aggregatingMapReduceDriver.runTest(true);
+    }
+    @Test
+    public void testAggregatingMapReduceAdamicAdar() throws IOException {
+        aggregatingMapReduceDriver.getConfiguration().set(WtfSimilarity.SCORER, "ADAMIC_ADAR");
+        addSmallDataInvertedLists(aggregatingMapReduceDriver);
+        // 1 and 2 both follow 3 and 5 which have 4 followers: 2 / ln(4)
+        aggregatingMapReduceDriver.withOutput(user("1"), new Text(" 2(1.442695)"));
+        aggregatingMapReduceDriver.withOutput(user("2"), new Text(" 4(2.352934)"));
+        aggregatingMapReduceDriver.withOutput(user("3"), new Text(""));
+        aggregatingMapReduceDriver.withOutput(user("4"), new Text(""));
+        aggregatingMapReduceDriver.withOutput(user("5"), new Text(" 1(0.721348) 2(0.721348) 4(0.721348)"));
+        aggregatingMapReduceDriver.runTest(true);
+    }
+
+    /**
+     * adds the inverted lists of wtf-middle for the small-data input.
+     */
+    static void addSmallDataInvertedLists(
+            MapReduceDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable, UserWritable, Text> driver) {
+        driver.withInput(user("1"), WtfIndexingTest.invertedList("-5", "-3", "2", "3", "4", "-4"));
+        driver.withInput(user("2"), WtfIndexingTest.invertedList("-3", "-5", "3", "4", "-1"));
+        driver.withInput(user("3"), WtfIndexingTest.invertedList("1", "5", "4", "-5", "-4", "-2", "-1", "2"));
+        driver.withInput(user("4"), WtfIndexingTest.invertedList("-1", "-2", "-3", "1", "-5", "3"));
+        driver.withInput(user("5"), WtfIndexingTest.invertedList("2", "3", "-3", "1", "4"));
+    }
+
+    /**
+     * adds the recommendations of wtf-output for the small-data input.
+     */
+    static void addSmallDataRecommendations(
+            MapReduceDriver<UserWritable, InvertedListWritable, UserWritable, EdgeWritable, UserWritable, Text> driver) {
+        driver.withOutput(user("1"), new Text(" 2(2)"));
+        driver.withOutput(user("2"), new Text(" 4(3)"));
+        driver.withOutput(user("3"), new Text(""));
+        driver.withOutput(user("4"), new Text(""));
+        driver.withOutput(user("5"), new Text(" 1(1) 2(1) 4(1)"));
+    }
+}
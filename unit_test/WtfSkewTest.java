@@ -0,0 +1,116 @@
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by TeamZero on 2026-10-17.
+ */
+public class WtfSkewTest {
+    MapDriver<UserWritable, InvertedListWritable, UserWritable, LongWritable> mapDriver;
+    ReduceDriver<UserWritable, LongWritable, UserWritable, LongWritable> reduceDriver;
+
+    @Before
+    public void setUp() {
+        mapDriver = MapDriver.newMapDriver(new WtfSkew.WtfSkewMapper());
+        reduceDriver = ReduceDriver.newReduceDriver(new WtfSkew.WtfSkewReducer());
+    }
+
+    static UserWritable user(String user) {
+        return new UserWritable(user);
+    }
+
+    @Test
+    public void testMapper() throws IOException {
+        mapDriver.getConfiguration().setFloat(WtfSkew.SAMPLE_RATE, 1);
+        mapDriver.withInput(user("1"), WtfIndexingTest.invertedList("-5", "-3", "2", "3", "4", "-4"));
+        // 3 direct edges on 1, and every follower gets 2 pairs like in WtfSimilarityTest.testMapper.
+        mapDriver.withOutput(user("1"), new LongWritable(3));
+        mapDriver.withOutput(user("2"), new LongWritable(2));
+        mapDriver.withOutput(user("3"), new LongWritable(2));
+        mapDriver.withOutput(user("4"), new LongWritable(2));
+        mapDriver.withCounter(WtfSkew.Counter.SAMPLED_LISTS, 1);
+        mapDriver.runTest();
+    }
+
+    @Test
+    public void testMapperHubSkip() throws IOException {
+        mapDriver.getConfiguration().setFloat(WtfSkew.SAMPLE_RATE, 1);
+        mapDriver.getConfiguration().setInt(WtfSimilarity.HUB_THRESHOLD, 2);
+        mapDriver.getConfiguration().set(WtfSimilarity.HUB_POLICY, "SKIP");
+        mapDriver.withInput(user("1"), WtfIndexingTest.invertedList("-5", "2", "3", "4"));
+        mapDriver.withOutput(user("1"), new LongWritable(1));
+        mapDriver.runTest();
+    }
+
+    @Test
+    public void testReducer() throws IOException {
+        reduceDriver.getConfiguration().setInt(WtfSkew.KEYS, 2);
+        reduceDriver.withInput(user("a"), Arrays.asList(new LongWritable(5)));
+        reduceDriver.withInput(user("b"), Arrays.asList(new LongWritable(1), new LongWritable(2)));
+        reduceDriver.withInput(user("c"), Arrays.asList(new LongWritable(4), new LongWritable(6)));
+        List<Pair<UserWritable, LongWritable>> output = reduceDriver.run();
+        Map<String, Long> largest = new HashMap<>();
+        for (Pair<UserWritable, LongWritable> pair : output) {
+            largest.put(pair.getFirst().toString(), pair.getSecond().get());
+        }
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("a", 5L);
+        expected.put("c", 10L);
+        assertEquals(expected, largest);
+        assertEquals(18, reduceDriver.getCounters().findCounter(WtfSkew.Counter.VOLUME).getValue());
+        assertEquals(2, reduceDriver.getCounters().findCounter(WtfSkew.Counter.KEYS).getValue());
+    }
+
+    @Test
+    public void testPlanIsolatesHeavyKey() {
+        Map<UserWritable, Long> volumes = new HashMap<>();
+        volumes.put(user("h"), 400L);
+        volumes.put(user("m"), 50L);
+        // fair share 250: h is heavy and gets a reducer, the rest 600 goes to the 3 others.
+        WtfSkew.Plan plan = new WtfSkew.Plan(volumes, 1000, 4, 0.25f, false);
+        assertEquals(1, plan.getHeavyKeys());
+        assertFalse(plan.isSalted(user("h")));
+        int hub = plan.getPartition(user("h"), user("x"), 4);
+        assertEquals(hub, plan.getPartition(user("h"), user("y"), 4));
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(hub, plan.getPartition(user(Integer.toString(i)), user("x"), 4));
+        }
+        assertArrayEquals(new double[]{400, 200, 200, 200}, plan.getLoads(), 1e-9);
+    }
+
+    @Test
+    public void testPlanSaltsHeavyKey() {
+        Map<UserWritable, Long> volumes = new HashMap<>();
+        volumes.put(user("h"), 400L);
+        // h has more than the fair share 250, so it is split into 2 salts of 200.
+        WtfSkew.Plan plan = new WtfSkew.Plan(volumes, 1000, 4, 0.25f, true);
+        assertTrue(plan.isSalted(user("h")));
+        Set<Integer> salts = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            UserWritable candidate = user(Integer.toString(i));
+            int reducer = plan.getPartition(user("h"), candidate, 4);
+            // the direct edge and the pairs of a candidate meet in the same salt.
+            assertEquals(reducer, plan.getPartition(user("h"), candidate.copy(), 4));
+            salts.add(reducer);
+        }
+        assertEquals(2, salts.size());
+        assertArrayEquals(new double[]{250, 250, 250, 250}, plan.getLoads(), 1e-9);
+    }
+}